@@ -0,0 +1,92 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Passes everything it receives on to several sinks, in order, so that a Drawing is walked once for all of them.
+ */
+final class BroadcastSink implements RenderSink {
+
+    private final @NotNull RenderSink[] sinks;
+
+    /**
+     * Creates a sink that passes everything on to some other sinks.
+     *
+     * @param sinks the sinks.
+     */
+    BroadcastSink(@NotNull final RenderSink[] sinks) {
+        this.sinks = sinks.clone();
+    }
+
+    @Override
+    public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.begin(drawing, width, height);
+        }
+    }
+
+    @Override
+    public void beginShape(@NotNull final Shape shape) {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.beginShape(shape);
+        }
+    }
+
+    @Override
+    public void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                       @Nullable final String stroke) {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.circle(cx, cy, radius, fill, stroke);
+        }
+    }
+
+    @Override
+    public void rectangle(final double x, final double y, final double width, final double height,
+                          @Nullable final String fill, @Nullable final String stroke) {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.rectangle(x, y, width, height, fill, stroke);
+        }
+    }
+
+    @Override
+    public void line(final double x1, final double y1, final double x2, final double y2,
+                     @NotNull final String stroke, final double thickness, @Nullable final LineEnding lineEnding) {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.line(x1, y1, x2, y2, stroke, thickness, lineEnding);
+        }
+    }
+
+    @Override
+    public void text(final double x, final double y, @NotNull final String string, @Nullable final String fill,
+                     @Nullable final String stroke) {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.text(x, y, string, fill, stroke);
+        }
+    }
+
+    @Override
+    public void end() {
+        for (@NotNull final RenderSink sink : this.sinks) {
+            sink.end();
+        }
+    }
+}
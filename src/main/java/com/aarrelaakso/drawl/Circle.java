@@ -172,10 +172,11 @@ public class Circle extends Shape
     /**
      * Get SVG representing this Circle.
      *
+     * @param context the state of the rendering of which this Circle is a part.
      * @return A string containing SVG representing this Circle.
      */
     @Override
-    public @NotNull String getSVG()
+    @NotNull String getSVG(@NotNull final SVGContext context)
     {
         final String radiusStringValue;
         @Nullable final Number radiusExplicitValue = this.getExplicitRadius();
@@ -191,32 +192,132 @@ public class Circle extends Shape
         svgBuilder.append("r='");
         svgBuilder.append(radiusStringValue);
         svgBuilder.append("'");
-        svgBuilder.append(" cx='");
-        svgBuilder.append(this.getExplicitXPositionCenter().toSVG());
-        svgBuilder.append("'");
-        svgBuilder.append(" cy='");
-        svgBuilder.append(this.getExplicitYPositionCenter().toSVG());
-        svgBuilder.append("'");
-        if (this.getFill() != null)
+        @NotNull final String cx = this.getSVGXPositionCenter(context).toSVG();
+        if (!context.isOmitted(cx, "0"))
         {
-            svgBuilder.append(" fill='");
-            svgBuilder.append(this.getFill());
+            svgBuilder.append(" cx='");
+            svgBuilder.append(cx);
             svgBuilder.append("'");
         }
-        if (this.getStroke() != null)
+        @NotNull final String cy = this.getSVGYPositionCenter(context).toSVG();
+        if (!context.isOmitted(cy, "0"))
         {
-            svgBuilder.append(" stroke='");
-            svgBuilder.append(this.getStroke());
+            svgBuilder.append(" cy='");
+            svgBuilder.append(cy);
             svgBuilder.append("'");
         }
-        svgBuilder.append(" />");
+        if (context.hasStyleClasses())
+        {
+            svgBuilder.append(context.getStyleClass(this.getFill(), this.getStroke(), null));
+        }
+        else
+        {
+            if (this.getFill() != null && !context.isOmitted(this.getFill(), "black"))
+            {
+                svgBuilder.append(" fill='");
+                svgBuilder.append(this.getFill());
+                svgBuilder.append("'");
+            }
+            if (this.getStroke() != null && !context.isOmitted(this.getStroke(), "none"))
+            {
+                svgBuilder.append(" stroke='");
+                svgBuilder.append(this.getStroke());
+                svgBuilder.append("'");
+            }
+        }
+        svgBuilder.append(context.getEmptyElementEnd());
         if (Boolean.TRUE.equals(this.hasText()))
         {
-            svgBuilder.append(Objects.requireNonNull(this.getText()).getSVG());
+            svgBuilder.append(Objects.requireNonNull(this.getText()).getSVG(context));
         }
         return svgBuilder.toString();
     }
 
+    /**
+     * Append path data that draws this Circle as two arcs, clockwise from its leftmost point.
+     *
+     * @param pathData the path data to which to append.
+     * @return <code>true</code> if this Circle was appended, or <code>false</code> if it has Text.
+     */
+    @Override
+    boolean appendSVGPathData(@NotNull final PathData pathData)
+    {
+        if (Boolean.TRUE.equals(this.hasText()))
+        {
+            return false;
+        }
+        if (this.getExplicitRadius() == null)
+        {
+            // If the explicit radius has not been set, use the implicit radius
+            this.setExplicitRadius(this.getImplicitRadius());
+        }
+        final double radius = this.getExplicitRadius().doubleValue();
+        final double left = this.getExplicitXPositionCenter().subtract(this.getExplicitRadius()).doubleValue();
+        final double right = this.getExplicitXPositionCenter().add(this.getExplicitRadius()).doubleValue();
+        final double y = this.getExplicitYPositionCenter().doubleValue();
+        pathData.moveTo(left, y);
+        pathData.arcTo(radius, radius, 0, true, true, right, y);
+        pathData.arcTo(radius, radius, 0, true, true, left, y);
+        pathData.closePath();
+        return true;
+    }
+
+    /**
+     * Get the explicit area of this Circle.
+     *
+     * @return the area of this Circle, or 0 if it has not been laid out.
+     */
+    @Override
+    double getExplicitArea()
+    {
+        if (this.getExplicitRadius() == null)
+        {
+            return 0.0;
+        }
+        final double radius = this.getExplicitRadius().doubleValue();
+        return Math.PI * radius * radius;
+    }
+
+    /**
+     * Append path data that outlines this Circle, whether or not it has Text.
+     *
+     * @param pathData the path data to which to append.
+     * @return <code>true</code> if the outline was appended, or <code>false</code> if this Circle has not been laid
+     * out.
+     */
+    @Override
+    boolean appendSVGOutline(@NotNull final PathData pathData)
+    {
+        if (this.getExplicitRadius() == null)
+        {
+            return false;
+        }
+        final double radius = this.getExplicitRadius().doubleValue();
+        final double x = this.getExplicitXPositionCenter().doubleValue();
+        final double y = this.getExplicitYPositionCenter().doubleValue();
+        pathData.moveTo(x - radius, y);
+        pathData.arcTo(radius, radius, 0, true, true, x + radius, y);
+        pathData.arcTo(radius, radius, 0, true, true, x - radius, y);
+        pathData.closePath();
+        return true;
+    }
+
+    /**
+     * Renders this Circle as a primitive for a sink.
+     *
+     * @param sink the sink to which to pass the primitive.
+     */
+    @Override
+    void render(@NotNull final RenderSink sink)
+    {
+        // Rendering must not set the explicit radius, as getting the SVG does
+        @NotNull final Number radius = this.getExplicitRadius() != null ? this.getExplicitRadius()
+                : this.getImplicitRadius();
+        sink.circle(this.getExplicitXPositionCenter().doubleValue(), this.getExplicitYPositionCenter().doubleValue(),
+                radius.doubleValue(), this.getFill(), this.getStroke());
+        super.render(sink);
+    }
+
     /**
      * Set the height of this Circle to a fixed value
      *
@@ -249,6 +350,10 @@ public class Circle extends Shape
      */
     protected void setExplicitRadius(@NotNull final Number radius)
     {
+        if (this.explicitRadius == null || this.explicitRadius.compareTo(radius) != 0)
+        {
+            this.invalidateSVG();
+        }
         this.explicitRadius = radius;
     }
 
@@ -260,11 +365,15 @@ public class Circle extends Shape
      */
     protected void setExplicitRadius(@NotNull final Integer radius)
     {
-        this.explicitRadius = DrawlNumber.valueOf(radius);
+        this.setExplicitRadius(DrawlNumber.valueOf(radius));
     }
 
     private void setExplicitRadiusToNull()
     {
+        if (this.explicitRadius != null)
+        {
+            this.invalidateSVG();
+        }
         this.explicitRadius = null;
     }
 
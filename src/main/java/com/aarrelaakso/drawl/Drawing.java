@@ -23,10 +23,35 @@ import com.google.common.flogger.FluentLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashSet;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
@@ -43,14 +68,98 @@ public class Drawing {
 
     }
 
-    private final @NotNull HashSet<Shape> contents;
+    /**
+     * The contents of this Drawing, in the order in which they were added, which is the order in which they are drawn.
+     */
+    private final @NotNull LinkedHashSet<Shape> contents;
     private Number explicitHeight;
     private Number explicitWidth;
+    private @Nullable String markerLibrary;
+    private @NotNull String idPrefix = "";
+    private boolean styleClasses;
+    private boolean symbols;
+    private boolean pathCoalescing;
+    private boolean minified;
+    private boolean elementIds;
+    private boolean hybridRendering;
+
+    /**
+     * The element id of each Shape, assigned the first time the Shape is drawn with element ids, and forgotten when
+     * the contents of this Drawing are replaced.
+     */
+    private final @NotNull Map<Shape, String> shapeElementIds = new HashMap<>();
+
+    /**
+     * The number of element ids assigned so far, so that an id is never given to two Shapes.
+     */
+    private long elementIdCount;
+
+    /**
+     * The epoch of the most recent rendering with element ids, or 0 if there has been none.
+     */
+    private long epoch;
+
+    /**
+     * The SVG of each element in each of the most recent renderings with element ids, keyed by epoch. Each rendering
+     * maps element ids, starting with the id of the definitions, to their content, in drawing order. The content is
+     * mostly the SVG cached by the Shapes themselves, so keeping several renderings costs little more than one.
+     */
+    private final @NotNull Map<Long, Map<String, String>> renderings = new LinkedHashMap<Long, Map<String, String>>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Map<String, String>> eldest) {
+            return this.size() > Drawing.EPOCH_HISTORY;
+        }
+    };
+
+    /**
+     * The id of the group that holds the definitions when drawing with element ids.
+     */
+    private static final String DEFS_ID = "defs";
+
+    /**
+     * The form of an id prefix: empty, or a letter or underscore followed by letters, digits, underscores and
+     * hyphens, so that it starts a valid XML id and a valid CSS class name.
+     */
+    private static final Pattern ID_PREFIX = Pattern.compile("([A-Za-z_][A-Za-z0-9_-]*)?");
+
+    /**
+     * The number of renderings with element ids from which {@link #getSVGPatch(long)} can patch, so that clients
+     * that are a few renderings behind, or that share this Drawing with other clients, still get small patches.
+     */
+    private static final int EPOCH_HISTORY = 16;
     private static final int initialCapacity = 16;
     private static final float loadFactor = 0.75f;
 
+    /**
+     * The number of Shapes whose SVG is generated by each parallel task.
+     */
+    private static final int FRAGMENT_CHUNK_SIZE = 256;
+
+    /**
+     * The smallest number of Shapes for which SVG is generated in parallel. Smaller drawings are not worth the
+     * overhead.
+     */
+    private static final int PARALLEL_THRESHOLD = 4 * Drawing.FRAGMENT_CHUNK_SIZE;
+
+    /**
+     * The largest number of Shapes outlined in the coarse preview of a progressive rendering.
+     */
+    private static final int PREVIEW_SIZE = 256;
+
+    /**
+     * The number of Shapes drawn in each refinement chunk of a progressive rendering.
+     */
+    private static final int REFINEMENT_CHUNK_SIZE = 16 * Drawing.FRAGMENT_CHUNK_SIZE;
+
+    /**
+     * The id of the group that holds the coarse preview in a progressive rendering, after the id prefix.
+     */
+    private static final String PREVIEW_ID = "drawl-preview";
+
     public Drawing() {
-        this.contents = new HashSet<>(Drawing.initialCapacity, Drawing.loadFactor);
+        this.contents = new LinkedHashSet<>(Drawing.initialCapacity, Drawing.loadFactor);
     }
 
     /**
@@ -66,6 +175,34 @@ public class Drawing {
         this.updateShape(shape);
     }
 
+    /**
+     * Gets the contents of this Drawing.
+     *
+     * @return the Shapes in this Drawing, in the order in which they are drawn.
+     */
+    @NotNull
+    Collection<Shape> getContents() {
+        return Collections.unmodifiableCollection(this.contents);
+    }
+
+    /**
+     * Restores the contents and explicit dimensions of this Drawing, as saved with their layout, without laying them
+     * out again.
+     *
+     * @param shapes         the Shapes, in the order in which they are drawn, with their layout already restored.
+     * @param explicitWidth  the explicit width, or <code>null</code> if it had not been set.
+     * @param explicitHeight the explicit height, or <code>null</code> if it had not been set.
+     */
+    void restore(@NotNull final Collection<Shape> shapes, @Nullable final Number explicitWidth,
+                 @Nullable final Number explicitHeight) {
+        this.contents.addAll(shapes);
+        // Patches cannot describe a change of contents
+        this.shapeElementIds.clear();
+        this.renderings.clear();
+        this.explicitWidth = explicitWidth;
+        this.explicitHeight = explicitHeight;
+    }
+
     /**
      * Get the explicit height of this Drawing.
      *
@@ -416,6 +553,46 @@ public class Drawing {
         return this.getSVG();
     }
 
+    /**
+     * Render this Drawing, at a given width and height, to one or more sinks at once.
+     * <p>
+     * The Drawing is laid out and its Shapes are walked only once, however many sinks there are, so rendering, for
+     * example, SVG, an image and a hit map together costs little more than rendering any one of them.
+     *
+     * @param drawingWidth  the width of the Drawing.
+     * @param drawingHeight the height of the Drawing.
+     * @param sinks         the sinks to which to render, such as an {@link SVGSink}, an {@link ImageSink} and a
+     *                      {@link HitMapSink}.
+     */
+    public final void render(@NotNull final Integer drawingWidth, @NotNull final Integer drawingHeight,
+                             @NotNull final RenderSink... sinks) {
+        this.setExplicitDimensions(drawingWidth.floatValue(), drawingHeight.floatValue());
+        @NotNull final RenderSink sink = sinks.length == 1 ? sinks[0] : new BroadcastSink(sinks);
+        sink.begin(this, drawingWidth, drawingHeight);
+        for (@NotNull final Shape shape : this.contents) {
+            sink.beginShape(shape);
+            shape.render(sink);
+        }
+        sink.end();
+    }
+
+    /**
+     * Get a raster image of this Drawing, of a given width and height.
+     * <p>
+     * The image is painted with Java 2D, which needs no display, so this method works in headless mode. Images larger
+     * than a single tile are painted tile by tile on several threads.
+     *
+     * @param drawingWidth  the width of the image, in pixels.
+     * @param drawingHeight the height of the image, in pixels.
+     * @return an image of this Drawing, with a transparent background.
+     */
+    public final @NotNull BufferedImage getImage(@NotNull final Integer drawingWidth,
+                                                 @NotNull final Integer drawingHeight) {
+        @NotNull final ImageSink sink = new ImageSink();
+        this.render(drawingWidth, drawingHeight, sink);
+        return sink.getImage();
+    }
+
     /**
      * Get the SVG for this Drawing
      * <p>
@@ -425,8 +602,79 @@ public class Drawing {
      */
     public final @NotNull String getSVG() {
 
-        @NotNull final StringBuilder svgBuilder = new StringBuilder("<?xml version='1.0' standalone='no'?>");
+        @NotNull final StringBuilder svgBuilder = new StringBuilder();
+
+        // Shapes register shared definitions with the context as they go, so the body must be built first
+        @NotNull final SVGContext context = this.createSVGContext();
+        @NotNull final StringBuilder bodyBuilder = new StringBuilder();
+        if (this.elementIds) {
+            this.appendSVGWithElementIds(svgBuilder, context);
+        } else {
+            if (this.symbols) {
+                this.appendSVGWithSymbols(bodyBuilder, context);
+            } else if (this.hybridRendering) {
+                this.appendSVGWithImages(bodyBuilder, context);
+            } else if (this.pathCoalescing) {
+                this.appendSVGWithPaths(bodyBuilder, context);
+            } else {
+                for (@NotNull final String fragment : this.getSVGFragments(context)) {
+                    bodyBuilder.append(fragment);
+                }
+            }
+            svgBuilder.append(context.getDefs());
+            svgBuilder.append(bodyBuilder);
+        }
+
+        svgBuilder.append("</svg>");
+        // The start declares the namespaces that the body turned out to need
+        svgBuilder.insert(0, this.getSVGStart(context.hasXLinks()));
+        return svgBuilder.toString();
+    }
+
+    /**
+     * Creates the context for a rendering of this Drawing to SVG, with the options set on this Drawing.
+     *
+     * @return a new context.
+     */
+    @NotNull
+    SVGContext createSVGContext() {
+        @NotNull final SVGContext context = new SVGContext();
+        context.setMarkerLibrary(this.markerLibrary);
+        context.setIdPrefix(this.idPrefix);
+        context.setStyleClasses(this.styleClasses);
+        context.setMinified(this.minified);
+        return context;
+    }
+
+    /**
+     * Get the start of the SVG for this Drawing, up to and including the opening <code>&lt;svg&gt;</code> tag.
+     *
+     * @return the XML declaration, unless minified, and the opening tag with the explicit width and height.
+     */
+    @NotNull
+    String getSVGStart() {
+        return this.getSVGStart(false);
+    }
+
+    /**
+     * Get the start of the SVG for this Drawing, up to and including the opening <code>&lt;svg&gt;</code> tag.
+     *
+     * @param xlinks whether to declare the XLink namespace, for the references in <code>&lt;use&gt;</code> and
+     *               <code>&lt;image&gt;</code>.
+     * @return the XML declaration, unless minified, and the opening tag with the explicit width and height.
+     */
+    @NotNull
+    private String getSVGStart(final boolean xlinks) {
+        @NotNull final StringBuilder svgBuilder = new StringBuilder();
+        if (!this.minified) {
+            // The declaration only restates the XML defaults
+            svgBuilder.append("<?xml version='1.0' standalone='no'?>");
+        }
         svgBuilder.append("<svg xmlns='http://www.w3.org/2000/svg'");
+        if (xlinks) {
+            // SVG 1.1 renderers only follow references in the XLink namespace
+            svgBuilder.append(" xmlns:xlink='http://www.w3.org/1999/xlink'");
+        }
 
         @Nullable final Number bdWidth = this.getExplicitWidth();
         if (bdWidth != null) {
@@ -445,13 +693,590 @@ public class Drawing {
         }
 
         svgBuilder.append(">");
+        return svgBuilder.toString();
+    }
+
+    /**
+     * Get the URL of the shared marker library used by this Drawing, if any.
+     *
+     * @return the URL of the marker library, or <code>null</code> if this Drawing defines its own markers.
+     */
+    @Nullable
+    public final String getMarkerLibrary() {
+        return this.markerLibrary;
+    }
+
+    /**
+     * Set the URL of a shared marker library for this Drawing to refer to.
+     * <p>
+     * Lines whose LineEndings have default settings will refer to markers in the library rather than defining their
+     * own. The library itself comes from {@link MarkerLibrary#getSVG()}. Characters that would break the CSS
+     * <code>url(...)</code> that refers to a marker, such as spaces and parentheses, are percent-encoded.
+     *
+     * @param url the URL at which the marker library is served, such as <code>markers.svg</code>, or
+     *            <code>null</code> to define every marker in this Drawing.
+     */
+    public final void setMarkerLibrary(@Nullable final String url) {
+        this.markerLibrary = url;
+    }
+
+    /**
+     * Get the prefix of every id and CSS class name that this Drawing generates.
+     *
+     * @return the prefix, which is empty by default.
+     */
+    @NotNull
+    public final String getIdPrefix() {
+        return this.idPrefix;
+    }
 
+    /**
+     * Set the prefix of every id and CSS class name that this Drawing generates, such as the ids of markers, symbols
+     * and element groups and the names of style classes.
+     * <p>
+     * Ids are numbered from zero in each rendering, so two drawings inlined in the same HTML page would otherwise
+     * define the same ids, and each would draw with the other's markers. Give each such Drawing its own prefix.
+     *
+     * @param idPrefix the prefix: empty, or a letter or underscore followed by letters, digits, underscores and
+     *                 hyphens.
+     * @throws IllegalArgumentException if the prefix cannot start an id.
+     */
+    public final void setIdPrefix(@NotNull final String idPrefix) {
+        if (!Drawing.ID_PREFIX.matcher(idPrefix).matches()) {
+            throw new IllegalArgumentException("Not a valid id prefix: " + idPrefix);
+        }
+        this.idPrefix = idPrefix;
+    }
+
+    /**
+     * Indicate whether this Drawing writes styles as generated CSS classes.
+     *
+     * @return <code>true</code> if Shapes refer to generated CSS classes, <code>false</code> if each Shape writes
+     * its own style attributes.
+     */
+    public final boolean hasStyleClasses() {
+        return this.styleClasses;
+    }
+
+    /**
+     * Set whether this Drawing writes styles as generated CSS classes.
+     * <p>
+     * When set, each distinct combination of fill, stroke and stroke width becomes one short CSS class in a
+     * <code>&lt;style&gt;</code> element, and Shapes refer to the class instead of repeating the attributes. Drawings
+     * in which many Shapes share a style become much smaller, and restyling all those Shapes takes one edit.
+     *
+     * @param styleClasses <code>true</code> to generate CSS classes.
+     */
+    public final void setStyleClasses(final boolean styleClasses) {
+        this.styleClasses = styleClasses;
+    }
+
+    /**
+     * Append the definitions and contents of this Drawing, each in a group with a stable id, and remember them as
+     * the elements of a new epoch.
+     *
+     * @param svgBuilder the builder to which to append the SVG.
+     * @param context    the state of this rendering.
+     */
+    private void appendSVGWithElementIds(@NotNull final StringBuilder svgBuilder, @NotNull final SVGContext context) {
+        @NotNull final String[] fragments = this.getSVGFragments(context);
+        @NotNull final Map<String, String> elements = new LinkedHashMap<>();
+        // Ids that change with the prefix make a patch across the change replace the whole drawing
+        elements.put(this.idPrefix + Drawing.DEFS_ID, context.getDefs());
+        int i = 0;
         for (@NotNull final Shape content : this.contents) {
-            svgBuilder.append(content.getSVG());
+            @Nullable String id = this.shapeElementIds.get(content);
+            if (id == null) {
+                // Base 36 keeps the ids short in large drawings
+                id = "e" + Long.toString(this.elementIdCount, Character.MAX_RADIX);
+                this.elementIdCount++;
+                this.shapeElementIds.put(content, id);
+            }
+            elements.put(this.idPrefix + id, fragments[i]);
+            i++;
         }
+        for (@NotNull final Map.Entry<String, String> element : elements.entrySet()) {
+            Drawing.appendGroup(svgBuilder, element.getKey(), element.getValue());
+        }
+        this.epoch++;
+        this.renderings.put(this.epoch, elements);
+    }
 
-        svgBuilder.append("</svg>");
-        return svgBuilder.toString();
+    /**
+     * Append a group with an id.
+     *
+     * @param svgBuilder the builder to which to append the SVG.
+     * @param id         the id of the group.
+     * @param content    the SVG inside the group.
+     */
+    private static void appendGroup(@NotNull final StringBuilder svgBuilder, @NotNull final String id,
+                                    @NotNull final String content) {
+        svgBuilder.append("<g id='").append(id).append("'>").append(content).append("</g>");
+    }
+
+    /**
+     * Get the epoch of the most recent rendering of this Drawing with element ids.
+     * <p>
+     * Pass the epoch to {@link #getSVGPatch(long)} to get only what has changed since that rendering.
+     *
+     * @return the epoch, or 0 if this Drawing has not been drawn with element ids.
+     */
+    public final long getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Get the changes to the SVG for this Drawing since an earlier rendering, as a patch that a client can apply to
+     * its DOM.
+     * <p>
+     * Assumes that the explicit width and height have been set, and that this Drawing draws element ids. Each call
+     * draws this Drawing again and starts a new epoch. The patch is a JSON object such as
+     * <code>{"from":1,"to":2,"ops":[["~","e3","&lt;circle ... /&gt;"]]}</code>, whose operations are:
+     * <ul>
+     * <li><code>["~",id,svg]</code>: replace the content of the element with the id, which is <code>defs</code> for
+     * the definitions;</li>
+     * <li><code>["=",svg]</code>: replace the whole drawing, when the epoch is not one of the most recent renderings
+     * or the contents of this Drawing have been replaced since.</li>
+     * </ul>
+     * Any of the most recent renderings can be patched, whichever client or call made them, so several clients can
+     * follow the same Drawing.
+     *
+     * @param epoch the epoch of the rendering that the client has, from {@link #getEpoch()}.
+     * @return the patch from that epoch to the new one.
+     * @throws UnsupportedOperationException if this Drawing does not draw element ids.
+     */
+    public final @NotNull String getSVGPatch(final long epoch) {
+        if (!this.elementIds) {
+            throw new UnsupportedOperationException("Cannot get a patch for a drawing without element ids");
+        }
+        @Nullable final Map<String, String> previousElements = this.renderings.get(epoch);
+        @NotNull final String svg = this.getSVG();
+        @NotNull final Map<String, String> elements = this.renderings.get(this.epoch);
+
+        @NotNull final StringBuilder patch = new StringBuilder("{\"from\":");
+        patch.append(epoch).append(",\"to\":").append(this.epoch).append(",\"ops\":[");
+        @NotNull final List<String> ops = new ArrayList<>();
+        // Shapes can only be added before the layout, so the elements are the same unless the contents were replaced
+        if (previousElements == null
+                || !new ArrayList<>(previousElements.keySet()).equals(new ArrayList<>(elements.keySet()))) {
+            ops.add(Drawing.getPatchOp("=", svg));
+        } else {
+            for (@NotNull final Map.Entry<String, String> element : elements.entrySet()) {
+                if (!previousElements.get(element.getKey()).equals(element.getValue())) {
+                    ops.add(Drawing.getPatchOp("~", element.getKey(), element.getValue()));
+                }
+            }
+        }
+        patch.append(String.join(",", ops));
+        patch.append("]}");
+        return patch.toString();
+    }
+
+    /**
+     * Get one operation of a patch.
+     *
+     * @param arguments the operation code and its arguments.
+     * @return the operation as a JSON array.
+     */
+    @NotNull
+    private static String getPatchOp(@NotNull final String... arguments) {
+        @NotNull final StringBuilder op = new StringBuilder("[");
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0) {
+                op.append(",");
+            }
+            JSON.appendString(op, arguments[i]);
+        }
+        return op.append("]").toString();
+    }
+
+    /**
+     * Indicate whether this Drawing puts each Shape in a group with a stable id.
+     *
+     * @return <code>true</code> if this Drawing draws element ids, <code>false</code> otherwise.
+     */
+    public final boolean hasElementIds() {
+        return this.elementIds;
+    }
+
+    /**
+     * Set whether this Drawing puts each Shape in a group with a stable id, so that clients can apply patches from
+     * {@link #getSVGPatch(long)} instead of fetching the whole drawing again.
+     * <p>
+     * Each Shape keeps its id for as long as it is part of this Drawing. The definitions go in a group with the id
+     * <code>defs</code>. Both kinds of id start with the id prefix, if any. Element ids take precedence over symbols
+     * and path coalescing, which merge Shapes.
+     *
+     * @param elementIds <code>true</code> to draw element ids.
+     */
+    public final void setElementIds(final boolean elementIds) {
+        this.elementIds = elementIds;
+    }
+
+    /**
+     * Get the SVG for each of the contents of this Drawing, in order, generating the SVG for large drawings in
+     * parallel.
+     * <p>
+     * Once the layout is done, the SVG for each Shape is independent of the others, except for definitions such as
+     * markers that Shapes register with the context. The SVG for Shapes that do not register definitions is
+     * generated in chunks on the common ForkJoinPool; the rest is then generated in order on this thread, so the
+     * definitions are registered in the same order as they would be sequentially. The result is identical to
+     * generating the SVG for each Shape in turn.
+     *
+     * @param context the state of this rendering.
+     * @return the SVG for each Shape, in the order in which the Shapes were added.
+     */
+    @NotNull
+    private String[] getSVGFragments(@NotNull final SVGContext context) {
+        @NotNull final Shape[] shapes = this.contents.toArray(new Shape[0]);
+        @NotNull final String[] fragments = new String[shapes.length];
+        Drawing.fillSVGFragments(shapes, fragments, context, 0, shapes.length);
+        return fragments;
+    }
+
+    /**
+     * Generate the SVG for a range of Shapes, in parallel if the range is large enough.
+     * <p>
+     * Shapes that register definitions are generated afterwards, in order, so that definitions are registered in the
+     * same order however the work is split.
+     *
+     * @param shapes    all the Shapes being drawn.
+     * @param fragments the SVG for each Shape, filled in for the Shapes in the range.
+     * @param context   the state of this rendering.
+     * @param start     the index of the first Shape in the range.
+     * @param end       the index after the last Shape in the range.
+     */
+    static void fillSVGFragments(@NotNull final Shape[] shapes, @NotNull final String[] fragments,
+                                 @NotNull final SVGContext context, final int start, final int end) {
+        if (end - start >= Drawing.PARALLEL_THRESHOLD && !context.hasStyleClasses()) {
+            ForkJoinPool.commonPool().invoke(new FragmentTask(shapes, fragments, context, start, end));
+        }
+        for (int i = start; i < end; i++) {
+            if (fragments[i] == null) {
+                fragments[i] = shapes[i].getSVGFragment(context);
+            }
+        }
+    }
+
+    /**
+     * Get the coarse preview for a progressive rendering.
+     * <p>
+     * The preview fills the outlines of the largest Shapes, by explicit area, leaving out strokes, Text and markers.
+     * Outlines with the same fill are merged into a single path, so the preview stays small however many Shapes there
+     * are.
+     *
+     * @param shapes  all the Shapes being drawn, laid out.
+     * @param context the state of this rendering.
+     * @return a group holding the preview, or the empty string if no Shape has an area to fill.
+     */
+    @NotNull
+    private static String getSVGPreview(@NotNull final Shape[] shapes, @NotNull final SVGContext context) {
+        @NotNull final double[] areas = new double[shapes.length];
+        // Keep the smallest of the largest Shapes at the head, ready to be replaced by a larger one
+        @NotNull final PriorityQueue<Integer> largest = new PriorityQueue<>(Comparator.comparingDouble(i -> areas[i]));
+        for (int i = 0; i < shapes.length; i++) {
+            areas[i] = shapes[i].getExplicitArea();
+            if (areas[i] > 0.0 && !"none".equals(shapes[i].getFill())) {
+                largest.add(i);
+                if (largest.size() > Drawing.PREVIEW_SIZE) {
+                    largest.poll();
+                }
+            }
+        }
+        @NotNull final Integer[] indices = largest.toArray(new Integer[0]);
+        // Overlapping outlines are then filled in drawing order, at least within each fill
+        Arrays.sort(indices);
+        @NotNull final Map<String, PathData> outlines = new LinkedHashMap<>();
+        for (@NotNull final Integer index : indices) {
+            @NotNull final Shape shape = shapes[index];
+            shape.appendSVGOutline(outlines.computeIfAbsent(shape.getFill(), fill -> new PathData()));
+        }
+        @NotNull final StringBuilder svgBuilder = new StringBuilder();
+        for (@NotNull final Map.Entry<String, PathData> entry : outlines.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            svgBuilder.append("<path d='").append(entry.getValue()).append("'");
+            if (entry.getKey() != null && !context.isOmitted(entry.getKey(), "black")) {
+                svgBuilder.append(" fill='").append(entry.getKey()).append("'");
+            }
+            svgBuilder.append(context.getEmptyElementEnd());
+        }
+        if (svgBuilder.length() == 0) {
+            return "";
+        }
+        return "<g id='" + context.getIdPrefix() + Drawing.PREVIEW_ID + "'>" + svgBuilder + "</g>"
+                + context.getNewLine();
+    }
+
+    /**
+     * Append the SVG for the contents of this Drawing, drawing repeated Shapes as uses of a shared symbol.
+     * <p>
+     * Each Shape is first serialized relative to its own center. The result captures its geometry, style and text,
+     * so Shapes with identical results look identical wherever they are. Any result that occurs more than once
+     * becomes a symbol, and each of those Shapes becomes a <code>&lt;use&gt;</code> at its center; Shapes that occur
+     * only once are drawn as usual.
+     *
+     * @param svgBuilder the builder to which to append the SVG.
+     * @param context    the state of this rendering.
+     */
+    private void appendSVGWithSymbols(@NotNull final StringBuilder svgBuilder, @NotNull final SVGContext context) {
+        @NotNull final List<String> fragments = new ArrayList<>(this.contents.size());
+        @NotNull final Map<String, Integer> counts = new HashMap<>();
+        for (@NotNull final Shape content : this.contents) {
+            @NotNull final String fragment = this.getSVGRelativeToCenter(content, context);
+            fragments.add(fragment);
+            counts.merge(fragment, 1, Integer::sum);
+        }
+        int index = 0;
+        for (@NotNull final Shape content : this.contents) {
+            @NotNull final String fragment = fragments.get(index);
+            index++;
+            if (counts.get(fragment) > 1) {
+                context.setXLinks(true);
+                svgBuilder.append("<use xlink:href='#");
+                svgBuilder.append(context.addSymbol(fragment));
+                svgBuilder.append("' x='");
+                svgBuilder.append(content.getExplicitXPositionCenter().toSVG());
+                svgBuilder.append("' y='");
+                svgBuilder.append(content.getExplicitYPositionCenter().toSVG());
+                svgBuilder.append("'");
+                svgBuilder.append(context.getEmptyElementEnd());
+            } else {
+                svgBuilder.append(content.getSVGFragment(context));
+            }
+        }
+    }
+
+    /**
+     * Append the SVG for the contents of this Drawing, drawing dense regions as embedded images.
+     * <p>
+     * Each image takes the place of the first Shape drawn in it, and the other Shapes drawn in it are left out. The
+     * plan ensures that no Shape drawn in between overlaps the image, so moving those Shapes forward does not change
+     * what is drawn.
+     *
+     * @param svgBuilder the builder to which to append the SVG.
+     * @param context    the state of this rendering.
+     * @see HybridPlan
+     */
+    private void appendSVGWithImages(@NotNull final StringBuilder svgBuilder, @NotNull final SVGContext context) {
+        @NotNull final Shape[] shapes = this.contents.toArray(new Shape[0]);
+        @NotNull final String[] fragments = this.getSVGFragments(context);
+        @NotNull final HybridPlan plan = HybridPlan.create(shapes, fragments, this.getExplicitWidth().doubleValue(),
+                this.getExplicitHeight().doubleValue());
+        for (int i = 0; i < shapes.length; i++) {
+            @Nullable final HybridPlan.Region region = plan.getRegion(i);
+            if (region == null) {
+                svgBuilder.append(fragments[i]);
+            } else if (region.getFirstShapeIndex() == i) {
+                svgBuilder.append(this.getSVGImage(shapes, region, context));
+            }
+        }
+    }
+
+    /**
+     * Get an <code>&lt;image&gt;</code> that draws the Shapes in a region as an embedded PNG.
+     *
+     * @param shapes  all the Shapes being drawn.
+     * @param region  the region to draw.
+     * @param context the state of this rendering.
+     * @return SVG representing the Shapes in the region.
+     */
+    @NotNull
+    private String getSVGImage(@NotNull final Shape[] shapes, @NotNull final HybridPlan.Region region,
+                               @NotNull final SVGContext context) {
+        @NotNull final ImageSink sink = new ImageSink();
+        sink.begin(this, region.getWidth(), region.getHeight());
+        for (final int index : region.getShapeIndices()) {
+            shapes[index].render(sink);
+        }
+        @NotNull final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(Rasterizer.rasterize(sink.getOperations(), region.getX(), region.getY(),
+                    region.getWidth(), region.getHeight()), "png", png);
+        } catch (final IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        context.setXLinks(true);
+        return "<image x='" + region.getX() + "' y='" + region.getY() + "' width='" + region.getWidth()
+                + "' height='" + region.getHeight() + "' xlink:href='data:image/png;base64,"
+                + Base64.getEncoder().encodeToString(png.toByteArray()) + "'" + context.getEmptyElementEnd()
+                + context.getNewLine();
+    }
+
+    /**
+     * Append the SVG for the contents of this Drawing, merging runs of consecutive Shapes that have the same style
+     * into a single <code>&lt;path&gt;</code>.
+     *
+     * @param svgBuilder the builder to which to append the SVG.
+     * @param context    the state of this rendering.
+     */
+    private void appendSVGWithPaths(@NotNull final StringBuilder svgBuilder, @NotNull final SVGContext context) {
+        @NotNull final List<Shape> run = new ArrayList<>();
+        @NotNull PathData runPathData = new PathData();
+        for (@NotNull final Shape content : this.contents) {
+            if (!run.isEmpty() && run.get(0).getSVGStyle().equals(content.getSVGStyle())
+                    && content.appendSVGPathData(runPathData)) {
+                run.add(content);
+                continue;
+            }
+            Drawing.appendRun(svgBuilder, run, runPathData, context);
+            runPathData = new PathData();
+            if (content.appendSVGPathData(runPathData)) {
+                run.add(content);
+            } else {
+                svgBuilder.append(content.getSVGFragment(context));
+            }
+        }
+        Drawing.appendRun(svgBuilder, run, runPathData, context);
+    }
+
+    /**
+     * Append a run of Shapes that have the same style, as a single path if there is more than one of them, and
+     * start a new run.
+     *
+     * @param svgBuilder  the builder to which to append the SVG.
+     * @param run         the Shapes in the run; emptied on return.
+     * @param runPathData the path data for the Shapes in the run.
+     * @param context     the state of this rendering.
+     */
+    private static void appendRun(@NotNull final StringBuilder svgBuilder, @NotNull final List<Shape> run,
+                                  @NotNull final PathData runPathData, @NotNull final SVGContext context) {
+        if (run.size() == 1) {
+            svgBuilder.append(run.get(0).getSVGFragment(context));
+        } else if (run.size() > 1) {
+            @NotNull final List<String> style = run.get(0).getSVGStyle();
+            svgBuilder.append("<path d='");
+            svgBuilder.append(runPathData);
+            svgBuilder.append("'");
+            if (context.hasStyleClasses()) {
+                svgBuilder.append(context.getStyleClass(style.get(0), style.get(1), style.get(2)));
+            } else {
+                @NotNull final String[] names = {"fill", "stroke", "stroke-width"};
+                @NotNull final String[] defaults = {"black", "none", "1"};
+                for (int i = 0; i < names.length; i++) {
+                    if (style.get(i) != null && !context.isOmitted(style.get(i), defaults[i])) {
+                        svgBuilder.append(" ").append(names[i]).append("='").append(style.get(i)).append("'");
+                    }
+                }
+            }
+            svgBuilder.append(context.getEmptyElementEnd());
+        }
+        run.clear();
+    }
+
+    /**
+     * Get the SVG for a Shape as if its center were at the origin.
+     *
+     * @param shape   the Shape to draw.
+     * @param context the state of this rendering.
+     * @return SVG representing the Shape, relative to its center.
+     */
+    @NotNull
+    private String getSVGRelativeToCenter(@NotNull final Shape shape, @NotNull final SVGContext context) {
+        // The Shape is not moved, so rendering leaves it, and the SVG cached for it, untouched
+        context.setOrigin(shape.getExplicitXPositionCenter(), shape.getExplicitYPositionCenter());
+        try {
+            return shape.getSVG(context);
+        } finally {
+            context.setOrigin(null, null);
+        }
+    }
+
+    /**
+     * Indicate whether this Drawing writes minified SVG.
+     *
+     * @return <code>true</code> if the SVG is minified, <code>false</code> otherwise.
+     */
+    public final boolean isMinified() {
+        return this.minified;
+    }
+
+    /**
+     * Set whether this Drawing writes minified SVG.
+     * <p>
+     * Minified SVG leaves out the XML declaration, the line breaks between elements, the space before
+     * <code>/&gt;</code>, and attributes that have their SVG default values, such as a fill of <code>black</code> or a
+     * coordinate of <code>0</code>. It draws the same picture in fewer bytes, for serving drawings in high volume.
+     *
+     * @param minified <code>true</code> to write minified SVG.
+     */
+    public final void setMinified(final boolean minified) {
+        this.minified = minified;
+    }
+
+    /**
+     * Indicate whether this Drawing merges consecutive Shapes that have the same style into single paths.
+     *
+     * @return <code>true</code> if same-styled Shapes are merged into paths, <code>false</code> otherwise.
+     */
+    public final boolean hasPathCoalescing() {
+        return this.pathCoalescing;
+    }
+
+    /**
+     * Set whether this Drawing merges consecutive Shapes that have the same style into single paths.
+     * <p>
+     * When set, each run of consecutive Lines, Rectangles and Circles with the same fill, stroke and stroke width is
+     * drawn as one <code>&lt;path&gt;</code>, which browsers draw much faster than the same number of separate
+     * elements. Shapes with Text and Lines with LineEndings are drawn separately. Within a merged path, all the
+     * strokes are painted after all the fills, so Shapes that overlap one another can look slightly different.
+     * <p>
+     * Symbols, if set, take precedence over path coalescing.
+     *
+     * @param pathCoalescing <code>true</code> to merge same-styled Shapes into paths.
+     */
+    public final void setPathCoalescing(final boolean pathCoalescing) {
+        this.pathCoalescing = pathCoalescing;
+    }
+
+    /**
+     * Indicate whether this Drawing draws repeated Shapes as uses of shared symbols.
+     *
+     * @return <code>true</code> if repeated Shapes are drawn as symbols, <code>false</code> otherwise.
+     */
+    public final boolean hasSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Set whether this Drawing draws repeated Shapes as uses of shared symbols.
+     * <p>
+     * When set, Shapes that look identical apart from their position (the same geometry, style and text) are
+     * defined once as a <code>&lt;symbol&gt;</code> and drawn with <code>&lt;use&gt;</code>, which makes drawings
+     * with many repeated Shapes much smaller.
+     *
+     * @param symbols <code>true</code> to draw repeated Shapes as symbols.
+     */
+    public final void setSymbols(final boolean symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Indicate whether this Drawing draws dense regions as embedded raster images.
+     *
+     * @return <code>true</code> if dense regions are drawn as images, <code>false</code> otherwise.
+     */
+    public final boolean hasHybridRendering() {
+        return this.hybridRendering;
+    }
+
+    /**
+     * Set whether this Drawing draws dense regions as embedded raster images.
+     * <p>
+     * When set, regions crowded with Shapes, as in a dense scatter plot, are drawn as PNG <code>&lt;image&gt;</code>
+     * elements wherever an estimate of the size of the output and the work of drawing it says that an image is
+     * cheaper than the Shapes themselves. Sparse regions, Shapes too large to fit within a region, Text, Shapes with
+     * Text and Lines with LineEndings stay vector, and are drawn in their place among the images. This bounds the
+     * size of the SVG, and the time a browser takes to draw it, however dense the drawing is.
+     * <p>
+     * Symbols, if set, take precedence over hybrid rendering, which in turn takes precedence over path coalescing.
+     *
+     * @param hybridRendering <code>true</code> to draw dense regions as images.
+     */
+    public final void setHybridRendering(final boolean hybridRendering) {
+        this.hybridRendering = hybridRendering;
     }
 
     /**
@@ -611,12 +1436,211 @@ public class Drawing {
      * Write SVG representing this drawing to a file.
      *
      * @param filename The name of the file to which to write.
+     * @param width    The width of the drawing.
+     * @param height   The height of the drawing.
      * @throws IOException If there is a problem writing to the file.
      */
     public final void writeToFile(@NotNull final String filename, @NotNull final Integer width, @NotNull final Integer height) throws IOException {
-        @NotNull final String svg = this.getSVG(width, height);
         try (@NotNull final BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(svg);
+            this.writeSVG(writer, width, height);
+        }
+    }
+
+    /**
+     * Write gzip-compressed SVG (SVGZ) representing this drawing to a file.
+     * <p>
+     * Large drawings are compressed on several threads at once; see {@link ParallelGzipOutputStream}.
+     *
+     * @param filename The name of the file to which to write, conventionally ending in <code>.svgz</code>.
+     * @param width    The width of the drawing.
+     * @param height   The height of the drawing.
+     * @throws IOException If there is a problem writing to the file.
+     */
+    public final void writeToSVGZFile(@NotNull final String filename, @NotNull final Integer width,
+                                      @NotNull final Integer height) throws IOException {
+        try (@NotNull final Writer writer = new OutputStreamWriter(
+                new ParallelGzipOutputStream(new FileOutputStream(filename)), StandardCharsets.UTF_8)) {
+            this.writeSVG(writer, width, height);
+        }
+    }
+
+    /**
+     * Write SVG representing this drawing to a stream.
+     * <p>
+     * The SVG for a large drawing is generated in chunks on other threads while earlier chunks are written, so that
+     * generating and writing overlap, and only a few chunks are held in memory at a time; see {@link SVGPipeline}. The
+     * SVG is the same as from {@link #getSVG(Integer, Integer)}. Small drawings, and drawings that use symbols, merged
+     * paths, hybrid rendering, element ids or style classes, are generated in full before they are written.
+     *
+     * @param writer The writer to which to write. The writer is flushed, but not closed.
+     * @param width  The width of the drawing.
+     * @param height The height of the drawing.
+     * @throws IOException If there is a problem writing to the writer.
+     */
+    public final void writeSVG(@NotNull final Writer writer, @NotNull final Integer width,
+                               @NotNull final Integer height) throws IOException {
+        this.setExplicitDimensions(width.floatValue(), height.floatValue());
+        @NotNull final Shape[] shapes = this.contents.toArray(new Shape[0]);
+        if (shapes.length < Drawing.PARALLEL_THRESHOLD || this.symbols || this.pathCoalescing || this.hybridRendering
+                || this.elementIds || this.styleClasses) {
+            writer.write(this.getSVG());
+        } else {
+            SVGPipeline.write(this, shapes, this.createSVGContext(), writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write SVG representing this drawing to a stream progressively, as a coarse preview followed by refinements.
+     * <p>
+     * The preview fills the outlines of the largest Shapes, with no strokes, Text or markers, and is flushed before any
+     * Shape is drawn in full, so a client reading the stream can show the layout of even a very large drawing almost
+     * at once. The Shapes are then drawn in order, in chunks, with a flush after each chunk. The document ends with
+     * the marker definitions and a style rule that hides the preview, so once complete it looks the same as the SVG
+     * from {@link #getSVG(Integer, Integer)}.
+     * <p>
+     * Every chunk carries its own styles, so a progressive rendering does not use symbols, merged paths, element ids
+     * or style classes, even if they are set on this Drawing.
+     *
+     * @param writer The writer to which to write. The writer is flushed after each layer, but not closed.
+     * @param width  The width of the drawing.
+     * @param height The height of the drawing.
+     * @throws IOException If there is a problem writing to the writer.
+     */
+    public final void writeProgressiveSVG(@NotNull final Writer writer, @NotNull final Integer width,
+                                          @NotNull final Integer height) throws IOException {
+        this.setExplicitDimensions(width.floatValue(), height.floatValue());
+        @NotNull final SVGContext context = this.createSVGContext();
+        context.setStyleClasses(false);
+        @NotNull final Shape[] shapes = this.contents.toArray(new Shape[0]);
+        writer.write(this.getSVGStart());
+        @NotNull final String preview = Drawing.getSVGPreview(shapes, context);
+        writer.write(preview);
+        writer.flush();
+        @NotNull final String[] fragments = new String[shapes.length];
+        for (int start = 0; start < shapes.length; start += Drawing.REFINEMENT_CHUNK_SIZE) {
+            final int end = Math.min(start + Drawing.REFINEMENT_CHUNK_SIZE, shapes.length);
+            Drawing.fillSVGFragments(shapes, fragments, context, start, end);
+            for (int i = start; i < end; i++) {
+                writer.write(fragments[i]);
+                // The chunk has been written, so its SVG need not be held any longer
+                fragments[i] = null;
+            }
+            writer.flush();
+        }
+        // Browsers resolve references to definitions that come later in the document
+        writer.write(context.getDefs());
+        if (!preview.isEmpty()) {
+            writer.write("<style>#" + context.getIdPrefix() + Drawing.PREVIEW_ID + "{display:none}</style>");
+        }
+        writer.write("</svg>");
+        writer.flush();
+    }
+
+    /**
+     * Write a PNG image of this drawing to a stream.
+     *
+     * @param outputStream The stream to which to write. The stream is not closed.
+     * @param width        The width of the image, in pixels.
+     * @param height       The height of the image, in pixels.
+     * @throws IOException If there is a problem writing to the stream.
+     * @see #getImage(Integer, Integer)
+     */
+    public final void writePNG(@NotNull final OutputStream outputStream, @NotNull final Integer width,
+                               @NotNull final Integer height) throws IOException {
+        ImageIO.write(this.getImage(width, height), "png", outputStream);
+    }
+
+    /**
+     * Write a PNG image of this drawing to a file.
+     *
+     * @param filename The name of the file to which to write, conventionally ending in <code>.png</code>.
+     * @param width    The width of the image, in pixels.
+     * @param height   The height of the image, in pixels.
+     * @throws IOException If there is a problem writing to the file.
+     * @see #getImage(Integer, Integer)
+     */
+    public final void writeToPNGFile(@NotNull final String filename, @NotNull final Integer width,
+                                     @NotNull final Integer height) throws IOException {
+        try (@NotNull final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(filename))) {
+            this.writePNG(outputStream, width, height);
+        }
+    }
+
+    /**
+     * Write this drawing as a pyramid of PNG tiles, for panning and zooming in a browser.
+     * <p>
+     * Zoom level <code>z</code> shows the whole drawing, square, in <code>2<sup>z</sup></code> by
+     * <code>2<sup>z</sup></code> tiles of 256 pixels, written to <code>z/x/y.png</code> under the directory, the
+     * layout that web map viewers expect. Tiles with nothing on them are not written. The drawing is laid out at the
+     * size of the deepest level.
+     *
+     * @param directory The directory under which to write the tiles.
+     * @param maxZoom   The deepest zoom level to write, from 0 to 16.
+     * @return The number of tiles written.
+     * @throws IOException If there is a problem writing a tile.
+     */
+    public final int writeToTilePyramid(@NotNull final String directory, final int maxZoom) throws IOException {
+        return TilePyramid.write(this, directory, maxZoom);
+    }
+
+    /**
+     * Write this drawing, with its layout, to a file in Drawl's binary format.
+     * <p>
+     * Lay the drawing out first, for example with {@link #setExplicitDimensions(Integer, Integer)}, so that the layout
+     * is saved too. Load the file with {@link DrawingFile#open(String)}.
+     *
+     * @param filename The name of the file to which to write.
+     * @throws IOException If there is a problem writing to the file.
+     */
+    public final void writeToDrawlFile(@NotNull final String filename) throws IOException {
+        DrawingFile.write(this, filename);
+    }
+
+    /**
+     * Generates the SVG for a range of Shapes that do not register definitions, splitting it into chunks.
+     */
+    private static final class FragmentTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final @NotNull Shape[] shapes;
+        private final @NotNull String[] fragments;
+        private final @NotNull SVGContext context;
+        private final int start;
+        private final int end;
+
+        /**
+         * Constructs a task.
+         *
+         * @param shapes    all the Shapes being drawn.
+         * @param fragments the SVG for each Shape, filled in by this task for Shapes that do not register definitions.
+         * @param context   the state of the rendering, which this task only reads.
+         * @param start     the index of the first Shape in the range.
+         * @param end       the index after the last Shape in the range.
+         */
+        FragmentTask(@NotNull final Shape[] shapes, @NotNull final String[] fragments,
+                     @NotNull final SVGContext context, final int start, final int end) {
+            this.shapes = shapes;
+            this.fragments = fragments;
+            this.context = context;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= Drawing.FRAGMENT_CHUNK_SIZE) {
+                for (int i = this.start; i < this.end; i++) {
+                    if (!this.shapes[i].hasSVGDefinitions()) {
+                        this.fragments[i] = this.shapes[i].getSVGFragment(this.context);
+                    }
+                }
+            } else {
+                final int middle = (this.start + this.end) >>> 1;
+                ForkJoinTask.invokeAll(new FragmentTask(this.shapes, this.fragments, this.context, this.start, middle),
+                        new FragmentTask(this.shapes, this.fragments, this.context, middle, this.end));
+            }
         }
     }
 }
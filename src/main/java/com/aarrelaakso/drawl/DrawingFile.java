@@ -0,0 +1,680 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Drawing saved, together with its layout, in Drawl's versioned binary format.
+ * <p>
+ * Save a Drawing with {@link Drawing#writeToDrawlFile(String)} and load it with {@link #open(String)}. The file
+ * holds a record for each Shape, with its style, its Text, the Shape it was placed next to, and its implicit and
+ * explicit layout, so a loaded Drawing renders without being laid out again. Opening a file maps it into memory and
+ * reads only its header; each Shape is read from the mapped file the first time that it is needed.
+ * <p>
+ * The file starts with the magic number <code>DRWL</code> and a version number. Files written by a later, incompatible
+ * version of Drawl are rejected rather than misread, as are files whose lengths, offsets or indices do not fit.
+ */
+public final class DrawingFile {
+
+    /**
+     * The first four bytes of every file, <code>DRWL</code>.
+     */
+    static final int MAGIC = 0x4452574C;
+
+    /**
+     * The version of the format written by this version of Drawl, which changes whenever the layout of the file does.
+     */
+    static final short VERSION = 1;
+
+    private static final byte SHAPE = 0;
+    private static final byte CIRCLE = 1;
+    private static final byte RECTANGLE = 2;
+    private static final byte LINE = 3;
+    private static final byte TEXT = 4;
+
+    private static final int STYLE_CLASSES = 1;
+    private static final int SYMBOLS = 1 << 1;
+    private static final int PATH_COALESCING = 1 << 2;
+    private static final int MINIFIED = 1 << 3;
+    private static final int ELEMENT_IDS = 1 << 4;
+    private static final int HYBRID_RENDERING = 1 << 5;
+
+    /**
+     * The index that stands for no string or no Shape.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The size, in bytes, of the part of a record that is common to every type of Shape.
+     */
+    private static final int COMMON_SIZE = 8 + 32 + 16 + 32;
+
+    private final @NotNull ByteBuffer buffer;
+    private final int flags;
+    private final double explicitWidth;
+    private final double explicitHeight;
+    private final int markerLibrary;
+    private final int idPrefix;
+    private final int[] stringOffsets;
+    private final @Nullable String[] strings;
+    private final int contentCount;
+    private final int[] recordOffsets;
+    private final @Nullable Shape[] shapes;
+    private @Nullable Drawing drawing;
+
+    /**
+     * Reads the header of a file.
+     *
+     * @param buffer the contents of the file.
+     * @throws IOException if the buffer does not hold a file in a supported version of the format.
+     */
+    private DrawingFile(@NotNull final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Drawl file");
+            }
+            final short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported Drawl file version: " + version);
+            }
+            this.flags = buffer.getShort();
+            this.explicitWidth = buffer.getDouble();
+            this.explicitHeight = buffer.getDouble();
+            this.markerLibrary = buffer.getInt();
+            this.idPrefix = buffer.getInt();
+            this.stringOffsets = new int[DrawingFile.getTableSize(buffer)];
+            for (int i = 0; i < this.stringOffsets.length; i++) {
+                final int offset = buffer.getInt();
+                if (offset < 0 || offset > buffer.limit() - 4 || buffer.getInt(offset) < 0
+                        || buffer.getInt(offset) > buffer.limit() - 4 - offset) {
+                    throw new IOException("Corrupt Drawl file: string " + i + " lies outside the file");
+                }
+                this.stringOffsets[i] = offset;
+            }
+            this.strings = new String[this.stringOffsets.length];
+            DrawingFile.checkIndex(this.markerLibrary, this.strings.length, "string");
+            DrawingFile.checkIndex(this.idPrefix, this.strings.length, "string");
+            this.contentCount = buffer.getInt();
+            this.recordOffsets = new int[DrawingFile.getTableSize(buffer)];
+            if (this.contentCount < 0 || this.contentCount > this.recordOffsets.length) {
+                throw new IOException("Corrupt Drawl file: " + this.contentCount + " Shapes in a file of "
+                        + this.recordOffsets.length + " records");
+            }
+            for (int i = 0; i < this.recordOffsets.length; i++) {
+                final int offset = buffer.getInt();
+                if (offset < 0 || offset >= buffer.limit()) {
+                    throw new IOException("Corrupt Drawl file: record " + i + " lies outside the file");
+                }
+                this.recordOffsets[i] = offset;
+            }
+            this.shapes = new Shape[this.recordOffsets.length];
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated Drawl file", e);
+        }
+    }
+
+    /**
+     * Opens a file, mapping it into memory.
+     *
+     * @param filename the name of the file.
+     * @return the file, of which only the header has been read.
+     * @throws IOException if the file cannot be read or is not in a supported version of the format.
+     */
+    @NotNull
+    public static DrawingFile open(@NotNull final String filename) throws IOException {
+        try (@NotNull final RandomAccessFile file = new RandomAccessFile(filename, "r");
+             @NotNull final FileChannel channel = file.getChannel()) {
+            // The mapping remains valid after the channel is closed
+            @NotNull final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DrawingFile(buffer);
+        }
+    }
+
+    /**
+     * Reads a file from bytes already in memory.
+     *
+     * @param bytes the contents of the file.
+     * @return the file, of which only the header has been read.
+     * @throws IOException if the bytes are not a file in a supported version of the format.
+     */
+    @NotNull
+    public static DrawingFile read(@NotNull final byte[] bytes) throws IOException {
+        return new DrawingFile(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Gets the Drawing saved in this file, reading any Shapes that have not been read yet.
+     *
+     * @return the Drawing, with its layout and options as they were when it was saved.
+     * @throws IOException if a Shape record is corrupt.
+     */
+    @NotNull
+    public synchronized Drawing getDrawing() throws IOException {
+        if (this.drawing == null) {
+            @NotNull final List<Shape> contents = new ArrayList<>(this.contentCount);
+            for (int i = 0; i < this.contentCount; i++) {
+                contents.add(this.getShape(i));
+            }
+            @NotNull final Drawing result = new Drawing();
+            result.restore(contents, DrawingFile.toNumber(this.explicitWidth),
+                    DrawingFile.toNumber(this.explicitHeight));
+            result.setMarkerLibrary(this.getString(this.markerLibrary));
+            @Nullable final String idPrefix = this.getString(this.idPrefix);
+            try {
+                result.setIdPrefix(idPrefix == null ? "" : idPrefix);
+            } catch (final IllegalArgumentException e) {
+                throw new IOException("Corrupt Drawl file: " + e.getMessage(), e);
+            }
+            result.setStyleClasses((this.flags & STYLE_CLASSES) != 0);
+            result.setSymbols((this.flags & SYMBOLS) != 0);
+            result.setPathCoalescing((this.flags & PATH_COALESCING) != 0);
+            result.setMinified((this.flags & MINIFIED) != 0);
+            result.setElementIds((this.flags & ELEMENT_IDS) != 0);
+            result.setHybridRendering((this.flags & HYBRID_RENDERING) != 0);
+            this.drawing = result;
+        }
+        return this.drawing;
+    }
+
+    /**
+     * Gets the number of Shapes in the Drawing saved in this file.
+     *
+     * @return the number of Shapes, not counting Text.
+     */
+    public int getLength() {
+        return this.contentCount;
+    }
+
+    /**
+     * Gets one Shape of the Drawing saved in this file, reading it, and the Shapes it refers to, if it has not been
+     * read yet.
+     *
+     * @param index the index of the Shape, in the order in which the Shapes are drawn.
+     * @return the Shape, with its layout as it was when it was saved.
+     * @throws IndexOutOfBoundsException if there is no such Shape.
+     * @throws IOException               if the record of the Shape, or of a Shape it refers to, is corrupt.
+     */
+    @NotNull
+    public Shape getShape(final int index) throws IOException {
+        if (index < 0 || index >= this.contentCount) {
+            throw new IndexOutOfBoundsException("No shape at index " + index);
+        }
+        return this.getRecord(index);
+    }
+
+    @Nullable
+    private static Number toNumber(final double value) {
+        return Double.isNaN(value) ? null : DrawlNumber.valueOf(value);
+    }
+
+    /**
+     * Reads the number of entries in a table of the header, which must fit in the rest of the file.
+     *
+     * @param buffer the contents of the file, positioned at the number of entries.
+     * @return the number of entries.
+     * @throws IOException if the number of entries is negative or the entries cannot fit in the file.
+     */
+    private static int getTableSize(@NotNull final ByteBuffer buffer) throws IOException {
+        final int size = buffer.getInt();
+        // Each entry in a table is an int
+        if (size < 0 || size > buffer.remaining() / 4) {
+            throw new IOException("Corrupt Drawl file: a table of " + size + " entries does not fit in the file");
+        }
+        return size;
+    }
+
+    /**
+     * Checks an index into a table.
+     *
+     * @param index the index, or {@link #NONE}.
+     * @param size  the number of entries in the table.
+     * @param table the name of the entries of the table, for the message of the exception.
+     * @return the index.
+     * @throws IOException if the index is neither {@link #NONE} nor in the table.
+     */
+    private static int checkIndex(final int index, final int size, @NotNull final String table) throws IOException {
+        if (index != NONE && (index < 0 || index >= size)) {
+            throw new IOException("Corrupt Drawl file: no " + table + " at index " + index);
+        }
+        return index;
+    }
+
+    /**
+     * Checks that some bytes of a record lie within the file.
+     *
+     * @param index    the index of the record.
+     * @param position the position of the first byte.
+     * @param size     the number of bytes.
+     * @throws IOException if the bytes run past the end of the file.
+     */
+    private void checkRecord(final int index, final int position, final int size) throws IOException {
+        if ((long) position + size > this.buffer.limit()) {
+            throw new IOException("Corrupt Drawl file: record " + index + " runs past the end of the file");
+        }
+    }
+
+    @Nullable
+    private synchronized String getString(final int index) throws IOException {
+        if (DrawingFile.checkIndex(index, this.strings.length, "string") == NONE) {
+            return null;
+        }
+        String string = this.strings[index];
+        if (string == null) {
+            // The offset and the length were checked when the header was read
+            final int offset = this.stringOffsets[index];
+            @NotNull final byte[] bytes = new byte[this.buffer.getInt(offset)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = this.buffer.get(offset + 4 + i);
+            }
+            string = new String(bytes, StandardCharsets.UTF_8);
+            this.strings[index] = string;
+        }
+        return string;
+    }
+
+    /**
+     * Gets the position of the part of a record that is common to every type of Shape.
+     *
+     * @param index the index of the record.
+     * @return the position, after the type of the record and the fields of that type.
+     * @throws IOException if the record is of an unknown type or runs past the end of the file.
+     */
+    private int getCommonPosition(final int index) throws IOException {
+        final int position = this.recordOffsets[index];
+        final int common;
+        switch (this.buffer.get(position)) {
+            case CIRCLE:
+                common = position + 1 + 8;
+                break;
+            case LINE:
+                common = position + 1 + 32;
+                break;
+            case TEXT:
+                common = position + 1 + 4;
+                break;
+            case SHAPE:
+            case RECTANGLE:
+                common = position + 1;
+                break;
+            default:
+                throw new IOException("Corrupt Drawl file: record " + index + " is of unknown type "
+                        + this.buffer.get(position));
+        }
+        this.checkRecord(index, common, COMMON_SIZE);
+        return common;
+    }
+
+    /**
+     * Reads a Shape record, and every record it refers to, unless it has already been read.
+     * <p>
+     * A chain of neighbors can be as long as the Drawing, so the records are gathered from a worklist rather than
+     * by recursion. Every Shape is created before any of them are linked, so that neighbors that refer to each other
+     * are each read only once.
+     *
+     * @param index the index of the record.
+     * @return the Shape.
+     * @throws IOException if a record is corrupt, in which case none of the records are kept.
+     */
+    @NotNull
+    private synchronized Shape getRecord(final int index) throws IOException {
+        @Nullable final Shape existing = this.shapes[index];
+        if (existing != null) {
+            return existing;
+        }
+        @NotNull final List<Integer> created = new ArrayList<>();
+        @NotNull final Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(index);
+        try {
+            while (!pending.isEmpty()) {
+                final int next = pending.pop();
+                if (this.shapes[next] == null) {
+                    this.shapes[next] = this.createShape(next);
+                    created.add(next);
+                    final int common = this.getCommonPosition(next);
+                    for (int i = 0; i < 2; i++) {
+                        // The Text and then the neighbor
+                        final int reference = DrawingFile.checkIndex(this.buffer.getInt(common + 40 + 4 * i),
+                                this.shapes.length, "record");
+                        if (reference != NONE && this.shapes[reference] == null) {
+                            pending.push(reference);
+                        }
+                    }
+                }
+            }
+            for (final int next : created) {
+                this.restoreShape(next);
+            }
+        } catch (final IOException | IllegalArgumentException e) {
+            for (final int next : created) {
+                this.shapes[next] = null;
+            }
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            // Such as a number that is not finite, or an unknown type of LineEnding
+            throw new IOException("Corrupt Drawl file: " + e.getMessage(), e);
+        }
+        return this.shapes[index];
+    }
+
+    /**
+     * Creates the Shape for a record, with its style and its implicit layout.
+     *
+     * @param index the index of the record.
+     * @return the Shape, not yet linked to the Shapes it refers to.
+     * @throws IOException if the record is corrupt.
+     */
+    @NotNull
+    private Shape createShape(final int index) throws IOException {
+        final int position = this.recordOffsets[index] + 1;
+        final int common = this.getCommonPosition(index);
+        @NotNull final Shape shape;
+        switch (this.buffer.get(position - 1)) {
+            case CIRCLE:
+                final double radius = this.buffer.getDouble(position);
+                if (!(radius > 0.0)) {
+                    throw new IOException("Corrupt Drawl file: record " + index + " has a radius of " + radius);
+                }
+                shape = new Circle(DrawlNumber.valueOf(radius));
+                break;
+            case RECTANGLE:
+                shape = new Rectangle();
+                break;
+            case LINE:
+                shape = new Line(new Point(this.buffer.getDouble(position), this.buffer.getDouble(position + 8)),
+                        new Point(this.buffer.getDouble(position + 16), this.buffer.getDouble(position + 24)));
+                break;
+            case TEXT:
+                @Nullable final String string = this.getString(this.buffer.getInt(position));
+                shape = string == null ? new Text() : new Text(string);
+                break;
+            default:
+                shape = new Shape();
+        }
+        shape.setFill(this.getString(this.buffer.getInt(common)));
+        shape.setStroke(this.getString(this.buffer.getInt(common + 4)));
+        shape.setImplicitWidth(DrawlNumber.valueOf(this.buffer.getDouble(common + 8)));
+        shape.setImplicitHeight(DrawlNumber.valueOf(this.buffer.getDouble(common + 16)));
+        shape.setImplicitXPositionCenter(DrawlNumber.valueOf(this.buffer.getDouble(common + 24)));
+        shape.setImplicitYPositionCenter(DrawlNumber.valueOf(this.buffer.getDouble(common + 32)));
+        return shape;
+    }
+
+    /**
+     * Links the Shape for a record to its Text and its neighbor, and restores the rest of the record.
+     *
+     * @param index the index of the record, whose Shape, and the Shapes it refers to, have been created.
+     * @throws IOException if the record is corrupt.
+     */
+    private void restoreShape(final int index) throws IOException {
+        @NotNull final Shape shape = this.shapes[index];
+        int position = this.getCommonPosition(index) + 40;
+        final int text = this.buffer.getInt(position);
+        final int neighbor = this.buffer.getInt(position + 4);
+        final double angleToNeighbor = this.buffer.getDouble(position + 8);
+        position += 16;
+        if (text != NONE) {
+            if (!(this.shapes[text] instanceof Text)) {
+                throw new IOException("Corrupt Drawl file: the Text of record " + index + " is not Text");
+            }
+            shape.addText((Text) this.shapes[text]);
+        }
+        if (neighbor != NONE) {
+            shape.restoreNeighbor(this.shapes[neighbor], DrawlNumber.valueOf(angleToNeighbor));
+        }
+
+        // The explicit layout is restored last, because adding Text does not carry it over
+        @Nullable final Number width = DrawingFile.toNumber(this.buffer.getDouble(position));
+        @Nullable final Number height = DrawingFile.toNumber(this.buffer.getDouble(position + 8));
+        if (width != null) {
+            shape.setExplicitWidth(width);
+        }
+        if (height != null) {
+            shape.setExplicitHeight(height);
+        }
+        shape.setExplicitXPositionCenter(DrawlNumber.valueOf(this.buffer.getDouble(position + 16)));
+        shape.setExplicitYPositionCenter(DrawlNumber.valueOf(this.buffer.getDouble(position + 24)));
+        position += 32;
+
+        if (shape instanceof Line) {
+            @NotNull final Line line = (Line) shape;
+            this.checkRecord(index, position, 12);
+            line.setThickness(this.buffer.getDouble(position));
+            @Nullable final String lineEndingType = this.getString(this.buffer.getInt(position + 8));
+            if (lineEndingType != null) {
+                this.checkRecord(index, position, 36);
+                @NotNull final LineEnding lineEnding = LineEnding.newInstance(LineEnding.Type.valueOf(lineEndingType));
+                lineEnding.setWidth(this.buffer.getDouble(position + 12));
+                lineEnding.setHeight(this.buffer.getDouble(position + 20));
+                lineEnding.setFill(this.getString(this.buffer.getInt(position + 28)));
+                lineEnding.setStroke(this.getString(this.buffer.getInt(position + 32)));
+                line.addLineEnding(lineEnding);
+            }
+        }
+    }
+
+    /**
+     * Writes a Drawing, with its layout, to a file.
+     *
+     * @param drawing  the Drawing to write.
+     * @param filename the name of the file.
+     * @throws IOException if there is a problem writing to the file.
+     */
+    static void write(@NotNull final Drawing drawing, @NotNull final String filename) throws IOException {
+        try (@NotNull final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            new Writer(drawing).write(output);
+        }
+    }
+
+    /**
+     * Gets a Drawing, with its layout, in the binary format.
+     *
+     * @param drawing the Drawing to write.
+     * @return the contents of a file holding the Drawing.
+     */
+    @NotNull
+    static byte[] toBytes(@NotNull final Drawing drawing) {
+        @NotNull final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (@NotNull final DataOutputStream output = new DataOutputStream(bytes)) {
+            new Writer(drawing).write(output);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Could not write to memory", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Collects the records and strings of a Drawing and writes them out.
+     */
+    private static final class Writer {
+
+        private final @NotNull Drawing drawing;
+        private final @NotNull Map<String, Integer> stringIndices = new HashMap<>();
+        private final @NotNull List<String> strings = new ArrayList<>();
+        private final @NotNull Map<Shape, Integer> recordIndices = new IdentityHashMap<>();
+        private final @NotNull List<Shape> records = new ArrayList<>();
+
+        Writer(@NotNull final Drawing drawing) {
+            this.drawing = drawing;
+        }
+
+        private static double toDouble(@Nullable final Number number) {
+            return number == null ? Double.NaN : number.doubleValue();
+        }
+
+        private int getStringIndex(@Nullable final String string) {
+            if (string == null) {
+                return NONE;
+            }
+            Integer index = this.stringIndices.get(string);
+            if (index == null) {
+                index = this.strings.size();
+                this.stringIndices.put(string, index);
+                this.strings.add(string);
+            }
+            return index;
+        }
+
+        private int getRecordIndex(@Nullable final Shape shape) {
+            if (shape == null) {
+                return NONE;
+            }
+            Integer index = this.recordIndices.get(shape);
+            if (index == null) {
+                index = this.records.size();
+                this.recordIndices.put(shape, index);
+                this.records.add(shape);
+            }
+            return index;
+        }
+
+        private void writeRecord(@NotNull final DataOutputStream output, @NotNull final Shape shape)
+                throws IOException {
+            if (shape instanceof Circle) {
+                output.writeByte(CIRCLE);
+                output.writeDouble(((Circle) shape).getImplicitRadius().doubleValue());
+            } else if (shape instanceof Rectangle) {
+                output.writeByte(RECTANGLE);
+            } else if (shape instanceof Line) {
+                output.writeByte(LINE);
+                @NotNull final Line line = (Line) shape;
+                output.writeDouble(line.getPoint1Implicit().getX().doubleValue());
+                output.writeDouble(line.getPoint1Implicit().getY().doubleValue());
+                output.writeDouble(line.getPoint2Implicit().getX().doubleValue());
+                output.writeDouble(line.getPoint2Implicit().getY().doubleValue());
+            } else if (shape instanceof Text) {
+                output.writeByte(TEXT);
+                output.writeInt(this.getStringIndex(shape.toString()));
+            } else {
+                output.writeByte(SHAPE);
+            }
+            output.writeInt(this.getStringIndex(shape.getFill()));
+            output.writeInt(this.getStringIndex(shape.getStroke()));
+            output.writeDouble(Writer.toDouble(shape.getImplicitWidth()));
+            output.writeDouble(Writer.toDouble(shape.getImplicitHeight()));
+            output.writeDouble(Writer.toDouble(shape.getImplicitXPositionCenter()));
+            output.writeDouble(Writer.toDouble(shape.getImplicitYPositionCenter()));
+            output.writeInt(this.getRecordIndex(shape.getText()));
+            output.writeInt(this.getRecordIndex(shape.getNeighbor()));
+            output.writeDouble(Writer.toDouble(shape.getAngleToNeighbor()));
+            output.writeDouble(Writer.toDouble(shape.getExplicitWidth()));
+            output.writeDouble(Writer.toDouble(shape.getExplicitHeight()));
+            output.writeDouble(Writer.toDouble(shape.getExplicitXPositionCenter()));
+            output.writeDouble(Writer.toDouble(shape.getExplicitYPositionCenter()));
+            if (shape instanceof Line) {
+                @NotNull final Line line = (Line) shape;
+                output.writeDouble(line.getThickness());
+                @Nullable final LineEnding lineEnding = line.getLineEnding();
+                if (lineEnding == null) {
+                    output.writeInt(NONE);
+                } else {
+                    output.writeInt(this.getStringIndex(lineEnding.getLineEndingType().name()));
+                    output.writeDouble(lineEnding.getWidth());
+                    output.writeDouble(lineEnding.getHeight());
+                    output.writeInt(this.getStringIndex(lineEnding.getFill()));
+                    output.writeInt(this.getStringIndex(lineEnding.getStroke()));
+                }
+            }
+        }
+
+        void write(@NotNull final DataOutputStream output) throws IOException {
+            for (@NotNull final Shape shape : this.drawing.getContents()) {
+                this.getRecordIndex(shape);
+            }
+            final int contentCount = this.records.size();
+
+            // Writing a record can discover more records, such as Text and neighbors outside the Drawing
+            @NotNull final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            @NotNull final DataOutputStream recordOutput = new DataOutputStream(recordBytes);
+            @NotNull final List<Integer> recordOffsets = new ArrayList<>();
+            for (int i = 0; i < this.records.size(); i++) {
+                recordOffsets.add(recordOutput.size());
+                this.writeRecord(recordOutput, this.records.get(i));
+            }
+            final int markerLibrary = this.getStringIndex(this.drawing.getMarkerLibrary());
+            final int idPrefix = this.getStringIndex(this.drawing.getIdPrefix().isEmpty() ? null
+                    : this.drawing.getIdPrefix());
+            @NotNull final List<byte[]> stringBytes = new ArrayList<>(this.strings.size());
+            for (@NotNull final String string : this.strings) {
+                stringBytes.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+
+            final int headerSize = 4 + 2 + 2 + 8 + 8 + 4 + 4 + 4 + 4 * this.strings.size() + 4 + 4
+                    + 4 * recordOffsets.size();
+            int stringsSize = 0;
+            for (@NotNull final byte[] bytes : stringBytes) {
+                stringsSize += 4 + bytes.length;
+            }
+
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            int flags = 0;
+            flags |= this.drawing.hasStyleClasses() ? STYLE_CLASSES : 0;
+            flags |= this.drawing.hasSymbols() ? SYMBOLS : 0;
+            flags |= this.drawing.hasPathCoalescing() ? PATH_COALESCING : 0;
+            flags |= this.drawing.isMinified() ? MINIFIED : 0;
+            flags |= this.drawing.hasElementIds() ? ELEMENT_IDS : 0;
+            flags |= this.drawing.hasHybridRendering() ? HYBRID_RENDERING : 0;
+            output.writeShort(flags);
+            output.writeDouble(Writer.toDouble(this.drawing.getExplicitWidth()));
+            output.writeDouble(Writer.toDouble(this.drawing.getExplicitHeight()));
+            output.writeInt(markerLibrary);
+            output.writeInt(idPrefix);
+            output.writeInt(this.strings.size());
+            int offset = headerSize;
+            for (@NotNull final byte[] bytes : stringBytes) {
+                output.writeInt(offset);
+                offset += 4 + bytes.length;
+            }
+            output.writeInt(contentCount);
+            output.writeInt(recordOffsets.size());
+            for (final int recordOffset : recordOffsets) {
+                output.writeInt(headerSize + stringsSize + recordOffset);
+            }
+            for (@NotNull final byte[] bytes : stringBytes) {
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            recordBytes.writeTo(output);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Renders many Drawings concurrently, each on a single thread, with a bound on how many are in memory at once.
+ * <p>
+ * Drawings are not thread-safe, so each job builds its own Drawing from a factory, on the thread that renders it.
+ * Jobs wait in a queue, holding only their factories, until fewer than the maximum number of jobs are in flight, so
+ * memory stays bounded however many jobs are submitted. Each job returns a {@link CompletableFuture} that completes
+ * with its result, or exceptionally if building or rendering its Drawing fails.
+ * <p>
+ * On Java 21 and later, {@link #withVirtualThreads(int)} runs each job on its own virtual thread.
+ */
+public final class DrawingRenderer implements AutoCloseable {
+
+    private final @NotNull Executor executor;
+
+    /**
+     * The executor to shut down on close, if this renderer created it, or <code>null</code>.
+     */
+    private final @Nullable ExecutorService ownedExecutor;
+
+    private final int maxInFlight;
+
+    /**
+     * The jobs that have been submitted but not started, in order of submission. Guarded by this.
+     */
+    private final @NotNull Queue<Job<?>> queue = new ArrayDeque<>();
+
+    /**
+     * The number of jobs that have been started but not finished. Guarded by this.
+     */
+    private int inFlight;
+
+    /**
+     * Whether this renderer has stopped accepting jobs. Guarded by this.
+     */
+    private boolean closed;
+
+    /**
+     * Constructs a renderer that renders on its own pool of one thread per processor.
+     *
+     * @param maxInFlight the largest number of Drawings to render at once.
+     */
+    public DrawingRenderer(final int maxInFlight) {
+        this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), maxInFlight, true);
+    }
+
+    /**
+     * Constructs a renderer that renders on an executor.
+     *
+     * @param executor    the executor on which to render, which this renderer does not shut down.
+     * @param maxInFlight the largest number of Drawings to render at once.
+     */
+    public DrawingRenderer(@NotNull final Executor executor, final int maxInFlight) {
+        this(executor, maxInFlight, false);
+    }
+
+    private DrawingRenderer(@NotNull final Executor executor, final int maxInFlight, final boolean owned) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The number of Drawings in flight must be positive: " + maxInFlight);
+        }
+        this.executor = executor;
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Constructs a renderer that renders each Drawing on its own virtual thread, if the Java runtime supports them,
+     * or otherwise on a pool of one thread per processor.
+     *
+     * @param maxInFlight the largest number of Drawings to render at once.
+     * @return a new renderer.
+     * @see #isVirtualThreadSupported()
+     */
+    @NotNull
+    public static DrawingRenderer withVirtualThreads(final int maxInFlight) {
+        @Nullable final ExecutorService virtualThreads = DrawingRenderer.newVirtualThreadExecutor();
+        if (virtualThreads == null) {
+            return new DrawingRenderer(maxInFlight);
+        }
+        return new DrawingRenderer(virtualThreads, maxInFlight, true);
+    }
+
+    /**
+     * Indicates whether the Java runtime supports virtual threads, as Java 21 and later do.
+     *
+     * @return <code>true</code> if {@link #withVirtualThreads(int)} uses virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        @Nullable final ExecutorService virtualThreads = DrawingRenderer.newVirtualThreadExecutor();
+        if (virtualThreads == null) {
+            return false;
+        }
+        virtualThreads.shutdown();
+        return true;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for each task.
+     * <p>
+     * The executor is looked up by reflection, so that Drawl still runs on Java runtimes without virtual threads.
+     *
+     * @return the executor, or <code>null</code> if the Java runtime does not support virtual threads.
+     */
+    @Nullable
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            @NotNull final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Submits a job that builds a Drawing and renders it.
+     *
+     * @param factory  builds the Drawing, on the thread that renders it.
+     * @param renderer renders the Drawing.
+     * @param <T>      the type of the result.
+     * @return a future that completes with the result of rendering.
+     * @throws IllegalStateException if this renderer has been closed.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull final Supplier<Drawing> factory,
+                                           @NotNull final Function<Drawing, ? extends T> renderer) {
+        @NotNull final Job<T> job = new Job<>(factory, renderer);
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("Cannot submit a job to a closed renderer");
+            }
+            this.queue.add(job);
+        }
+        this.startJobs();
+        return job.future;
+    }
+
+    /**
+     * Submits a job that builds a Drawing and gets its SVG.
+     *
+     * @param factory builds the Drawing, on the thread that renders it.
+     * @param width   the width of the Drawing.
+     * @param height  the height of the Drawing.
+     * @return a future that completes with the SVG.
+     * @throws IllegalStateException if this renderer has been closed.
+     */
+    @NotNull
+    public CompletableFuture<String> submitSVG(@NotNull final Supplier<Drawing> factory,
+                                               @NotNull final Integer width, @NotNull final Integer height) {
+        return this.submit(factory, drawing -> drawing.getSVG(width, height));
+    }
+
+    /**
+     * Submits a job that builds a Drawing and gets it as a PNG image.
+     *
+     * @param factory builds the Drawing, on the thread that renders it.
+     * @param width   the width of the image, in pixels.
+     * @param height  the height of the image, in pixels.
+     * @return a future that completes with the bytes of the PNG.
+     * @throws IllegalStateException if this renderer has been closed.
+     */
+    @NotNull
+    public CompletableFuture<byte[]> submitPNG(@NotNull final Supplier<Drawing> factory,
+                                               @NotNull final Integer width, @NotNull final Integer height) {
+        return this.submit(factory, drawing -> {
+            @NotNull final ByteArrayOutputStream png = new ByteArrayOutputStream();
+            try {
+                drawing.writePNG(png, width, height);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return png.toByteArray();
+        });
+    }
+
+    /**
+     * Gets the number of jobs waiting to start.
+     *
+     * @return the number of jobs that have been submitted but not started.
+     */
+    public synchronized int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the number of jobs in flight.
+     *
+     * @return the number of jobs that have been started but not finished, at most the maximum given on construction.
+     */
+    public synchronized int getInFlightCount() {
+        return this.inFlight;
+    }
+
+    /**
+     * Starts as many waiting jobs as the bound on jobs in flight allows.
+     */
+    private void startJobs() {
+        while (true) {
+            @NotNull final Job<?> job;
+            synchronized (this) {
+                if (this.inFlight >= this.maxInFlight || this.queue.isEmpty()) {
+                    return;
+                }
+                job = this.queue.remove();
+                this.inFlight++;
+            }
+            try {
+                this.executor.execute(() -> this.run(job));
+            } catch (final RejectedExecutionException e) {
+                job.future.completeExceptionally(e);
+                this.finish();
+            }
+        }
+    }
+
+    /**
+     * Runs a job, and then starts the next waiting jobs.
+     *
+     * @param job the job to run.
+     */
+    private void run(@NotNull final Job<?> job) {
+        try {
+            job.run();
+        } finally {
+            this.finish();
+            this.startJobs();
+        }
+    }
+
+    private synchronized void finish() {
+        this.inFlight--;
+        this.notifyAll();
+    }
+
+    /**
+     * Stops accepting jobs, waits for the jobs already submitted to finish, and shuts down the executor if this
+     * renderer created it.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.closed = true;
+            try {
+                while (this.inFlight > 0 || !this.queue.isEmpty()) {
+                    this.wait();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * A Drawing to build and render, and the future for its result.
+     *
+     * @param <T> the type of the result.
+     */
+    private static final class Job<T> {
+
+        private final @NotNull Supplier<Drawing> factory;
+        private final @NotNull Function<Drawing, ? extends T> renderer;
+        private final @NotNull CompletableFuture<T> future = new CompletableFuture<>();
+
+        Job(@NotNull final Supplier<Drawing> factory, @NotNull final Function<Drawing, ? extends T> renderer) {
+            this.factory = factory;
+            this.renderer = renderer;
+        }
+
+        /**
+         * Builds and renders the Drawing, unless the future has been cancelled, and completes the future.
+         */
+        void run() {
+            if (this.future.isDone()) {
+                return;
+            }
+            try {
+                this.future.complete(this.renderer.apply(this.factory.get()));
+            } catch (final RuntimeException | Error e) {
+                this.future.completeExceptionally(e);
+            }
+        }
+    }
+}
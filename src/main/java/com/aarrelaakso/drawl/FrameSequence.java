@@ -0,0 +1,294 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a sequence of Drawings as the frames of an animation, reusing the SVG of Shapes that have not changed.
+ * <p>
+ * Render each frame to the sequence in turn, with {@link #addFrame(Drawing, Integer, Integer)} or
+ * {@link Drawing#render(Integer, Integer, RenderSink...)}. The frames may share Shapes: a Shape that is in several
+ * frames is the same element of the animation, and a Shape that has not changed since the previous frame reuses its
+ * SVG from that frame. The sequence then gives either each frame in full, as it is rendered, or the whole animation
+ * as a single SVG document in which SMIL <code>&lt;set&gt;</code> elements show each version of each element only for
+ * the frames in which it appears. The animation only holds the versions of elements that changed, so it grows with the
+ * number of changes rather than with the number of frames times the number of Shapes.
+ * <p>
+ * Frames may draw their Shapes in different orders. A Shape that is drawn before a Shape that it followed in an
+ * earlier frame becomes a new element at its new place, so that the animation paints every frame in its own order.
+ * <p>
+ * The first frame sets the start of every document, with its width and height, and the options of the whole
+ * sequence, such as minification, the marker library and the id prefix. Each Shape is drawn on its own, as it is by
+ * {@link Drawing#getSVG(Integer, Integer)} with none of symbols, path coalescing, element ids and hybrid rendering
+ * set, whatever is set on the Drawings.
+ */
+public final class FrameSequence implements RenderSink {
+
+    /**
+     * The context shared by all the frames, so that definitions keep their ids from frame to frame.
+     */
+    private @Nullable SVGContext context;
+
+    /**
+     * The start of the SVG of the first frame, with its width and height.
+     */
+    private @Nullable String svgStart;
+
+    /**
+     * The head of the list of the elements of the animation, in drawing order.
+     */
+    private final @NotNull Element head = new Element();
+
+    /**
+     * The element for each Shape that has been in any frame.
+     */
+    private final @NotNull Map<Shape, Element> elementsByShape = new IdentityHashMap<>();
+
+    private int frameCount;
+    private @NotNull StringBuilder frameBuilder = new StringBuilder();
+    private @Nullable String frame;
+
+    /**
+     * The element after which to put the next new element of the frame being rendered.
+     */
+    private @NotNull Element previous = this.head;
+
+    /**
+     * The rank of the last element shown so far in the frame being rendered that was in an earlier frame, or -1 if
+     * there is none.
+     */
+    private int previousRank = -1;
+
+    /**
+     * Renders a frame.
+     *
+     * @param drawing the frame.
+     * @param width   the width at which to lay out the frame.
+     * @param height  the height at which to lay out the frame.
+     * @return the SVG of the frame, as from {@link #getFrameSVG()}.
+     */
+    @NotNull
+    public String addFrame(@NotNull final Drawing drawing, @NotNull final Integer width,
+                           @NotNull final Integer height) {
+        drawing.render(width, height, this);
+        return this.getFrameSVG();
+    }
+
+    @Override
+    public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+        if (this.context == null) {
+            this.context = drawing.createSVGContext();
+            this.svgStart = drawing.getSVGStart();
+        }
+        this.frameBuilder = new StringBuilder();
+        this.frame = null;
+        this.previous = this.head;
+        this.previousRank = -1;
+    }
+
+    @Override
+    public void beginShape(@NotNull final Shape shape) {
+        if (this.context == null) {
+            throw new IllegalStateException("Cannot render a Shape before the Drawing has begun");
+        }
+        @NotNull final String fragment = shape.getSVGFragment(this.context);
+        this.frameBuilder.append(fragment);
+        Element element = this.elementsByShape.get(shape);
+        if (element == null || element.rank <= this.previousRank) {
+            // A new element, or one that now comes before an element that it used to follow, goes after the element
+            // drawn before it in this frame. A moved element leaves its earlier versions where they were.
+            element = new Element();
+            element.next = this.previous.next;
+            this.previous.next = element;
+            this.elementsByShape.put(shape, element);
+        } else {
+            this.previousRank = element.rank;
+        }
+        element.show(fragment, this.frameCount);
+        this.previous = element;
+    }
+
+    @Override
+    public void end() {
+        if (this.context == null) {
+            throw new IllegalStateException("Cannot end a Drawing that has not begun");
+        }
+        int rank = 0;
+        for (@Nullable Element element = this.head.next; element != null; element = element.next) {
+            element.hideUnlessShown(this.frameCount);
+            element.rank = rank;
+            rank++;
+        }
+        this.frame = this.svgStart + this.context.getDefs() + this.frameBuilder + "</svg>";
+        this.frameCount++;
+    }
+
+    /**
+     * Gets the number of frames rendered so far.
+     *
+     * @return the number of frames.
+     */
+    public int getFrameCount() {
+        return this.frameCount;
+    }
+
+    /**
+     * Gets the SVG of the frame most recently rendered.
+     * <p>
+     * The frame starts as the first frame does, with its width, height and options. Its Shapes are drawn as by
+     * {@link Drawing#getSVG(Integer, Integer)} without symbols, path coalescing, element ids or hybrid rendering, so
+     * it is the same SVG only for a Drawing that has none of those set and whose definitions are its own. The
+     * definitions include those of every earlier frame, so that all the frames agree on their ids.
+     *
+     * @return a string of valid SVG.
+     * @throws IllegalStateException if no frame has been rendered.
+     */
+    @NotNull
+    public String getFrameSVG() {
+        if (this.frame == null) {
+            throw new IllegalStateException("No frame has been rendered");
+        }
+        return this.frame;
+    }
+
+    /**
+     * Gets the whole animation as a single SVG document that plays once and then holds its last frame.
+     * <p>
+     * An element that never changes is written once, as it is. Each version of an element that does change is
+     * written in a hidden group with a SMIL <code>&lt;set&gt;</code> that shows it for the frames in which the element
+     * looked that way.
+     *
+     * @param secondsPerFrame the time for which each frame is shown, in seconds.
+     * @return a string of valid SVG.
+     * @throws IllegalStateException if no frame has been rendered.
+     */
+    @NotNull
+    public String getAnimatedSVG(final double secondsPerFrame) {
+        if (this.context == null || this.svgStart == null || this.frameCount == 0) {
+            throw new IllegalStateException("No frame has been rendered");
+        }
+        @NotNull final StringBuilder svgBuilder = new StringBuilder(this.svgStart);
+        svgBuilder.append(this.context.getDefs());
+        for (@Nullable Element element = this.head.next; element != null; element = element.next) {
+            for (@NotNull final Version version : element.versions) {
+                if (version.start == 0 && version.end < 0) {
+                    svgBuilder.append(version.svg);
+                    continue;
+                }
+                svgBuilder.append("<g display='none'><set attributeName='display' to='inline' begin='");
+                svgBuilder.append(PathData.format(version.start * secondsPerFrame)).append("s'");
+                if (version.end >= 0) {
+                    svgBuilder.append(" dur='");
+                    svgBuilder.append(PathData.format((version.end - version.start) * secondsPerFrame));
+                    svgBuilder.append("s'");
+                }
+                svgBuilder.append(this.context.getEmptyElementEnd());
+                svgBuilder.append(version.svg);
+                svgBuilder.append("</g>");
+            }
+        }
+        svgBuilder.append("</svg>");
+        return svgBuilder.toString();
+    }
+
+    /**
+     * One element of the animation, drawn from one Shape, and how it looked over time.
+     */
+    private static final class Element {
+
+        private final @NotNull List<Version> versions = new ArrayList<>();
+
+        /**
+         * The next element in drawing order, or <code>null</code> if this is the last.
+         */
+        private @Nullable Element next;
+
+        /**
+         * The position of this element in drawing order as of the end of the previous frame, or -1 if it was added
+         * in the frame being rendered.
+         */
+        private int rank = -1;
+
+        /**
+         * The frame in which this element was last shown, or -1 if it has not been shown.
+         */
+        private int lastShown = -1;
+
+        /**
+         * Shows this element in a frame, starting a new version if it has changed since the previous frame.
+         *
+         * @param svg   the SVG of the element in the frame.
+         * @param frame the index of the frame.
+         */
+        void show(@NotNull final String svg, final int frame) {
+            @Nullable final Version current = this.versions.isEmpty() ? null
+                    : this.versions.get(this.versions.size() - 1);
+            this.lastShown = frame;
+            // Unchanged Shapes reuse the same String, so the comparison is usually by reference
+            if (current != null && current.end < 0 && (current.svg == svg || current.svg.equals(svg))) {
+                return;
+            }
+            if (current != null && current.end < 0) {
+                current.end = frame;
+            }
+            this.versions.add(new Version(svg, frame));
+        }
+
+        /**
+         * Ends the current version of this element if it was not shown in a frame.
+         *
+         * @param frame the index of the frame.
+         */
+        void hideUnlessShown(final int frame) {
+            if (this.lastShown != frame && !this.versions.isEmpty()) {
+                @NotNull final Version current = this.versions.get(this.versions.size() - 1);
+                if (current.end < 0) {
+                    current.end = frame;
+                }
+            }
+        }
+    }
+
+    /**
+     * The SVG of an element over a run of frames in which it did not change.
+     */
+    private static final class Version {
+
+        private final @NotNull String svg;
+        private final int start;
+
+        /**
+         * The index of the first frame after the run, or -1 if the run has not ended.
+         */
+        private int end = -1;
+
+        Version(@NotNull final String svg, final int start) {
+            this.svg = svg;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Renders a Drawing to a JSON hit map, from which a client can tell which Shape is under the pointer.
+ * <p>
+ * The hit map has the form <code>{"width":w,"height":h,"hits":[[shape,"type",x,y,width,height],...]}</code>, with one
+ * entry for each primitive, in drawing order. Each entry gives the index of its Shape in the Drawing, the kind of
+ * primitive (<code>circle</code>, <code>rect</code>, <code>line</code> or <code>text</code>) and its bounding box. To
+ * find the topmost Shape at a point, search the entries from last to first.
+ */
+public final class HitMapSink implements RenderSink {
+
+    private @NotNull StringBuilder json = new StringBuilder();
+    private int shapeIndex;
+    private boolean firstHit;
+    private @Nullable String hitMap;
+
+    private void appendHit(@NotNull final String type, final double x, final double y, final double width,
+                           final double height) {
+        if (!this.firstHit) {
+            this.json.append(',');
+        }
+        this.firstHit = false;
+        this.json.append('[').append(this.shapeIndex).append(',');
+        JSON.appendString(this.json, type);
+        this.json.append(',').append(PathData.format(x));
+        this.json.append(',').append(PathData.format(y));
+        this.json.append(',').append(PathData.format(width));
+        this.json.append(',').append(PathData.format(height));
+        this.json.append(']');
+    }
+
+    @Override
+    public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+        this.json = new StringBuilder();
+        this.json.append("{\"width\":").append(width).append(",\"height\":").append(height).append(",\"hits\":[");
+        this.shapeIndex = -1;
+        this.firstHit = true;
+        this.hitMap = null;
+    }
+
+    @Override
+    public void beginShape(@NotNull final Shape shape) {
+        this.shapeIndex++;
+    }
+
+    @Override
+    public void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                       @Nullable final String stroke) {
+        this.appendHit("circle", cx - radius, cy - radius, 2 * radius, 2 * radius);
+    }
+
+    @Override
+    public void rectangle(final double x, final double y, final double width, final double height,
+                          @Nullable final String fill, @Nullable final String stroke) {
+        this.appendHit("rect", x, y, width, height);
+    }
+
+    @Override
+    public void line(final double x1, final double y1, final double x2, final double y2,
+                     @NotNull final String stroke, final double thickness, @Nullable final LineEnding lineEnding) {
+        // Widen the box by half the stroke, so that horizontal and vertical Lines can still be hit
+        final double halfThickness = thickness / 2;
+        this.appendHit("line", Math.min(x1, x2) - halfThickness, Math.min(y1, y2) - halfThickness,
+                Math.abs(x2 - x1) + thickness, Math.abs(y2 - y1) + thickness);
+    }
+
+    @Override
+    public void text(final double x, final double y, @NotNull final String string, @Nullable final String fill,
+                     @Nullable final String stroke) {
+        @NotNull final Rectangle2D bounds = Rasterizer.getTextOutline(x, y, string).getBounds2D();
+        this.appendHit("text", bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+    }
+
+    @Override
+    public void end() {
+        this.json.append("]}");
+        this.hitMap = this.json.toString();
+    }
+
+    /**
+     * Gets the hit map of the Drawing most recently rendered to this sink.
+     *
+     * @return a JSON object.
+     * @throws IllegalStateException if no Drawing has been rendered to this sink.
+     */
+    @NotNull
+    public String getJSON() {
+        if (this.hitMap == null) {
+            throw new IllegalStateException("No drawing has been rendered");
+        }
+        return this.hitMap;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decides which regions of a laid-out Drawing to draw as embedded raster images in a hybrid rendering.
+ * <p>
+ * The Drawing is divided into square cells. Each Shape that can be rasterized is counted in the cell that holds its
+ * center, as long as it fits within that cell, so that the images of different cells never overlap. Shapes that do
+ * not fit within a cell, such as backgrounds and connectors, stay vector, as do Shapes with Text or with markers and
+ * Text itself, so that foreground Shapes, labels and arrows stay sharp.
+ * <p>
+ * The Shapes of each cell with at least {@link #DENSE_SHAPE_COUNT} such Shapes are gathered into runs in drawing order.
+ * A run ends wherever a Shape that stays vector overlaps it, so that an image drawn in place of its run never covers
+ * a vector Shape drawn in between. For each run, a cost estimator compares drawing its Shapes as vectors with drawing
+ * them as one image, and the cheaper strategy wins.
+ */
+final class HybridPlan {
+
+    /**
+     * The width and height of each cell, in pixels.
+     */
+    static final int CELL_SIZE = 64;
+
+    /**
+     * The fewest Shapes in a cell for it to be considered for rasterization. Sparser cells always stay vector.
+     */
+    static final int DENSE_SHAPE_COUNT = 64;
+
+    /**
+     * The estimated cost, in bytes of output, of the work a browser does to draw each element, over and above its
+     * size.
+     */
+    private static final int ELEMENT_COST = 64;
+
+    /**
+     * The estimated size of a PNG of drawn Shapes, in bytes per pixel, before base 64 encoding.
+     */
+    private static final double PNG_BYTES_PER_PIXEL = 0.5;
+
+    /**
+     * The size of an <code>&lt;image&gt;</code> element and of the PNG headers, in bytes.
+     */
+    private static final int IMAGE_OVERHEAD = 200;
+
+    /**
+     * The region into which each Shape is rasterized, by Shape index, or <code>null</code> for Shapes that stay vector.
+     */
+    private final @Nullable Region[] regions;
+
+    /**
+     * Constructs a plan.
+     *
+     * @param regions the region of each Shape.
+     */
+    private HybridPlan(@Nullable final Region[] regions) {
+        this.regions = regions;
+    }
+
+    /**
+     * Plans a hybrid rendering.
+     *
+     * @param shapes    all the Shapes being drawn, laid out.
+     * @param fragments the SVG for each Shape, by which the cost of drawing it as a vector is estimated.
+     * @param width     the width of the Drawing, in pixels.
+     * @param height    the height of the Drawing, in pixels.
+     * @return the plan.
+     */
+    @NotNull
+    static HybridPlan create(@NotNull final Shape[] shapes, @NotNull final String[] fragments, final double width,
+                             final double height) {
+        final int columns = Math.max(1, (int) Math.ceil(width / CELL_SIZE));
+        final int rows = Math.max(1, (int) Math.ceil(height / CELL_SIZE));
+        @NotNull final Rectangle2D[] bounds = new Rectangle2D[shapes.length];
+        @NotNull final int[] cellIndices = new int[shapes.length];
+        @NotNull final int[] counts = new int[columns * rows];
+        for (int i = 0; i < shapes.length; i++) {
+            bounds[i] = HybridPlan.getBounds(shapes[i]);
+            cellIndices[i] = -1;
+            // Shapes whose bounds are not known stay vector
+            if (bounds[i] == null) {
+                continue;
+            }
+            final int column = HybridPlan.clamp(bounds[i].getCenterX() / CELL_SIZE, columns);
+            final int row = HybridPlan.clamp(bounds[i].getCenterY() / CELL_SIZE, rows);
+            // The cells on the edges reach outwards without limit
+            if ((column == 0 || bounds[i].getMinX() >= column * CELL_SIZE)
+                    && (column == columns - 1 || bounds[i].getMaxX() <= (column + 1) * CELL_SIZE)
+                    && (row == 0 || bounds[i].getMinY() >= row * CELL_SIZE)
+                    && (row == rows - 1 || bounds[i].getMaxY() <= (row + 1) * CELL_SIZE)) {
+                cellIndices[i] = row * columns + column;
+                counts[cellIndices[i]]++;
+            }
+        }
+        // The run that each dense cell is gathering, if any
+        @NotNull final Region[] runs = new Region[columns * rows];
+        @NotNull final List<Region> regions = new ArrayList<>();
+        for (int i = 0; i < shapes.length; i++) {
+            final int cellIndex = cellIndices[i];
+            if (cellIndex >= 0 && counts[cellIndex] >= DENSE_SHAPE_COUNT) {
+                if (runs[cellIndex] == null) {
+                    runs[cellIndex] = new Region();
+                    regions.add(runs[cellIndex]);
+                }
+                runs[cellIndex].add(i, bounds[i], fragments[i].length());
+            } else if (bounds[i] == null) {
+                // Where a vector Shape may reach is unknown, so it ends every run
+                Arrays.fill(runs, null);
+            } else {
+                // A vector Shape can only overlap the runs of the cells that it reaches
+                final int left = HybridPlan.clamp(bounds[i].getMinX() / CELL_SIZE, columns);
+                final int right = HybridPlan.clamp(bounds[i].getMaxX() / CELL_SIZE, columns);
+                final int top = HybridPlan.clamp(bounds[i].getMinY() / CELL_SIZE, rows);
+                final int bottom = HybridPlan.clamp(bounds[i].getMaxY() / CELL_SIZE, rows);
+                for (int row = top; row <= bottom; row++) {
+                    for (int column = left; column <= right; column++) {
+                        @Nullable final Region run = runs[row * columns + column];
+                        if (run != null && run.intersects(bounds[i])) {
+                            runs[row * columns + column] = null;
+                        }
+                    }
+                }
+            }
+        }
+        @NotNull final Region[] regionsByShape = new Region[shapes.length];
+        for (@NotNull final Region region : regions) {
+            if (region.isCheaperAsRaster()) {
+                for (final int index : region.getShapeIndices()) {
+                    regionsByShape[index] = region;
+                }
+            }
+        }
+        return new HybridPlan(regionsByShape);
+    }
+
+    private static int clamp(final double value, final int count) {
+        return Math.max(0, Math.min(count - 1, (int) Math.floor(value)));
+    }
+
+    /**
+     * Gets the bounds of everything that drawing a Shape paints.
+     *
+     * @param shape the Shape.
+     * @return the bounds of the Shape, grown by its stroke and by one pixel for antialiasing, or <code>null</code> if
+     * they are not known, as for Text, Shapes with Text or with markers, and Shapes that have not been laid out.
+     */
+    @Nullable
+    private static Rectangle2D getBounds(@NotNull final Shape shape) {
+        if (shape instanceof Text || shape.getText() != null || shape.hasSVGDefinitions()
+                || shape.getExplicitWidth() == null || shape.getExplicitHeight() == null) {
+            return null;
+        }
+        @Nullable final String strokeWidth = shape.getSVGStyle().get(2);
+        // Half of the stroke lies outside the Shape, and antialiasing reaches one pixel further
+        final double margin = 1.0 + (strokeWidth == null ? 1.0 : Double.parseDouble(strokeWidth)) / 2;
+        return new Rectangle2D.Double(shape.getExplicitXPositionLeft().doubleValue() - margin,
+                shape.getExplicitYPositionTop().doubleValue() - margin,
+                shape.getExplicitWidth().doubleValue() + 2 * margin,
+                shape.getExplicitHeight().doubleValue() + 2 * margin);
+    }
+
+    /**
+     * Gets the region into which a Shape is rasterized.
+     *
+     * @param index the index of the Shape.
+     * @return the region, or <code>null</code> if the Shape stays vector.
+     */
+    @Nullable
+    Region getRegion(final int index) {
+        return this.regions[index];
+    }
+
+    /**
+     * A region of the Drawing drawn as one image, and the Shapes drawn in it.
+     */
+    static final class Region {
+
+        private int[] shapeIndices = new int[DENSE_SHAPE_COUNT];
+        private int size;
+        private long vectorBytes;
+        private double left = Double.POSITIVE_INFINITY;
+        private double top = Double.POSITIVE_INFINITY;
+        private double right = Double.NEGATIVE_INFINITY;
+        private double bottom = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Adds a Shape to this region, growing the region to hold it.
+         */
+        private void add(final int index, @NotNull final Rectangle2D bounds, final int fragmentLength) {
+            if (this.size == this.shapeIndices.length) {
+                this.shapeIndices = Arrays.copyOf(this.shapeIndices, 2 * this.size);
+            }
+            this.shapeIndices[this.size++] = index;
+            this.vectorBytes += fragmentLength;
+            this.left = Math.min(this.left, bounds.getMinX());
+            this.top = Math.min(this.top, bounds.getMinY());
+            this.right = Math.max(this.right, bounds.getMaxX());
+            this.bottom = Math.max(this.bottom, bounds.getMaxY());
+        }
+
+        /**
+         * Indicates whether some bounds overlap the image of this region.
+         */
+        private boolean intersects(@NotNull final Rectangle2D bounds) {
+            return bounds.intersects(this.getX(), this.getY(), this.getWidth(), this.getHeight());
+        }
+
+        /**
+         * Estimates whether this region is cheaper to draw as an image than as vectors.
+         */
+        private boolean isCheaperAsRaster() {
+            if (this.size < DENSE_SHAPE_COUNT) {
+                return false;
+            }
+            final double vectorCost = this.vectorBytes + (double) this.size * ELEMENT_COST;
+            // Base 64 encoding takes four bytes for every three
+            final double rasterCost = IMAGE_OVERHEAD + 4.0 / 3.0 * PNG_BYTES_PER_PIXEL * this.getWidth()
+                    * this.getHeight() + ELEMENT_COST;
+            return rasterCost < vectorCost;
+        }
+
+        /**
+         * Gets the index of the first Shape drawn in this region, in whose place the image is drawn.
+         *
+         * @return the index of the Shape.
+         */
+        int getFirstShapeIndex() {
+            return this.shapeIndices[0];
+        }
+
+        /**
+         * Gets the indices of the Shapes drawn in this region.
+         *
+         * @return the indices, in drawing order.
+         */
+        @NotNull
+        List<Integer> getShapeIndices() {
+            @NotNull final List<Integer> indices = new ArrayList<>(this.size);
+            for (int i = 0; i < this.size; i++) {
+                indices.add(this.shapeIndices[i]);
+            }
+            return indices;
+        }
+
+        /**
+         * Gets the x coordinate of the left of the image.
+         *
+         * @return the left, rounded down to a whole pixel.
+         */
+        int getX() {
+            return (int) Math.floor(this.left);
+        }
+
+        /**
+         * Gets the y coordinate of the top of the image.
+         *
+         * @return the top, rounded down to a whole pixel.
+         */
+        int getY() {
+            return (int) Math.floor(this.top);
+        }
+
+        /**
+         * Gets the width of the image.
+         *
+         * @return the width, in whole pixels.
+         */
+        int getWidth() {
+            return (int) Math.ceil(this.right) - this.getX();
+        }
+
+        /**
+         * Gets the height of the image.
+         *
+         * @return the height, in whole pixels.
+         */
+        int getHeight() {
+            return (int) Math.ceil(this.bottom) - this.getY();
+        }
+    }
+}
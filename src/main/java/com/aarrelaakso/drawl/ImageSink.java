@@ -0,0 +1,146 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Stroke;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a Drawing into a raster image with Java 2D.
+ * <p>
+ * While the Drawing is walked, the sink records a display list, leaving out Shapes with neither a fill nor a stroke.
+ * When the walk ends, images larger than a single tile are painted tile by tile on several threads from that list and
+ * then stitched together. Painting needs no display, so it works in headless mode.
+ */
+public final class ImageSink implements RenderSink {
+
+    private @NotNull List<Rasterizer.Operation> operations = new ArrayList<>();
+    private int width;
+    private int height;
+    private @Nullable BufferedImage image;
+
+    @Override
+    public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+        this.operations = new ArrayList<>();
+        this.width = width;
+        this.height = height;
+        this.image = null;
+    }
+
+    @Override
+    public void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                       @Nullable final String stroke) {
+        @NotNull final Ellipse2D circle = new Ellipse2D.Double(cx - radius, cy - radius, 2 * radius, 2 * radius);
+        @Nullable final Color fillColor = Rasterizer.getColor(fill, Color.BLACK);
+        @Nullable final Color strokeColor = Rasterizer.getColor(stroke, null);
+        if (fillColor == null && strokeColor == null) {
+            return;
+        }
+        this.operations.add(new Rasterizer.Operation(Rasterizer.getBounds(circle, 0.5),
+                graphics -> Rasterizer.paint(graphics, circle, fillColor, strokeColor)));
+    }
+
+    @Override
+    public void rectangle(final double x, final double y, final double width, final double height,
+                          @Nullable final String fill, @Nullable final String stroke) {
+        @NotNull final Rectangle2D rectangle = new Rectangle2D.Double(x, y, width, height);
+        @Nullable final Color fillColor = Rasterizer.getColor(fill, Color.BLACK);
+        @Nullable final Color strokeColor = Rasterizer.getColor(stroke, null);
+        if (fillColor == null && strokeColor == null) {
+            return;
+        }
+        this.operations.add(new Rasterizer.Operation(Rasterizer.getBounds(rectangle, 0.5),
+                graphics -> Rasterizer.paint(graphics, rectangle, fillColor, strokeColor)));
+    }
+
+    @Override
+    public void line(final double x1, final double y1, final double x2, final double y2,
+                     @NotNull final String stroke, final double thickness, @Nullable final LineEnding lineEnding) {
+        @Nullable final Color strokeColor = Rasterizer.getColor(stroke, null);
+        if (strokeColor != null) {
+            @NotNull final Line2D line = new Line2D.Double(x1, y1, x2, y2);
+            @NotNull final Stroke lineStroke = new BasicStroke((float) thickness);
+            this.operations.add(new Rasterizer.Operation(Rasterizer.getBounds(lineStroke.createStrokedShape(line),
+                    0.0), graphics -> {
+                @NotNull final Stroke previous = graphics.getStroke();
+                graphics.setStroke(lineStroke);
+                graphics.setColor(strokeColor);
+                graphics.draw(line);
+                graphics.setStroke(previous);
+            }));
+        }
+        if (lineEnding != null) {
+            this.operations.add(new Rasterizer.Operation(Rasterizer.getMarkerBounds(lineEnding, x1, y1, x2, y2,
+                    thickness), graphics -> Rasterizer.paintMarker(graphics, lineEnding, x1, y1, x2, y2, thickness,
+                    strokeColor)));
+        }
+    }
+
+    @Override
+    public void text(final double x, final double y, @NotNull final String string, @Nullable final String fill,
+                     @Nullable final String stroke) {
+        @NotNull final java.awt.Shape outline = Rasterizer.getTextOutline(x, y, string);
+        @Nullable final Color fillColor = Rasterizer.getColor(fill, Color.BLACK);
+        @Nullable final Color strokeColor = Rasterizer.getColor(stroke, null);
+        if (fillColor == null && strokeColor == null) {
+            return;
+        }
+        this.operations.add(new Rasterizer.Operation(Rasterizer.getBounds(outline, 0.5),
+                graphics -> Rasterizer.paint(graphics, outline, fillColor, strokeColor)));
+    }
+
+    @Override
+    public void end() {
+        this.image = Rasterizer.rasterize(this.operations, this.width, this.height);
+    }
+
+    /**
+     * Gets the display list recorded for the Drawing most recently rendered to this sink.
+     *
+     * @return the painting operations, in order.
+     */
+    @NotNull
+    List<Rasterizer.Operation> getOperations() {
+        return this.operations;
+    }
+
+    /**
+     * Gets the image of the Drawing most recently rendered to this sink.
+     *
+     * @return an image with a transparent background.
+     * @throws IllegalStateException if no Drawing has been rendered to this sink.
+     */
+    @NotNull
+    public BufferedImage getImage() {
+        if (this.image == null) {
+            throw new IllegalStateException("No drawing has been rendered");
+        }
+        return this.image;
+    }
+}
@@ -18,6 +18,9 @@ package com.aarrelaakso.drawl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Represents lines.
  */
@@ -127,10 +130,11 @@ public class Line extends Shape {
     }
 
     public void addLineEnding(final LineEnding lineEnding) {
+        this.invalidateSVG();
         this.lineEnding = lineEnding;
     }
 
-    private LineEnding getLineEnding() {
+    LineEnding getLineEnding() {
         return this.lineEnding;
     }
 
@@ -160,66 +164,147 @@ public class Line extends Shape {
         return this.point2Implicit;
     }
 
-    public @NotNull String getSVG() {
+    /**
+     * Get SVG representing this Line.
+     * <p>
+     * The marker for the LineEnding, if any, is registered with the context rather than written inline.
+     *
+     * @param context the state of the rendering of which this Line is a part.
+     * @return A string containing SVG representing this Line.
+     */
+    @Override
+    @NotNull String getSVG(@NotNull final SVGContext context) {
 
         if (this.getExplicitWidth() == null || this.getExplicitHeight() == null) {
             throw new UnsupportedOperationException("Cannot get SVG without setting explicit dimensions");
         }
 
-        String newLine = System.getProperty("line.separator");
+        @NotNull final String newLine = context.getNewLine();
         @NotNull final StringBuilder svgBuilder = new StringBuilder();
+        @Nullable String marker = null;
         if (this.hasArrowhead()) {
-            svgBuilder.append(this.getLineEnding().getSVGDef(this.getThickness()));
+            marker = context.addMarker(this.getLineEnding(), this.getThickness());
         }
         svgBuilder.append(newLine + "<line");
-        svgBuilder.append(" x1='");
-        svgBuilder.append(this.getPoint1Explicit().getX().toSVG());
-        svgBuilder.append("'");
-        svgBuilder.append(" y1='");
-        svgBuilder.append(this.getPoint1Explicit().getY().toSVG());
-        svgBuilder.append("'");
-        svgBuilder.append(" x2='");
-        svgBuilder.append(this.getPoint2Explicit().getX().toSVG());
-        svgBuilder.append("'");
-        svgBuilder.append(" y2='");
-        svgBuilder.append(this.getPoint2Explicit().getY().toSVG());
-        svgBuilder.append("'");
-
-        if (this.getFill() != null) {
-            svgBuilder.append(" fill='");
-            svgBuilder.append(this.getFill());
-            svgBuilder.append("'");
+        @NotNull final String[] names = {"x1", "y1", "x2", "y2"};
+        // Point 1 is at the bottom left and point 2 at the top right, as in getPoint1Explicit and getPoint2Explicit
+        @NotNull final String[] values = {this.getSVGXPositionLeft(context).toSVG(),
+                this.getSVGYPositionBottom(context).toSVG(), this.getSVGXPositionRight(context).toSVG(),
+                this.getSVGYPositionTop(context).toSVG()};
+        for (int i = 0; i < names.length; i++) {
+            if (!context.isOmitted(values[i], "0")) {
+                svgBuilder.append(" ").append(names[i]).append("='");
+                svgBuilder.append(values[i]);
+                svgBuilder.append("'");
+            }
         }
-        svgBuilder.append(" stroke='");
-        if (this.getStroke() != null) {
-            svgBuilder.append(this.getStroke());
+
+        @NotNull final List<String> style = this.getSVGStyle();
+        final String stroke = style.get(1);
+        final String strokeWidth = style.get(2);
+        if (context.hasStyleClasses()) {
+            svgBuilder.append(context.getStyleClass(this.getFill(), stroke, strokeWidth));
         } else {
-            //Our lines are visible by default....
-            svgBuilder.append("black");
-        }
-        svgBuilder.append("'");
+            if (this.getFill() != null && !context.isOmitted(this.getFill(), "black")) {
+                svgBuilder.append(" fill='");
+                svgBuilder.append(this.getFill());
+                svgBuilder.append("'");
+            }
+            svgBuilder.append(" stroke='");
+            svgBuilder.append(stroke);
+            svgBuilder.append("'");
 
-        svgBuilder.append(" stroke-width='");
-        svgBuilder.append(DrawlNumber.valueOf(this.getThickness()).toSVG());
-        svgBuilder.append("'");
+            if (!context.isOmitted(strokeWidth, "1")) {
+                svgBuilder.append(" stroke-width='");
+                svgBuilder.append(strokeWidth);
+                svgBuilder.append("'");
+            }
+        }
 
-        if (this.hasArrowhead()) {
-            svgBuilder.append(" marker-end='url(#");
-            svgBuilder.append(this.lineEnding.getLineEndingType());
-            svgBuilder.append("-");
-            svgBuilder.append(this.lineEnding.getUniqueId());
+        if (marker != null) {
+            svgBuilder.append(" marker-end='url(");
+            svgBuilder.append(marker);
             svgBuilder.append(")'");
         }
 
-        svgBuilder.append(" />");
+        svgBuilder.append(context.getEmptyElementEnd());
         svgBuilder.append(newLine);
         if (this.getText() != null) {
-            svgBuilder.append(this.getText().getSVG());
+            svgBuilder.append(this.getText().getSVG(context));
         }
         return svgBuilder.toString();
     }
 
+    /**
+     * Append path data that draws this Line.
+     *
+     * @param pathData the path data to which to append.
+     * @return <code>true</code> if this Line was appended, or <code>false</code> if it has a LineEnding or Text.
+     */
+    @Override
+    boolean appendSVGPathData(@NotNull final PathData pathData) {
+        if (this.getExplicitWidth() == null || this.getExplicitHeight() == null) {
+            throw new UnsupportedOperationException("Cannot get SVG without setting explicit dimensions");
+        }
+        // A marker would only be drawn at the end of the whole path
+        if (this.hasArrowhead() || this.getText() != null) {
+            return false;
+        }
+        pathData.moveTo(this.getPoint1Explicit().getX().doubleValue(), this.getPoint1Explicit().getY().doubleValue());
+        pathData.lineTo(this.getPoint2Explicit().getX().doubleValue(), this.getPoint2Explicit().getY().doubleValue());
+        return true;
+    }
+
+    /**
+     * A Line has no area to fill, so it is left out of a coarse preview.
+     *
+     * @return 0.
+     */
+    @Override
+    double getExplicitArea() {
+        return 0.0;
+    }
+
+    /**
+     * Renders this Line, with its LineEnding if it has one, as a primitive for a sink.
+     *
+     * @param sink the sink to which to pass the primitive.
+     */
+    @Override
+    void render(@NotNull final RenderSink sink) {
+        sink.line(this.getPoint1Explicit().getX().doubleValue(), this.getPoint1Explicit().getY().doubleValue(),
+                this.getPoint2Explicit().getX().doubleValue(), this.getPoint2Explicit().getY().doubleValue(),
+                this.getSVGStyle().get(1), this.getThickness(), this.hasArrowhead() ? this.getLineEnding() : null);
+        super.render(sink);
+    }
+
+    /**
+     * Indicates whether the SVG for this Line registers definitions with the rendering context.
+     *
+     * @return <code>true</code> if this Line has a LineEnding, whose marker is registered with the context.
+     */
+    @Override
+    boolean hasSVGDefinitions() {
+        return this.hasArrowhead() || super.hasSVGDefinitions();
+    }
+
+    /**
+     * Get the style with which this Line is drawn.
+     *
+     * @return the fill, stroke and stroke width of this Line. Lines always have a stroke and a stroke width.
+     */
+    @NotNull
+    @Override
+    List<String> getSVGStyle() {
+        //Our lines are visible by default....
+        final String stroke = (this.getStroke() != null) ? this.getStroke() : "black";
+        return Arrays.asList(this.getFill(), stroke, DrawlNumber.valueOf(this.getThickness()).toSVG());
+    }
+
     public void setThickness(double thickness) {
+        if (this.thickness != thickness) {
+            this.invalidateSVG();
+        }
         this.thickness = thickness;
     }
 
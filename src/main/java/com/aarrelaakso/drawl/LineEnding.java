@@ -17,7 +17,15 @@ package com.aarrelaakso.drawl;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 
@@ -32,8 +40,31 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class LineEnding implements LineEndingInterface {
 
+    /**
+     * A fill that takes the stroke color of whichever Line the LineEnding is drawn on (SVG 2).
+     * <p>
+     * Lines of many colors can then share a single marker definition, instead of needing one LineEnding per color.
+     */
+    public static final String CONTEXT_STROKE = "context-stroke";
     protected static final String newLine = System.getProperty("line.separator");
     private static final AtomicLong idCounter = new AtomicLong();
+    /**
+     * The most distinct markers to keep in {@link #markerBodies}, so that drawings with endless custom fills cannot
+     * grow it without bound.
+     */
+    private static final int MARKER_CACHE_SIZE = 1024;
+    /**
+     * The serialized body of each of the most recently used markers (everything after its id), keyed by marker key.
+     */
+    private static final Map<List<Object>, String> markerBodies = Collections.synchronizedMap(
+            new LinkedHashMap<List<Object>, String>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<List<Object>, String> eldest) {
+                    return this.size() > MARKER_CACHE_SIZE;
+                }
+            });
     /**
      * Enumerates the LineEnding types that have open figures.
      */
@@ -43,10 +74,16 @@ public class LineEnding implements LineEndingInterface {
     private String stroke = "";
     private double height = 1.0;
     private double width = 1.0;
-    private String uniqueId;
     private final LineEnding.Type lineEndingType = Type.DEFAULT;
 
-
+    /**
+     * Returns a new id, unique within this JVM.
+     *
+     * @return the next value of a counter shared by every caller.
+     * @deprecated Marker ids are no longer drawn from this counter; each rendering numbers its markers from zero, with
+     * the prefix set by {@link Drawing#setIdPrefix(String)}. This method will be removed in a future release.
+     */
+    @Deprecated
     public static String createID() {
         return String.valueOf(idCounter.getAndIncrement());
     }
@@ -149,35 +186,95 @@ public class LineEnding implements LineEndingInterface {
         return "Override me!";
     }
 
-    protected String getSVGDef(double lineWidth) {
+    /**
+     * Gets the outline of the marker, in the units of its viewBox, for painting without SVG.
+     * <p>
+     * It is up to subclasses to override this method, with the geometry that they write in {@link #getSVG()}.
+     *
+     * @return the outline of the marker.
+     */
+    protected java.awt.Shape getMarkerOutline() {
+        return new Path2D.Double();
+    }
+
+    /**
+     * Gets the point of the outline that is placed on the end of the Line, as given by the refX and refY of the
+     * marker.
+     * <p>
+     * By default, this is the center of the outline.
+     *
+     * @return the reference point, in the units of the viewBox of the marker.
+     */
+    protected Point2D getMarkerReference() {
+        Rectangle2D bounds = this.getMarkerOutline().getBounds2D();
+        return new Point2D.Double(bounds.getCenterX(), bounds.getCenterY());
+    }
+
+    /**
+     * Indicates whether the outline of the marker is filled, or only stroked.
+     *
+     * @return <code>true</code> if the outline is filled.
+     */
+    protected boolean isMarkerFilled() {
+        return true;
+    }
+
+    /**
+     * Gets the SVG marker element for this LineEnding, for use inside a <code>&lt;defs&gt;</code> element.
+     *
+     * @param id        the id to give the marker.
+     * @param lineWidth the width of the Line on which the marker will be drawn.
+     * @return a <code>&lt;marker&gt;</code> element.
+     */
+    protected String getSVGMarker(String id, double lineWidth) {
+
+        // The body depends only on the marker key, so its geometry is computed once per distinct LineEnding
+        List<Object> key = this.getMarkerKey();
+        String body = markerBodies.get(key);
+        if (body == null) {
+            body = this.getSVGMarkerBody();
+            markerBodies.put(key, body);
+        }
+        return "<marker id='" + id + "'" + body;
+    }
+
+    /**
+     * Gets the SVG marker element for this LineEnding, apart from its opening and its id.
+     *
+     * @return the rest of a <code>&lt;marker&gt;</code> element.
+     */
+    private String getSVGMarkerBody() {
 
         StringBuilder svg = new StringBuilder();
 
-        svg.append(newLine + "<defs>" + newLine);
-        svg.append("<marker id='");
-        svg.append(this.getLineEndingType());
-        svg.append("-");
-        svg.append(this.getUniqueId());
-        svg.append("' orient='auto'");
+        svg.append(" orient='auto'");
         svg.append(getSVG());
 
         // Closing tags
         svg.append(" />" + newLine);
         svg.append("</marker>" + newLine);
-        svg.append("</defs>" + newLine);
 
         return svg.toString();
     }
 
-    protected String getStroke() {
-        return this.stroke;
+    /**
+     * Returns a key that is equal for any two LineEndings that have identical marker definitions.
+     * <p>
+     * Marker definitions are shared, and cached for the life of the JVM, by key. The key includes the class, so a
+     * subclass never shares a marker with the class it extends. A subclass whose marker depends on state of its own
+     * must override this method to add that state to the key.
+     * <p>
+     * The width of the Line is not part of the key, because markers are sized in units of the stroke width.
+     *
+     * @return a key identifying the marker definition of this LineEnding.
+     */
+    protected List<Object> getMarkerKey() {
+        return Arrays.asList(this.getClass(), this.getLineEndingType(), this.width, this.height, this.fill,
+                this.stroke);
     }
 
-    String getUniqueId() {
-        if (this.uniqueId == null) {
-            this.uniqueId = createID();
-        }
-        return this.uniqueId;
+    protected String getStroke() {
+        return this.stroke;
     }
 
     public double getWidth() {
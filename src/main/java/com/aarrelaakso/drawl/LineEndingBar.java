@@ -1,5 +1,7 @@
 package com.aarrelaakso.drawl;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents a line ending consisting of a bar at the end of the line.
  */
@@ -10,6 +12,19 @@ public class LineEndingBar extends LineEnding {
         return Type.BAR;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double height = 6.0 * this.getHeight();
+        double width = 1.0 * this.getHeight();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1, 1);
+        path.lineTo(1, height + 1);
+        path.lineTo(width + 1, height + 1);
+        path.lineTo(width + 1, 1);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuffer svg = new StringBuffer();
@@ -20,7 +35,7 @@ public class LineEndingBar extends LineEnding {
         svg.append(" markerHeight='" + (height + 2) + "'");
         svg.append(" refX='" + (width / 2.0 + 1) + "'");
         svg.append(" refY='" + (height / 2.0 + 1) + "'>" + LineEnding.newLine);
-        svg.append("<path d='M1,1 L1," + (height + 1) + " L" + (width + 1) + "," + (height + 1) + " L" + (width + 1) + ",1 z'");
+        svg.append("<path d='" + PathData.valueOf(this.getMarkerOutline()) + "'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
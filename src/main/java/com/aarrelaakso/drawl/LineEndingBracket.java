@@ -1,5 +1,8 @@
 package com.aarrelaakso.drawl;
 
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+
 /**
  * Represents a line ending consisting of a bracket at the end of the line.
  */
@@ -15,6 +18,31 @@ public class LineEndingBracket extends LineEnding {
         return Type.BRACKET;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double height = 6.0 * this.getHeight();
+        double width = 3.0 * this.getHeight();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1.0, 1.0);
+        path.lineTo(width + 1.0, 1.0);
+        path.lineTo(width + 1.0, height + 1.0);
+        path.lineTo(1.0, height + 1.0);
+        return path;
+    }
+
+    @Override
+    protected Point2D getMarkerReference() {
+        double height = 6.0 * this.getHeight();
+        double width = 3.0 * this.getHeight();
+        return new Point2D.Double(width + 1.0, height / 2.0 + 1.0);
+    }
+
+    @Override
+    protected boolean isMarkerFilled() {
+        // The bracket is drawn with fill-opacity='0.0'
+        return false;
+    }
+
     @Override
     protected String getSVG() {
         StringBuffer svg = new StringBuffer();
@@ -38,14 +66,8 @@ public class LineEndingBracket extends LineEnding {
         svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
         svg.append("'>");
         svg.append(LineEnding.newLine);
-        svg.append("<path d='M1,1 L");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(",1 L");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(",");
-        svg.append(new DrawlNumber(height + 1.0).toSVG());
-        svg.append(" L1,");
-        svg.append(new DrawlNumber(height + 1.0).toSVG());
+        svg.append("<path d='");
+        svg.append(PathData.valueOf(this.getMarkerOutline()));
         svg.append("'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
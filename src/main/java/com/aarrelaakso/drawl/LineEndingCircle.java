@@ -2,6 +2,8 @@ package com.aarrelaakso.drawl;
 
 import static java.lang.Math.sqrt;
 
+import java.awt.geom.Ellipse2D;
+
 /**
  * Represents a line ending consisting of a circle at the end of a line.
  */
@@ -17,6 +19,13 @@ public class LineEndingCircle extends LineEnding {
         return Type.CIRCLE;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double radius = this.getWidth() * 4.0 / sqrt(Math.PI);
+        double diameter = 2 * radius;
+        return new Ellipse2D.Double(1, 1, diameter, diameter);
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
@@ -3,6 +3,8 @@ package com.aarrelaakso.drawl;
 import static java.lang.Math.pow;
 import static java.lang.Math.sqrt;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents a diamond-shaped line ending. Synonyms: RHOMBUS
  * <p>
@@ -52,22 +54,36 @@ public class LineEndingDiamond extends LineEnding {
         this.setStroke("black");
     }
 
+    private static final double DEFAULT_HEIGHT = sqrt(32.0) / pow(3.0, 1.0 / 4.0);  // Approx. 4.3
+    private static final double DEFAULT_WIDTH = sqrt(3.0) * DEFAULT_HEIGHT;         // Approx. 7.44
+
     @Override
     protected Type getLineEndingType() {
         return Type.DIAMOND;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double width = DEFAULT_WIDTH * this.getWidth();
+        double height = DEFAULT_HEIGHT * this.getHeight();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1, height / 2.0 + 1);
+        path.lineTo(width / 2.0 + 1, height + 1);
+        path.lineTo(width + 1, height / 2.0 + 1);
+        path.lineTo(width / 2.0 + 1, 1);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
-        double height = sqrt(32.0) / pow(3.0, 1.0 / 4.0);                       // Approx. 4.3
-        double width = sqrt(3.0) * height;                                      // Approx. 7.44
-        width = width * this.getWidth();
-        height = height * this.getHeight();
+        double width = DEFAULT_WIDTH * this.getWidth();
+        double height = DEFAULT_HEIGHT * this.getHeight();
         svg.append(" viewBox='0 0 " + (width + 2) + " " + (height + 2) + "'");
         svg.append(" markerWidth='" + (width + 2) + "' markerHeight='" + (height + 2) + "'");
         svg.append(" refX='" + (width / 2.0 + 1) + "' refY='" + (height / 2.0 + 1) + "'>" + newLine);
-        svg.append("<path d='M1," + (height / 2.0 + 1) + " L" + (width / 2.0 + 1) + "," + (height + 1) + " L" + (width + 1) + "," + (height / 2.0 + 1) + " L" + (width / 2.0 + 1) + ",1 z'");
+        svg.append("<path d='" + PathData.valueOf(this.getMarkerOutline()) + "'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
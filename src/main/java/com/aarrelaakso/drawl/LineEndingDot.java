@@ -2,6 +2,8 @@ package com.aarrelaakso.drawl;
 
 import static java.lang.Math.sqrt;
 
+import java.awt.geom.Ellipse2D;
+
 /**
  * A dot-shaped line ending. Synonyms: DISK
  * <p>
@@ -32,6 +34,13 @@ public class LineEndingDot extends LineEnding {
         return Type.DOT;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double radius = this.getWidth() * 4.0 / sqrt(Math.PI);
+        double diameter = 2 * radius;
+        return new Ellipse2D.Double(1, 1, diameter, diameter);
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
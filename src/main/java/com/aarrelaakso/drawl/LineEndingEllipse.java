@@ -1,5 +1,7 @@
 package com.aarrelaakso.drawl;
 
+import java.awt.geom.Ellipse2D;
+
 /**
  * Represents an elliptical line ending.
  */
@@ -14,6 +16,13 @@ public class LineEndingEllipse extends LineEnding {
         return Type.ELLIPSE;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double radiusX = this.getWidth() * 3.0;
+        double radiusY = this.getHeight() * 2.0;
+        return new Ellipse2D.Double(1, 1, 2.0 * radiusX, 2.0 * radiusY);
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
@@ -1,5 +1,7 @@
 package com.aarrelaakso.drawl;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents a kite line ending.
  */
@@ -14,6 +16,20 @@ public class LineEndingKite extends LineEndingRectangle {
         return Type.KITE;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double height = 6.0 * this.getHeight();
+        double width = 6.0 * this.getWidth();
+        double inset = 3.0 * this.getWidth();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1.0, height / 2.0 + 1.0);
+        path.lineTo(inset, height + 1.0);
+        path.lineTo(width + 1.0, height / 2.0 + 1.0);
+        path.lineTo(3.0, 1.0);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
@@ -33,19 +49,9 @@ public class LineEndingKite extends LineEndingRectangle {
         svg.append("' refY='");
         svg.append(new DrawlNumber(height / 2.0 + 1).toSVG());
         svg.append("'>").append(newLine);
-        svg.append("<path d='M1,");
-        svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
-        svg.append(" L");
-        svg.append(new DrawlNumber(inset).toSVG());
-        svg.append(",");
-        svg.append(new DrawlNumber(height + 1.0).toSVG());
-        svg.append(" L");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(",");
-        svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
-        svg.append(" L");
-        svg.append(3);
-        svg.append(",1 z'");
+        svg.append("<path d='");
+        svg.append(PathData.valueOf(this.getMarkerOutline()));
+        svg.append("'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
@@ -3,6 +3,8 @@ package com.aarrelaakso.drawl;
 import static java.lang.Math.pow;
 import static java.lang.Math.sqrt;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents an open (unfilled) diamond-shaped line ending.
  */
@@ -18,6 +20,19 @@ public class LineEndingOpenDiamond extends LineEnding {
         return Type.OPEN_DIAMOND;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double height = this.getHeight() * sqrt(32.0) / pow(3.0, 1.0 / 4.0);
+        double width = this.getWidth() * sqrt(3.0) * height;
+        Path2D path = new Path2D.Double();
+        path.moveTo(1, height / 2.0 + 1);
+        path.lineTo(width / 2.0 + 1, height + 1);
+        path.lineTo(width + 1, height / 2.0 + 1);
+        path.lineTo(width / 2.0 + 1, 1);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
@@ -26,7 +41,7 @@ public class LineEndingOpenDiamond extends LineEnding {
         svg.append(" viewBox='0 0 " + (width + 2) + " " + (height + 2) + "'");
         svg.append(" markerWidth='" + (width + 2) + "' markerHeight='" + (height + 2) + "'");
         svg.append(" refX='" + (width / 2.0 + 1) + "' refY='" + (height / 2.0 + 1) + "'>" + newLine);
-        svg.append("<path d='M1," + (height / 2.0 + 1) + " L" + (width / 2.0 + 1) + "," + (height + 1) + " L" + (width + 1) + "," + (height / 2.0 + 1) + "L" + (width / 2.0 + 1) + ",1 z'");
+        svg.append("<path d='" + PathData.valueOf(this.getMarkerOutline()) + "'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
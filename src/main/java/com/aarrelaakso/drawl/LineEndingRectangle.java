@@ -2,6 +2,8 @@ package com.aarrelaakso.drawl;
 
 import static java.lang.Math.sqrt;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents a rectangular line ending.
  * A rectangle is a generalization of a square that has different width and height.
@@ -13,6 +15,19 @@ public class LineEndingRectangle extends LineEnding {
         return Type.RECTANGLE;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double height = this.getHeight() * 2.0 * sqrt(2.0);
+        double width = this.getWidth() * 2.0 * height;
+        Path2D path = new Path2D.Double();
+        path.moveTo(1, 1);
+        path.lineTo(1, height + 1);
+        path.lineTo(width + 1, height + 1);
+        path.lineTo(width + 1, 1);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuffer svg = new StringBuffer();
@@ -23,7 +38,7 @@ public class LineEndingRectangle extends LineEnding {
         svg.append(" markerHeight='" + (height + 2) + "'");
         svg.append(" refX='" + (width / 2.0 + 1) + "'");
         svg.append(" refY='" + (height / 2.0 + 1) + "'>" + LineEnding.newLine);
-        svg.append("<path d='M1,1 L1," + (height + 1) + " L" + (width + 1) + "," + (height + 1) + " L" + (width + 1) + ",1 z'");
+        svg.append("<path d='" + PathData.valueOf(this.getMarkerOutline()) + "'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
@@ -1,5 +1,8 @@
 package com.aarrelaakso.drawl;
 
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+
 /**
  * Represents a square (box) line ending.
  *
@@ -16,6 +19,25 @@ public class LineEndingSquare extends LineEndingRectangle {
         return Type.BOX;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double width = 4.0 * this.getWidth();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1.0, 1.0);
+        path.lineTo(1.0, width + 1.0);
+        path.lineTo(width + 1.0, width + 1.0);
+        path.lineTo(width + 1.0, 1.0);
+        path.closePath();
+        return path;
+    }
+
+    @Override
+    protected Point2D getMarkerReference() {
+        double height = 4.0 * this.getHeight();
+        double width = 4.0 * this.getWidth();
+        return new Point2D.Double(width / 2.0 + 1.0, height / 2.0 + 1.0);
+    }
+
     @Override
     protected String getSVG() {
         double height = 4.0 * this.getHeight();
@@ -37,15 +59,9 @@ public class LineEndingSquare extends LineEndingRectangle {
         svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
         svg.append("'>");
         svg.append(newLine);
-        svg.append("<path d='M1,1 L1,");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(" L");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(",");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(" L");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(",1 z'");
+        svg.append("<path d='");
+        svg.append(PathData.valueOf(this.getMarkerOutline()));
+        svg.append("'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
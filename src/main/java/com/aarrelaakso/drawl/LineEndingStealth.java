@@ -1,5 +1,7 @@
 package com.aarrelaakso.drawl;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents a square (box) line ending.
  *
@@ -12,6 +14,19 @@ public class LineEndingStealth extends LineEndingRectangle {
         return Type.STEALTH;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double height = 6.0 * this.getHeight();
+        double width = 6.0 * this.getWidth();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1.0, 1.0);
+        path.lineTo(width / 2.0 + 1.0, height / 2.0 + 1.0);
+        path.lineTo(1.0, height + 1.0);
+        path.lineTo(width + 1.0, height / 2.0 + 1.0);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
@@ -35,18 +50,9 @@ public class LineEndingStealth extends LineEndingRectangle {
         svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
         svg.append("'>");
         svg.append(newLine);
-        svg.append("<path d='M1,1");
-        svg.append(" L");
-        svg.append(new DrawlNumber(width / 2.0 + 1.0).toSVG());
-        svg.append(",");
-        svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
-        svg.append(" L1,");
-        svg.append(new DrawlNumber(height + 1.0).toSVG());
-        svg.append(" L");
-        svg.append(new DrawlNumber(width + 1.0).toSVG());
-        svg.append(",");
-        svg.append(new DrawlNumber(height / 2.0 + 1.0).toSVG());
-        svg.append(" z'");
+        svg.append("<path d='");
+        svg.append(PathData.valueOf(this.getMarkerOutline()));
+        svg.append("'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
@@ -2,6 +2,8 @@ package com.aarrelaakso.drawl;
 
 import static java.lang.Math.pow;
 
+import java.awt.geom.Path2D;
+
 
 /**
         For the default line ending, we set the constraint of having the legs have twice the length of the base.
@@ -62,25 +64,37 @@ import static java.lang.Math.pow;
 */
 public class LineEndingTriangle extends LineEnding {
 
+    // See the API documentation for the rationale for these calculations
+    // Take the 4th root of of the quotient 4096 / 15
+    private static final double DEFAULT_HEIGHT = pow(4096.0 / 15.0, 1.0 / 4.0);     // approx. 4.07
+    private static final double DEFAULT_WIDTH = 32.0 / DEFAULT_HEIGHT;              // approx. 7.87
+
     @Override
     protected Type getLineEndingType() {
         return Type.TRIANGLE;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double width = DEFAULT_WIDTH * this.getWidth();
+        double height = DEFAULT_HEIGHT * this.getHeight();
+        Path2D path = new Path2D.Double();
+        path.moveTo(1, 1);
+        path.lineTo(1, height + 1);
+        path.lineTo(width + 1, height / 2.0 + 1);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
-        // See the API documentation for the rationale for these calculations
-        double quotient = 4096.0 / 15.0;
-        // Take the 4th root of of the quotient
-        double height = pow(quotient, 1.0 / 4.0);                      // approx. 4.07
-        double width = 32.0 / height;                                    // approx. 7.87
-        width = width * this.getWidth();
-        height = height * this.getHeight();
+        double width = DEFAULT_WIDTH * this.getWidth();
+        double height = DEFAULT_HEIGHT * this.getHeight();
         svg.append(" viewBox='0 0 " + (width + 3) + " " + (height + 2) + "'");
         svg.append(" markerWidth='" + (width + 3) + "' markerHeight='" + (height + 2) + "'");
         svg.append(" refX='" + (width / 2.0 + 1) + "' refY='" + (height / 2.0 + 1) + "'>" + newLine);
-        svg.append("<path d='M1,1 L1," + (height + 1) + " L" + (width + 1) + "," + (height / 2.0 + 1) + " z'");
+        svg.append("<path d='" + PathData.valueOf(this.getMarkerOutline()) + "'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
@@ -2,6 +2,8 @@ package com.aarrelaakso.drawl;
 
 import static java.lang.Math.sqrt;
 
+import java.awt.geom.Path2D;
+
 /**
  * Represents a special case of the DIAMOND/RHOMBUS line ending in which the angles are all 90 degrees.
  *
@@ -16,6 +18,19 @@ public class LineEndingTurnedSquare extends LineEnding {
         return Type.TURNED_SQUARE;
     }
 
+    @Override
+    protected java.awt.Shape getMarkerOutline() {
+        double diagonal = this.getWidth() * 4.0 * sqrt(2.0);
+        double half_diag = diagonal / 2.0;
+        Path2D path = new Path2D.Double();
+        path.moveTo(half_diag + 1, 1);
+        path.lineTo(diagonal + 1, half_diag + 1);
+        path.lineTo(half_diag + 1, diagonal + 1);
+        path.lineTo(1, half_diag + 1);
+        path.closePath();
+        return path;
+    }
+
     @Override
     protected String getSVG() {
         StringBuilder svg = new StringBuilder();
@@ -24,7 +39,7 @@ public class LineEndingTurnedSquare extends LineEnding {
         svg.append(" viewBox='0 0 " + (diagonal + 2) + " " + (diagonal + 2) + "'");
         svg.append(" markerWidth='" + (diagonal + 2) + "' markerHeight='" + (diagonal + 2) + "'");
         svg.append(" refX='" + (half_diag + 1) + "' refY='" + (half_diag + 1) + "'>" + newLine);
-        svg.append("<path d='M" + (half_diag + 1) + ",1 L" + (diagonal + 1) + "," + (half_diag + 1) + " L" + (half_diag + 1) + "," + (diagonal + 1) + " L1," + (half_diag + 1) + " z'");
+        svg.append("<path d='" + PathData.valueOf(this.getMarkerOutline()) + "'");
         if (this.getStroke() != "") {
             svg.append(" stroke='");
             svg.append(this.getStroke());
@@ -0,0 +1,121 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shared library of marker definitions for every LineEnding type at its default settings.
+ * <p>
+ * Serve the SVG from {@link #getSVG()} once, at a URL of your choosing, and pass that URL to
+ * {@link Drawing#setMarkerLibrary(String)}. Lines whose LineEndings have default settings then refer to the library
+ * instead of embedding their own marker definitions, so that browsers fetch and cache the markers only once for all
+ * drawings. LineEndings with non-default settings (for example, a custom fill) are still defined in the drawing.
+ * <p>
+ * Markers in the library are named after the canonical LineEnding type, such as <code>TRIANGLE</code>, so the
+ * library can be generated once and reused by any number of drawings. Not every browser resolves markers in external
+ * documents, so check the target browsers before using a library.
+ */
+public final class MarkerLibrary {
+
+    /**
+     * The id of each marker in the library, keyed by the marker key of the default LineEnding of that type.
+     */
+    private static final @NotNull Map<List<Object>, String> ids;
+
+    /**
+     * The default LineEnding of each canonical type, keyed by marker id.
+     */
+    private static final @NotNull Map<String, LineEnding> lineEndings;
+
+    static {
+        @NotNull final Map<List<Object>, String> idsByKey = new LinkedHashMap<>();
+        @NotNull final Map<String, LineEnding> lineEndingsById = new LinkedHashMap<>();
+        for (@NotNull final LineEnding.Type type : LineEnding.Type.values()) {
+            @NotNull final LineEnding lineEnding = LineEnding.newInstance(type);
+            @NotNull final List<Object> key = lineEnding.getMarkerKey();
+            if (!idsByKey.containsKey(key)) {
+                @NotNull final String id = lineEnding.getLineEndingType().name();
+                idsByKey.put(key, id);
+                lineEndingsById.put(id, lineEnding);
+            }
+        }
+        ids = Collections.unmodifiableMap(idsByKey);
+        lineEndings = Collections.unmodifiableMap(lineEndingsById);
+    }
+
+    /**
+     * Prevents construction.
+     */
+    private MarkerLibrary() {
+    }
+
+    /**
+     * Gets the id of the library marker that is identical to the marker for a LineEnding, if there is one.
+     *
+     * @param lineEnding the LineEnding whose marker is needed.
+     * @return the id of the library marker, or <code>null</code> if the LineEnding does not have default settings.
+     */
+    @Nullable
+    static String getId(@NotNull final LineEnding lineEnding) {
+        return MarkerLibrary.ids.get(lineEnding.getMarkerKey());
+    }
+
+    /**
+     * Gets the SVG for the marker library.
+     *
+     * @return a standalone SVG document that defines one marker per LineEnding type.
+     */
+    public static @NotNull String getSVG() {
+        @NotNull final StringBuilder svgBuilder = new StringBuilder("<?xml version='1.0' standalone='no'?>");
+        svgBuilder.append("<svg xmlns='http://www.w3.org/2000/svg'>");
+        svgBuilder.append(LineEnding.newLine);
+        svgBuilder.append("<defs>");
+        svgBuilder.append(LineEnding.newLine);
+        for (@NotNull final Map.Entry<String, LineEnding> entry : MarkerLibrary.lineEndings.entrySet()) {
+            svgBuilder.append(entry.getValue().getSVGMarker(entry.getKey(), 1.0));
+        }
+        svgBuilder.append("</defs>");
+        svgBuilder.append(LineEnding.newLine);
+        svgBuilder.append("</svg>");
+        return svgBuilder.toString();
+    }
+
+    /**
+     * Write the marker library to a file.
+     *
+     * @param filename The name of the file to which to write.
+     * @throws IOException If there is a problem writing to the file.
+     */
+    public static void writeToFile(@NotNull final String filename) throws IOException {
+        try (@NotNull final BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            writer.write(MarkerLibrary.getSVG());
+        }
+    }
+}
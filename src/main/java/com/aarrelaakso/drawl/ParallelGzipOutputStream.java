@@ -0,0 +1,287 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import com.google.common.flogger.FluentLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip (SVGZ) output, deflating independent blocks of the input on several threads at once.
+ * <p>
+ * The input is cut into fixed-size blocks. Each block is deflated on its own thread as a run of raw deflate blocks
+ * ending in a sync flush, primed with the last 32 KiB of the preceding block so that compression barely suffers.
+ * The compressed blocks are written in order between a single gzip header and trailer, so the result is one
+ * ordinary gzip member that any gzip reader (including browsers reading SVGZ) can inflate.
+ * <p>
+ * The CRC of the uncompressed data is computed on the writing thread as the data arrives; it is cheap compared to
+ * deflating.
+ */
+public class ParallelGzipOutputStream extends FilterOutputStream {
+
+    /**
+     * By default, each block holds 128 KiB of uncompressed input.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * Deflate cannot refer back further than 32 KiB, so there is no point priming a block with more than this.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] GZIP_HEADER = {
+            (byte) 0x1f, (byte) 0x8b,   // Magic number
+            Deflater.DEFLATED,          // Compression method
+            0,                          // Flags
+            0, 0, 0, 0,                 // Modification time (none)
+            0,                          // Extra flags
+            (byte) 0xff                 // Operating system (unknown)
+    };
+
+    private static final @NotNull FluentLogger logger;
+
+    static {
+        logger = FluentLogger.forEnclosingClass();
+
+    }
+
+    private final int blockSize;
+    private final @NotNull CRC32 crc = new CRC32();
+    private final @NotNull ExecutorService executor;
+    private final int maximumPending;
+    private final @NotNull Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength;
+    private boolean closed;
+    private @Nullable byte[] dictionary;
+    private boolean headerWritten;
+    private long uncompressedLength;
+
+    /**
+     * Constructs a ParallelGzipOutputStream that uses one thread per available processor and the default block size.
+     *
+     * @param out the stream to which to write the compressed data.
+     */
+    public ParallelGzipOutputStream(@NotNull final OutputStream out) {
+        this(out, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a ParallelGzipOutputStream.
+     *
+     * @param out       the stream to which to write the compressed data.
+     * @param blockSize the number of uncompressed bytes to deflate in each block.
+     * @param threads   the number of threads on which to deflate blocks.
+     */
+    public ParallelGzipOutputStream(@NotNull final OutputStream out, final int blockSize, final int threads) {
+        super(out);
+        if (blockSize < ParallelGzipOutputStream.DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least "
+                    + ParallelGzipOutputStream.DICTIONARY_SIZE);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required");
+        }
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        // Keep a couple of blocks queued per thread so that no thread idles while the writer catches up
+        this.maximumPending = 2 * threads;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "drawl-deflate");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Deflates one block on its own Deflater.
+     *
+     * @param input      the uncompressed block.
+     * @param length     the number of bytes of input to deflate.
+     * @param dictionary the tail of the preceding block, or <code>null</code> if this is the first block.
+     * @param last       whether this is the final block of the stream.
+     * @return the raw deflate data for the block.
+     */
+    @NotNull
+    private static byte[] deflateBlock(@NotNull final byte[] input, final int length,
+                                       @Nullable final byte[] dictionary, final boolean last) {
+        @NotNull final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input, 0, length);
+            @NotNull final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            @NotNull final byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    final int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+            } else {
+                // A sync flush ends on a byte boundary with no final-block bit, so the next block can follow directly
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.submitBlock(true);
+            this.drain(0);
+            this.writeTrailer();
+            this.out.flush();
+        } finally {
+            this.closed = true;
+            this.executor.shutdownNow();
+            this.out.close();
+        }
+    }
+
+    /**
+     * Writes completed blocks, in order, until no more than <code>limit</code> blocks are still pending.
+     *
+     * @param limit the number of blocks that may remain pending.
+     * @throws IOException if a block could not be deflated or written.
+     */
+    private void drain(final int limit) throws IOException {
+        while (this.pending.size() > limit) {
+            @NotNull final Future<byte[]> future = this.pending.removeFirst();
+            try {
+                this.out.write(future.get());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing");
+            } catch (final ExecutionException e) {
+                throw new IOException("Could not compress block", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Flushes all completed blocks to the underlying stream. Data still held in a partial block is not flushed, so
+     * that every block but the last is full.
+     *
+     * @throws IOException if a block could not be deflated or written.
+     */
+    @Override
+    public void flush() throws IOException {
+        this.drain(0);
+        this.out.flush();
+    }
+
+    /**
+     * Hands the current block to the executor and starts a new one.
+     *
+     * @param last whether this is the final block of the stream.
+     * @throws IOException if the stream has been closed or a block could not be written.
+     */
+    private void submitBlock(final boolean last) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        if (!this.headerWritten) {
+            this.out.write(ParallelGzipOutputStream.GZIP_HEADER);
+            this.headerWritten = true;
+        }
+        final byte[] input = this.block;
+        final int length = this.blockLength;
+        final byte[] priming = this.dictionary;
+        this.pending.addLast(this.executor.submit(() ->
+                ParallelGzipOutputStream.deflateBlock(input, length, priming, last)));
+        if (!last) {
+            this.dictionary = Arrays.copyOfRange(input, length - ParallelGzipOutputStream.DICTIONARY_SIZE, length);
+            this.block = new byte[this.blockSize];
+            this.blockLength = 0;
+        }
+        ParallelGzipOutputStream.logger.atFinest().log("Submitted block of %d bytes", length);
+        this.drain(this.maximumPending);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(@NotNull final byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        this.crc.update(b, off, len);
+        this.uncompressedLength += len;
+        while (len > 0) {
+            final int count = Math.min(len, this.blockSize - this.blockLength);
+            System.arraycopy(b, off, this.block, this.blockLength, count);
+            this.blockLength += count;
+            off += count;
+            len -= count;
+            if (this.blockLength == this.blockSize) {
+                this.submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Writes the gzip trailer: the CRC-32 and the length (modulo 2^32) of the uncompressed data, little-endian.
+     *
+     * @throws IOException if the trailer could not be written.
+     */
+    private void writeTrailer() throws IOException {
+        @NotNull final byte[] trailer = new byte[8];
+        ParallelGzipOutputStream.writeIntLE(trailer, 0, this.crc.getValue());
+        ParallelGzipOutputStream.writeIntLE(trailer, 4, this.uncompressedLength);
+        this.out.write(trailer);
+    }
+
+    private static void writeIntLE(@NotNull final byte[] buffer, final int offset, final long value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+}
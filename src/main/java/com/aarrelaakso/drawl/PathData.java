@@ -0,0 +1,296 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.geom.PathIterator;
+
+/**
+ * Builds the data for an SVG <code>&lt;path&gt;</code> in its shortest encoding.
+ * <p>
+ * For each segment, the encoder writes whichever of the absolute and relative forms is shorter, and uses the
+ * horizontal and vertical line commands where it can. It drops a command letter when the same command
+ * (or the lineto implied by a moveto) is repeated, and leaves out the separator before a negative number. Numbers are
+ * written with single precision, as for {@link DrawlNumber#toSVG()}, without a leading zero.
+ * <p>
+ * The encoder tracks the current point as a renderer would read it back from the written numbers, so that rounding
+ * in relative segments never accumulates.
+ */
+final class PathData {
+
+    private final @NotNull StringBuilder data = new StringBuilder();
+
+    /**
+     * The command that a bare list of numbers would continue, or 0 if there is none.
+     */
+    private char implicitCommand;
+
+    private double currentX;
+    private double currentY;
+    private double startX;
+    private double startY;
+
+    /**
+     * Formats a number in its shortest single-precision form.
+     *
+     * @param value the number to format.
+     * @return the number, without a trailing <code>.0</code> or a leading zero.
+     */
+    @NotNull
+    static String format(final double value) {
+        final float number = (float) value;
+        if (number == 0.0f) {
+            // Also covers negative zero
+            return "0";
+        }
+        final String result;
+        if (number == Math.rint(number) && Math.abs(number) < 1.0e7f) {
+            result = String.valueOf((long) number);
+        } else {
+            result = Float.toString(number);
+        }
+        if (result.startsWith("0.")) {
+            return result.substring(1);
+        } else if (result.startsWith("-0.")) {
+            return "-" + result.substring(2);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the data for an outline made of straight lines.
+     *
+     * @param outline the outline.
+     * @return the path data.
+     * @throws IllegalArgumentException if the outline has curved segments.
+     */
+    @NotNull
+    static PathData valueOf(@NotNull final java.awt.Shape outline) {
+        @NotNull final PathData data = new PathData();
+        @NotNull final double[] coordinates = new double[6];
+        for (@NotNull final PathIterator segments = outline.getPathIterator(null); !segments.isDone();
+             segments.next()) {
+            switch (segments.currentSegment(coordinates)) {
+                case PathIterator.SEG_MOVETO:
+                    data.moveTo(coordinates[0], coordinates[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    data.lineTo(coordinates[0], coordinates[1]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    data.closePath();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Path data can only be built from straight lines");
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Appends a number to some arguments, with a separator unless the number is negative.
+     *
+     * @param arguments the arguments so far.
+     * @param number    the formatted number to append.
+     * @param separator the separator to use if one is needed.
+     */
+    private static void appendNumber(@NotNull final StringBuilder arguments, @NotNull final String number,
+                                     final char separator) {
+        if (arguments.length() > 0 && !number.startsWith("-")) {
+            arguments.append(separator);
+        }
+        arguments.append(number);
+    }
+
+    @NotNull
+    private static String pair(@NotNull final String x, @NotNull final String y) {
+        @NotNull final StringBuilder arguments = new StringBuilder(x);
+        PathData.appendNumber(arguments, y, ',');
+        return arguments.toString();
+    }
+
+    /**
+     * Draws an elliptical arc from the current point.
+     *
+     * @param rx       the x radius.
+     * @param ry       the y radius.
+     * @param rotation the rotation of the ellipse, in degrees.
+     * @param largeArc whether to take the larger of the possible arcs.
+     * @param sweep    whether to sweep in the positive-angle (on screen, clockwise) direction.
+     * @param x        the absolute x coordinate of the end of the arc.
+     * @param y        the absolute y coordinate of the end of the arc.
+     * @return this PathData.
+     */
+    @NotNull
+    PathData arcTo(final double rx, final double ry, final double rotation, final boolean largeArc,
+                   final boolean sweep, final double x, final double y) {
+        @NotNull final StringBuilder prefix = new StringBuilder(PathData.pair(PathData.format(rx),
+                PathData.format(ry)));
+        PathData.appendNumber(prefix, PathData.format(rotation), ' ');
+        prefix.append(' ').append(largeArc ? '1' : '0').append(' ').append(sweep ? '1' : '0');
+        final String absoluteX = PathData.format(x);
+        final String absoluteY = PathData.format(y);
+        final String relativeX = PathData.format(x - this.currentX);
+        final String relativeY = PathData.format(y - this.currentY);
+        @NotNull final StringBuilder absolute = new StringBuilder(prefix);
+        PathData.appendNumber(absolute, PathData.pair(absoluteX, absoluteY), ' ');
+        @NotNull final StringBuilder relative = new StringBuilder(prefix);
+        PathData.appendNumber(relative, PathData.pair(relativeX, relativeY), ' ');
+        if (relative.length() < absolute.length()) {
+            this.emit('a', relative.toString(), 'a');
+            this.currentX += Double.parseDouble(relativeX);
+            this.currentY += Double.parseDouble(relativeY);
+        } else {
+            this.emit('A', absolute.toString(), 'A');
+            this.currentX = Double.parseDouble(absoluteX);
+            this.currentY = Double.parseDouble(absoluteY);
+        }
+        return this;
+    }
+
+    /**
+     * Closes the current subpath, returning to its start.
+     *
+     * @return this PathData.
+     */
+    @NotNull
+    PathData closePath() {
+        this.data.append('z');
+        this.implicitCommand = 0;
+        this.currentX = this.startX;
+        this.currentY = this.startY;
+        return this;
+    }
+
+    /**
+     * Appends a command and its arguments, leaving out the command letter if it would be implied anyway.
+     *
+     * @param command   the command letter.
+     * @param arguments the formatted arguments.
+     * @param implied   the command that further bare arguments would continue.
+     */
+    private void emit(final char command, @NotNull final String arguments, final char implied) {
+        if (command == this.implicitCommand) {
+            if (!arguments.startsWith("-")) {
+                this.data.append(' ');
+            }
+        } else {
+            this.data.append(command);
+        }
+        this.data.append(arguments);
+        this.implicitCommand = implied;
+    }
+
+    /**
+     * Indicates whether any commands have been added.
+     *
+     * @return <code>true</code> if no commands have been added.
+     */
+    boolean isEmpty() {
+        return this.data.length() == 0;
+    }
+
+    /**
+     * Draws a straight line from the current point.
+     *
+     * @param x the absolute x coordinate of the end of the line.
+     * @param y the absolute y coordinate of the end of the line.
+     * @return this PathData.
+     */
+    @NotNull
+    PathData lineTo(final double x, final double y) {
+        final String absoluteX = PathData.format(x);
+        final String absoluteY = PathData.format(y);
+        final String relativeX = PathData.format(x - this.currentX);
+        final String relativeY = PathData.format(y - this.currentY);
+        if (Double.parseDouble(absoluteY) == this.currentY) {
+            if (relativeX.length() < absoluteX.length()) {
+                this.emit('h', relativeX, 'h');
+                this.currentX += Double.parseDouble(relativeX);
+            } else {
+                this.emit('H', absoluteX, 'H');
+                this.currentX = Double.parseDouble(absoluteX);
+            }
+        } else if (Double.parseDouble(absoluteX) == this.currentX) {
+            if (relativeY.length() < absoluteY.length()) {
+                this.emit('v', relativeY, 'v');
+                this.currentY += Double.parseDouble(relativeY);
+            } else {
+                this.emit('V', absoluteY, 'V');
+                this.currentY = Double.parseDouble(absoluteY);
+            }
+        } else {
+            final String absolute = PathData.pair(absoluteX, absoluteY);
+            final String relative = PathData.pair(relativeX, relativeY);
+            if (relative.length() < absolute.length()) {
+                this.emit('l', relative, 'l');
+                this.currentX += Double.parseDouble(relativeX);
+                this.currentY += Double.parseDouble(relativeY);
+            } else {
+                this.emit('L', absolute, 'L');
+                this.currentX = Double.parseDouble(absoluteX);
+                this.currentY = Double.parseDouble(absoluteY);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Starts a new subpath.
+     *
+     * @param x the absolute x coordinate of the start of the subpath.
+     * @param y the absolute y coordinate of the start of the subpath.
+     * @return this PathData.
+     */
+    @NotNull
+    PathData moveTo(final double x, final double y) {
+        final String absoluteX = PathData.format(x);
+        final String absoluteY = PathData.format(y);
+        final String relativeX = PathData.format(x - this.currentX);
+        final String relativeY = PathData.format(y - this.currentY);
+        final String absolute = PathData.pair(absoluteX, absoluteY);
+        final String relative = PathData.pair(relativeX, relativeY);
+        // A path must start with an absolute moveto
+        if (!this.isEmpty() && relative.length() < absolute.length()) {
+            this.emit('m', relative, 'l');
+            this.currentX += Double.parseDouble(relativeX);
+            this.currentY += Double.parseDouble(relativeY);
+        } else {
+            this.emit('M', absolute, 'L');
+            this.currentX = Double.parseDouble(absoluteX);
+            this.currentY = Double.parseDouble(absoluteY);
+        }
+        this.startX = this.currentX;
+        this.startY = this.currentY;
+        return this;
+    }
+
+    /**
+     * Gets the path data.
+     *
+     * @return the path data, suitable for the <code>d</code> attribute of a <code>&lt;path&gt;</code>.
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return this.data.toString();
+    }
+}
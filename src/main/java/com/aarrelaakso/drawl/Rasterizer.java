@@ -0,0 +1,439 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Paints into a raster image with Java 2D, from the display list that an {@link ImageSink} records.
+ * <p>
+ * Large images are split into square tiles, which are painted on the common ForkJoinPool and then stitched together.
+ * Every tile replays the operations of the display list that reach it, offset by a whole number of pixels, so
+ * the stitched image is identical to one painted in a single pass. Painting needs no display, so it works in
+ * headless mode.
+ */
+final class Rasterizer {
+
+    /**
+     * The width and height of a tile, in pixels.
+     */
+    static final int TILE_SIZE = 256;
+
+    /**
+     * The distance, in pixels, by which anti-aliasing may paint beyond the bounds of some geometry.
+     */
+    static final double ANTIALIASING_MARGIN = 1.0;
+
+    /**
+     * The font in which Text is painted, matching the SVG default of 16px serif.
+     */
+    static final @NotNull Font FONT = new Font(Font.SERIF, Font.PLAIN, 16);
+
+    /**
+     * Measures Text with anti-aliasing and fractional metrics, independently of any graphics.
+     */
+    private static final @NotNull FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+    /**
+     * The SVG color keywords.
+     */
+    private static final @NotNull Map<String, Color> namedColors;
+
+    static {
+        @NotNull final String[] keywords = ("aliceblue f0f8ff antiquewhite faebd7 aqua 00ffff aquamarine 7fffd4 "
+                + "azure f0ffff beige f5f5dc bisque ffe4c4 black 000000 blanchedalmond ffebcd blue 0000ff "
+                + "blueviolet 8a2be2 brown a52a2a burlywood deb887 cadetblue 5f9ea0 chartreuse 7fff00 "
+                + "chocolate d2691e coral ff7f50 cornflowerblue 6495ed cornsilk fff8dc crimson dc143c "
+                + "cyan 00ffff darkblue 00008b darkcyan 008b8b darkgoldenrod b8860b darkgray a9a9a9 "
+                + "darkgreen 006400 darkgrey a9a9a9 darkkhaki bdb76b darkmagenta 8b008b darkolivegreen 556b2f "
+                + "darkorange ff8c00 darkorchid 9932cc darkred 8b0000 darksalmon e9967a darkseagreen 8fbc8f "
+                + "darkslateblue 483d8b darkslategray 2f4f4f darkslategrey 2f4f4f darkturquoise 00ced1 "
+                + "darkviolet 9400d3 deeppink ff1493 deepskyblue 00bfff dimgray 696969 dimgrey 696969 "
+                + "dodgerblue 1e90ff firebrick b22222 floralwhite fffaf0 forestgreen 228b22 fuchsia ff00ff "
+                + "gainsboro dcdcdc ghostwhite f8f8ff gold ffd700 goldenrod daa520 gray 808080 grey 808080 "
+                + "green 008000 greenyellow adff2f honeydew f0fff0 hotpink ff69b4 indianred cd5c5c "
+                + "indigo 4b0082 ivory fffff0 khaki f0e68c lavender e6e6fa lavenderblush fff0f5 lawngreen 7cfc00 "
+                + "lemonchiffon fffacd lightblue add8e6 lightcoral f08080 lightcyan e0ffff "
+                + "lightgoldenrodyellow fafad2 lightgray d3d3d3 lightgreen 90ee90 lightgrey d3d3d3 "
+                + "lightpink ffb6c1 lightsalmon ffa07a lightseagreen 20b2aa lightskyblue 87cefa "
+                + "lightslategray 778899 lightslategrey 778899 lightsteelblue b0c4de lightyellow ffffe0 "
+                + "lime 00ff00 limegreen 32cd32 linen faf0e6 magenta ff00ff maroon 800000 "
+                + "mediumaquamarine 66cdaa mediumblue 0000cd mediumorchid ba55d3 mediumpurple 9370db "
+                + "mediumseagreen 3cb371 mediumslateblue 7b68ee mediumspringgreen 00fa9a "
+                + "mediumturquoise 48d1cc mediumvioletred c71585 midnightblue 191970 mintcream f5fffa "
+                + "mistyrose ffe4e1 moccasin ffe4b5 navajowhite ffdead navy 000080 oldlace fdf5e6 olive 808000 "
+                + "olivedrab 6b8e23 orange ffa500 orangered ff4500 orchid da70d6 palegoldenrod eee8aa "
+                + "palegreen 98fb98 paleturquoise afeeee palevioletred db7093 papayawhip ffefd5 "
+                + "peachpuff ffdab9 peru cd853f pink ffc0cb plum dda0dd powderblue b0e0e6 purple 800080 "
+                + "red ff0000 rosybrown bc8f8f royalblue 4169e1 saddlebrown 8b4513 salmon fa8072 "
+                + "sandybrown f4a460 seagreen 2e8b57 seashell fff5ee sienna a0522d silver c0c0c0 skyblue 87ceeb "
+                + "slateblue 6a5acd slategray 708090 slategrey 708090 snow fffafa springgreen 00ff7f "
+                + "steelblue 4682b4 tan d2b48c teal 008080 thistle d8bfd8 tomato ff6347 turquoise 40e0d0 "
+                + "violet ee82ee wheat f5deb3 white ffffff whitesmoke f5f5f5 yellow ffff00 "
+                + "yellowgreen 9acd32").split(" ");
+        @NotNull final Map<String, Color> colors = new HashMap<>();
+        for (int i = 0; i < keywords.length; i += 2) {
+            colors.put(keywords[i], new Color(Integer.parseInt(keywords[i + 1], 16)));
+        }
+        namedColors = Collections.unmodifiableMap(colors);
+    }
+
+    /**
+     * Prevents construction.
+     */
+    private Rasterizer() {
+    }
+
+    /**
+     * Gets the color for an SVG paint.
+     *
+     * @param paint        a color keyword, a <code>#rgb</code> or <code>#rrggbb</code> color, an
+     *                     <code>rgb(r,g,b)</code> color, <code>none</code>, or <code>null</code>.
+     * @param defaultColor the color to use if the paint is <code>null</code>.
+     * @return the color, or <code>null</code> if nothing should be painted.
+     */
+    @Nullable
+    static Color getColor(@Nullable final String paint, @Nullable final Color defaultColor) {
+        if (paint == null) {
+            return defaultColor;
+        }
+        @NotNull final String value = paint.trim().toLowerCase(Locale.ROOT);
+        if (value.equals("none") || value.equals("transparent")) {
+            return null;
+        }
+        try {
+            if (value.startsWith("#") && value.length() == 4) {
+                final int rgb = Integer.parseInt(value.substring(1), 16);
+                return new Color(((rgb >> 8) & 0xf) * 0x11, ((rgb >> 4) & 0xf) * 0x11, (rgb & 0xf) * 0x11);
+            } else if (value.startsWith("#") && value.length() == 7) {
+                return new Color(Integer.parseInt(value.substring(1), 16));
+            } else if (value.startsWith("rgb(") && value.endsWith(")")) {
+                @NotNull final String[] components = value.substring(4, value.length() - 1).split(",");
+                return new Color(Integer.parseInt(components[0].trim()), Integer.parseInt(components[1].trim()),
+                        Integer.parseInt(components[2].trim()));
+            }
+        } catch (final IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return defaultColor;
+        }
+        @Nullable final Color color = Rasterizer.namedColors.get(value);
+        return color != null ? color : defaultColor;
+    }
+
+    /**
+     * Fills and strokes some geometry.
+     *
+     * @param graphics the graphics into which to paint.
+     * @param geometry the geometry to paint.
+     * @param fill     the fill, or <code>null</code> for none.
+     * @param stroke   the stroke color, or <code>null</code> for none.
+     */
+    static void paint(@NotNull final Graphics2D graphics, @NotNull final java.awt.Shape geometry,
+                      @Nullable final Color fill, @Nullable final Color stroke) {
+        if (fill != null) {
+            graphics.setColor(fill);
+            graphics.fill(geometry);
+        }
+        if (stroke != null) {
+            graphics.setColor(stroke);
+            graphics.draw(geometry);
+        }
+    }
+
+    /**
+     * Gets the transform from the viewBox of the marker for a LineEnding to the end of a line, as SVG places it with
+     * <code>orient='auto'</code>.
+     */
+    @NotNull
+    private static AffineTransform getMarkerTransform(@NotNull final LineEnding lineEnding, final double x1,
+                                                      final double y1, final double x2, final double y2,
+                                                      final double lineWidth) {
+        @NotNull final Point2D reference = lineEnding.getMarkerReference();
+        @NotNull final AffineTransform transform = AffineTransform.getTranslateInstance(x2, y2);
+        transform.rotate(Math.atan2(y2 - y1, x2 - x1));
+        transform.scale(lineWidth, lineWidth);
+        transform.translate(-reference.getX(), -reference.getY());
+        return transform;
+    }
+
+    /**
+     * Gets the bounds of the marker for a LineEnding at the end of a line, including its stroke.
+     *
+     * @param lineEnding the LineEnding.
+     * @param x1         the x coordinate of the start of the line.
+     * @param y1         the y coordinate of the start of the line.
+     * @param x2         the x coordinate of the end of the line, where the marker is painted.
+     * @param y2         the y coordinate of the end of the line, where the marker is painted.
+     * @param lineWidth  the width of the line, in units of which the marker is sized.
+     * @return the bounds of the marker.
+     */
+    @NotNull
+    static Rectangle2D getMarkerBounds(@NotNull final LineEnding lineEnding, final double x1, final double y1,
+                                       final double x2, final double y2, final double lineWidth) {
+        // The marker is stroked one unit wide, which is one line width once scaled
+        return Rasterizer.getBounds(Rasterizer.getMarkerTransform(lineEnding, x1, y1, x2, y2, lineWidth)
+                .createTransformedShape(lineEnding.getMarkerOutline()), Math.abs(lineWidth) / 2);
+    }
+
+    /**
+     * Gets the bounds of some geometry, grown by a margin and by {@link #ANTIALIASING_MARGIN}.
+     *
+     * @param geometry the geometry.
+     * @param margin   the distance by which paint extends beyond the geometry, such as half a stroke.
+     * @return the bounds of everything that painting the geometry touches.
+     */
+    @NotNull
+    static Rectangle2D getBounds(@NotNull final java.awt.Shape geometry, final double margin) {
+        @NotNull final Rectangle2D bounds = geometry.getBounds2D();
+        final double grow = margin + ANTIALIASING_MARGIN;
+        return new Rectangle2D.Double(bounds.getX() - grow, bounds.getY() - grow, bounds.getWidth() + 2 * grow,
+                bounds.getHeight() + 2 * grow);
+    }
+
+    /**
+     * Gets the color for the paint of a marker, which may take the color of the line on which it is drawn.
+     */
+    @Nullable
+    private static Color getMarkerColor(@Nullable final String paint, @Nullable final Color lineColor,
+                                        @Nullable final Color defaultColor) {
+        if (LineEnding.CONTEXT_STROKE.equals(paint)) {
+            return lineColor;
+        }
+        return Rasterizer.getColor(paint, defaultColor);
+    }
+
+    /**
+     * Paints the marker for a LineEnding at the end of a line, as SVG would with <code>orient='auto'</code>.
+     *
+     * @param graphics   the graphics into which to paint.
+     * @param lineEnding the LineEnding to paint.
+     * @param x1         the x coordinate of the start of the line.
+     * @param y1         the y coordinate of the start of the line.
+     * @param x2         the x coordinate of the end of the line, where the marker is painted.
+     * @param y2         the y coordinate of the end of the line, where the marker is painted.
+     * @param lineWidth  the width of the line, in units of which the marker is sized.
+     * @param lineColor  the stroke color of the line, which a {@link LineEnding#CONTEXT_STROKE} paint takes, or
+     *                   <code>null</code> if the line is not stroked.
+     */
+    static void paintMarker(@NotNull final Graphics2D graphics, @NotNull final LineEnding lineEnding,
+                            final double x1, final double y1, final double x2, final double y2,
+                            final double lineWidth, @Nullable final Color lineColor) {
+        @Nullable final Color fill = lineEnding.isMarkerFilled()
+                ? Rasterizer.getMarkerColor(lineEnding.getFill(), lineColor, Color.BLACK) : null;
+        @Nullable final Color stroke = Rasterizer.getMarkerColor(lineEnding.getStroke(), lineColor, null);
+        @NotNull final AffineTransform transform = graphics.getTransform();
+        @NotNull final java.awt.Stroke previous = graphics.getStroke();
+        graphics.transform(Rasterizer.getMarkerTransform(lineEnding, x1, y1, x2, y2, lineWidth));
+        graphics.setStroke(new BasicStroke(1.0f));
+        Rasterizer.paint(graphics, lineEnding.getMarkerOutline(), fill, stroke);
+        graphics.setStroke(previous);
+        graphics.setTransform(transform);
+    }
+
+    /**
+     * Paints a display list into a new image, splitting it into tiles that are painted in parallel.
+     *
+     * @param operations the painting operations, in order.
+     * @param width      the width of the image, in pixels.
+     * @param height     the height of the image, in pixels.
+     * @return an image with a transparent background.
+     */
+    @NotNull
+    static BufferedImage rasterize(@NotNull final List<Operation> operations, final int width, final int height) {
+        return Rasterizer.rasterize(operations, 0, 0, width, height);
+    }
+
+    /**
+     * Paints part of a display list into a new image, splitting it into tiles that are painted in parallel.
+     * <p>
+     * Each operation is painted only into the tiles that its bounds reach.
+     *
+     * @param operations the painting operations, in order.
+     * @param x          the x coordinate of the left of the image within the display list.
+     * @param y          the y coordinate of the top of the image within the display list.
+     * @param width      the width of the image, in pixels.
+     * @param height     the height of the image, in pixels.
+     * @return an image with a transparent background.
+     */
+    @NotNull
+    static BufferedImage rasterize(@NotNull final List<Operation> operations, final int x, final int y,
+                                   final int width, final int height) {
+        if (width <= TILE_SIZE && height <= TILE_SIZE) {
+            return Rasterizer.rasterizeTile(operations, x, y, width, height);
+        }
+        final int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        final int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        @NotNull final List<List<Operation>> operationsByTile = new ArrayList<>();
+        for (int i = 0; i < columns * rows; i++) {
+            operationsByTile.add(new ArrayList<>());
+        }
+        for (@NotNull final Operation operation : operations) {
+            int left = 0;
+            int top = 0;
+            int right = columns - 1;
+            int bottom = rows - 1;
+            if (operation.bounds != null) {
+                left = (int) Math.max(left, Math.floor((operation.bounds.getMinX() - x) / TILE_SIZE));
+                top = (int) Math.max(top, Math.floor((operation.bounds.getMinY() - y) / TILE_SIZE));
+                right = (int) Math.min(right, Math.floor((operation.bounds.getMaxX() - x) / TILE_SIZE));
+                bottom = (int) Math.min(bottom, Math.floor((operation.bounds.getMaxY() - y) / TILE_SIZE));
+            }
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    operationsByTile.get(row * columns + column).add(operation);
+                }
+            }
+        }
+        @NotNull final List<Callable<BufferedImage>> tasks = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                @NotNull final List<Operation> tileOperations = operationsByTile.get(row * columns + column);
+                final int tileX = column * TILE_SIZE;
+                final int tileY = row * TILE_SIZE;
+                tasks.add(() -> Rasterizer.rasterizeTile(tileOperations, x + tileX, y + tileY,
+                        Math.min(TILE_SIZE, width - tileX), Math.min(TILE_SIZE, height - tileY)));
+            }
+        }
+        @NotNull final List<Future<BufferedImage>> tiles = ForkJoinPool.commonPool().invokeAll(tasks);
+        @NotNull final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < tiles.size(); i++) {
+            try {
+                image.getRaster().setDataElements(i % columns * TILE_SIZE, i / columns * TILE_SIZE,
+                        tiles.get(i).get().getRaster());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while painting tiles", e);
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException("Could not paint tile", e.getCause());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Paints a display list into one tile of an image, skipping the operations whose bounds miss the tile.
+     *
+     * @param operations the painting operations, in order.
+     * @param x          the x coordinate of the left of the tile within the image.
+     * @param y          the y coordinate of the top of the tile within the image.
+     * @param width      the width of the tile.
+     * @param height     the height of the tile.
+     * @return the tile.
+     */
+    @NotNull
+    static BufferedImage rasterizeTile(@NotNull final List<Operation> operations, final int x, final int y,
+                                       final int width, final int height) {
+        @NotNull final BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        @NotNull final Graphics2D graphics = tile.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            graphics.translate(-x, -y);
+            for (@NotNull final Operation operation : operations) {
+                if (operation.bounds == null || operation.bounds.intersects(x, y, width, height)) {
+                    operation.painter.accept(graphics);
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return tile;
+    }
+
+    /**
+     * Gets the outline of a string, centered on a point as SVG centers Text.
+     * <p>
+     * Text is drawn as an outline so that its geometry does not depend on the graphics into which it is painted.
+     *
+     * @param x      the x coordinate of the center of the string.
+     * @param y      the y coordinate of the center of the string.
+     * @param string the string.
+     * @return the outline of the string.
+     */
+    @NotNull
+    static java.awt.Shape getTextOutline(final double x, final double y, @NotNull final String string) {
+        @NotNull final GlyphVector glyphs = FONT.createGlyphVector(FONT_RENDER_CONTEXT, string);
+        @NotNull final LineMetrics metrics = FONT.getLineMetrics(string, FONT_RENDER_CONTEXT);
+        // Approximates text-anchor='middle' and dominant-baseline='middle'
+        return glyphs.getOutline((float) (x - glyphs.getLogicalBounds().getWidth() / 2),
+                (float) (y + (metrics.getAscent() - metrics.getDescent()) / 2));
+    }
+
+    /**
+     * A painting operation in a display list.
+     */
+    static final class Operation {
+
+        /**
+         * The bounds of everything that the operation paints, or <code>null</code> if it may paint anywhere.
+         */
+        private final @Nullable Rectangle2D bounds;
+
+        private final @NotNull Consumer<Graphics2D> painter;
+
+        Operation(@Nullable final Rectangle2D bounds, @NotNull final Consumer<Graphics2D> painter) {
+            this.bounds = bounds;
+            this.painter = painter;
+        }
+
+        /**
+         * Gets the bounds of everything that the operation paints.
+         *
+         * @return the bounds, or <code>null</code> if the operation may paint anywhere.
+         */
+        @Nullable
+        Rectangle2D getBounds() {
+            return this.bounds;
+        }
+
+        /**
+         * Paints the operation.
+         *
+         * @param graphics the graphics into which to paint.
+         */
+        void paint(@NotNull final Graphics2D graphics) {
+            this.painter.accept(graphics);
+        }
+    }
+}
@@ -55,7 +55,14 @@ public class Rectangle extends Shape
         this.setImplicitWidth(implicitWidth);
     }
 
-    public @NotNull String getSVG() {
+    /**
+     * Get SVG representing this Rectangle.
+     *
+     * @param context the state of the rendering of which this Rectangle is a part.
+     * @return A string containing SVG representing this Rectangle.
+     */
+    @Override
+    @NotNull String getSVG(@NotNull final SVGContext context) {
         if (this.getExplicitWidth() == null || this.getExplicitHeight() == null)
         {
             throw new UnsupportedOperationException("Cannot get SVG without setting explicit dimensions");
@@ -63,40 +70,104 @@ public class Rectangle extends Shape
         @NotNull final StringBuilder svgBuilder = new StringBuilder();
         svgBuilder.append("<rect");
         svgBuilder.append(" width='");
-        svgBuilder.append(this.getExplicitWidth().toPlainString());
+        if (context.isMinified())
+        {
+            svgBuilder.append(this.getExplicitWidth().toSVG());
+        }
+        else
+        {
+            svgBuilder.append(this.getExplicitWidth().toPlainString());
+        }
         svgBuilder.append("'");
         svgBuilder.append(" height='");
-        svgBuilder.append(this.getExplicitHeight().toPlainString());
+        if (context.isMinified())
+        {
+            svgBuilder.append(this.getExplicitHeight().toSVG());
+        }
+        else
+        {
+            svgBuilder.append(this.getExplicitHeight().toPlainString());
+        }
         svgBuilder.append("'");
-        if (this.getExplicitXPositionLeft() != null) {
+        @NotNull final String x = this.getSVGXPositionLeft(context).toSVG();
+        if (!context.isOmitted(x, "0")) {
             svgBuilder.append(" x='");
-            svgBuilder.append(this.getExplicitXPositionLeft().toSVG());
+            svgBuilder.append(x);
             svgBuilder.append("'");
         }
-        if (this.getExplicitYPositionTop() != null) {
+        @NotNull final String y = this.getSVGYPositionTop(context).toSVG();
+        if (!context.isOmitted(y, "0")) {
             svgBuilder.append(" y='");
-            svgBuilder.append(this.getExplicitYPositionTop().toSVG());
+            svgBuilder.append(y);
             svgBuilder.append("'");
         }
-        if (this.getFill() != null)
+        if (context.hasStyleClasses())
         {
-            svgBuilder.append(" fill='");
-            svgBuilder.append(this.getFill());
-            svgBuilder.append("'");
+            svgBuilder.append(context.getStyleClass(this.getFill(), this.getStroke(), null));
         }
-        if (this.getStroke() != null)
+        else
         {
-            svgBuilder.append(" stroke=\"");
-            svgBuilder.append(this.getStroke());
-            svgBuilder.append("\"");
+            if (this.getFill() != null && !context.isOmitted(this.getFill(), "black"))
+            {
+                svgBuilder.append(" fill='");
+                svgBuilder.append(this.getFill());
+                svgBuilder.append("'");
+            }
+            if (this.getStroke() != null && !context.isOmitted(this.getStroke(), "none"))
+            {
+                svgBuilder.append(" stroke='");
+                svgBuilder.append(this.getStroke());
+                svgBuilder.append("'");
+            }
         }
-        svgBuilder.append(" />");
+        svgBuilder.append(context.getEmptyElementEnd());
         if (this.getText() != null)
         {
-            svgBuilder.append(this.getText().getSVG());
+            svgBuilder.append(this.getText().getSVG(context));
         }
         return svgBuilder.toString();
     }
 
+    /**
+     * Append path data that draws this Rectangle, clockwise from its top left corner.
+     *
+     * @param pathData the path data to which to append.
+     * @return <code>true</code> if this Rectangle was appended, or <code>false</code> if it has Text.
+     */
+    @Override
+    boolean appendSVGPathData(@NotNull final PathData pathData)
+    {
+        if (this.getExplicitWidth() == null || this.getExplicitHeight() == null)
+        {
+            throw new UnsupportedOperationException("Cannot get SVG without setting explicit dimensions");
+        }
+        if (this.getText() != null)
+        {
+            return false;
+        }
+        final double left = this.getExplicitXPositionLeft().doubleValue();
+        final double top = this.getExplicitYPositionTop().doubleValue();
+        final double right = left + this.getExplicitWidth().doubleValue();
+        final double bottom = top + this.getExplicitHeight().doubleValue();
+        pathData.moveTo(left, top);
+        pathData.lineTo(right, top);
+        pathData.lineTo(right, bottom);
+        pathData.lineTo(left, bottom);
+        pathData.closePath();
+        return true;
+    }
 
+    /**
+     * Renders this Rectangle as a primitive for a sink.
+     *
+     * @param sink the sink to which to pass the primitive.
+     */
+    @Override
+    void render(@NotNull final RenderSink sink)
+    {
+        sink.rectangle(this.getExplicitXPositionLeft().doubleValue(), this.getExplicitYPositionTop().doubleValue(),
+                this.getExplicitWidth().doubleValue(), this.getExplicitHeight().doubleValue(), this.getFill(),
+                this.getStroke());
+        super.render(sink);
+    }
 }
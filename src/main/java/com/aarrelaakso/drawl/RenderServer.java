@@ -0,0 +1,556 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import com.google.common.flogger.FluentLogger;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A local HTTP server that renders drawing descriptions to SVG, SVGZ or PNG.
+ * <p>
+ * POST a description to <code>/render?width=w&amp;height=h&amp;format=f</code>, where the format is
+ * <code>svg</code> (the default), <code>svgz</code> or <code>png</code>. A description is either SVG, which is read
+ * with {@link SVGImporter}, or, with the content type <code>application/x-drawl</code>, a file in Drawl's binary
+ * format. The server needs nothing but the JDK.
+ * <p>
+ * Requests are rendered by a fixed pool of workers, behind a queue of bounded length. When the queue is full, the
+ * server answers at once with <code>503 Service Unavailable</code> rather than letting latency grow without bound.
+ * A description larger than {@value #MAX_BODY_SIZE} bytes is refused with <code>413 Payload Too Large</code>, and a PNG
+ * of more than {@value #MAX_PNG_PIXELS} pixels with <code>400 Bad Request</code>, so the memory a request may take is
+ * bounded, and the memory of the server as a whole is bounded by that times the number of workers. A worker reads
+ * the description first, and a client that does not send all of it in time gets <code>408 Request Timeout</code>, so
+ * slow clients cannot hold the workers.
+ * <p>
+ * Each response carries an ETag that fingerprints the description, the options and the content encoding, so a client
+ * that sends it back in <code>If-None-Match</code> gets <code>304 Not Modified</code> without a rendering. Up to
+ * 64 MiB of recent responses are cached with their SVG already compressed, so repeated requests cost neither a
+ * rendering nor a compression. Each response also reports the time spent on it in a <code>Server-Timing</code> header.
+ */
+public final class RenderServer implements AutoCloseable {
+
+    /**
+     * The content type of a description in Drawl's binary format.
+     */
+    public static final String DRAWL_CONTENT_TYPE = "application/x-drawl";
+
+    /**
+     * The largest description to accept, in bytes.
+     */
+    public static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The largest width or height to render, in pixels.
+     */
+    private static final int MAX_SIZE = 16384;
+
+    /**
+     * The largest area of a PNG to render, in pixels; an image of this size takes 64 MiB while it is painted.
+     */
+    public static final int MAX_PNG_PIXELS = 4096 * 4096;
+
+    /**
+     * The total size of the rendered responses to cache, in bytes.
+     */
+    private static final int CACHE_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * The default time to wait for the description of a request, in milliseconds.
+     */
+    private static final long BODY_TIMEOUT = 10_000L;
+
+    private static final @NotNull FluentLogger logger = FluentLogger.forEnclosingClass();
+
+    private final @NotNull HttpServer server;
+    private final @NotNull ThreadPoolExecutor workers;
+
+    /**
+     * Times out requests whose descriptions do not arrive in time.
+     */
+    private final @NotNull ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        @NotNull final Thread thread = new Thread(runnable, "drawl-render-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The time to wait for the description of a request, in milliseconds.
+     */
+    private final long bodyTimeout;
+
+    /**
+     * The most recently used responses, keyed by fingerprint, from least to most recently used. Guarded by itself.
+     */
+    private final @NotNull Map<String, Response> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total size of the responses in the cache, in bytes. Guarded by the cache.
+     */
+    private long cacheBytes;
+
+    /**
+     * Constructs a server, which does not accept requests until it is started, and which waits up to ten seconds for
+     * the description of a request.
+     *
+     * @param address    the address on which to listen; port 0 picks a free port.
+     * @param workers    the number of requests to render at once.
+     * @param queueLimit the number of requests that may wait for a worker before the server turns requests away.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public RenderServer(@NotNull final InetSocketAddress address, final int workers, final int queueLimit)
+            throws IOException {
+        this(address, workers, queueLimit, BODY_TIMEOUT);
+    }
+
+    /**
+     * Constructs a server, which does not accept requests until it is started.
+     *
+     * @param address     the address on which to listen; port 0 picks a free port.
+     * @param workers     the number of requests to render at once.
+     * @param queueLimit  the number of requests that may wait for a worker before the server turns requests away.
+     * @param bodyTimeout the time to wait for the description of a request, in milliseconds, before answering
+     *                    <code>408 Request Timeout</code>.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public RenderServer(@NotNull final InetSocketAddress address, final int workers, final int queueLimit,
+                        final long bodyTimeout) throws IOException {
+        this.bodyTimeout = bodyTimeout;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueLimit)));
+        this.server = HttpServer.create(address, 0);
+        // Admission is decided on the dispatcher thread, so that a full queue is reported at once
+        this.server.createContext("/render", exchange -> {
+            try {
+                this.workers.execute(() -> this.handle(exchange));
+            } catch (final RejectedExecutionException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                // A response with a body would first drain the request body, which could stall the dispatcher
+                RenderServer.sendStatus(exchange, 503);
+            }
+        });
+    }
+
+    /**
+     * Runs a server until it is killed.
+     *
+     * @param args the port on which to listen, by default 8080; the number of workers, by default one per processor;
+     *             and the length of the queue, by default four times the number of workers.
+     * @throws IOException if the server cannot listen on the port.
+     */
+    public static void main(@NotNull final String[] args) throws IOException {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        final int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final int queueLimit = args.length > 2 ? Integer.parseInt(args[2]) : 4 * workers;
+        @NotNull final RenderServer server = new RenderServer(new InetSocketAddress(port), workers, queueLimit);
+        server.start();
+        logger.atInfo().log("Drawl render server listening on port %d", server.getPort());
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Gets the port on which this server listens.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the number of requests waiting for a worker.
+     *
+     * @return the length of the queue.
+     */
+    public int getQueueDepth() {
+        return this.workers.getQueue().size();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the requests in progress, and stops the workers.
+     */
+    @Override
+    public void close() {
+        this.server.stop(1);
+        this.workers.shutdownNow();
+        this.timer.shutdownNow();
+    }
+
+    /**
+     * Renders a request on a worker.
+     *
+     * @param exchange the request and its response.
+     */
+    private void handle(@NotNull final HttpExchange exchange) {
+        final long start = System.nanoTime();
+        try {
+            // The description is read first, so that no later response has to drain it from a slow client
+            @Nullable final byte[] description = this.readDescription(exchange);
+            if (description == null) {
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                RenderServer.sendText(exchange, 405, "Send the drawing description with POST");
+                return;
+            }
+            @Nullable final Map<String, String> query = RenderServer.getQuery(exchange);
+            if (query == null) {
+                RenderServer.sendText(exchange, 400, "Could not decode the query");
+                return;
+            }
+            @NotNull final String format = query.getOrDefault("format", "svg").toLowerCase(Locale.ROOT);
+            @Nullable final Integer width = RenderServer.getSize(query.get("width"));
+            @Nullable final Integer height = RenderServer.getSize(query.get("height"));
+            if (width == null || height == null) {
+                RenderServer.sendText(exchange, 400, "Give a width and a height from 1 to " + MAX_SIZE);
+                return;
+            }
+            if (!format.equals("svg") && !format.equals("svgz") && !format.equals("png")) {
+                RenderServer.sendText(exchange, 400, "Give a format of svg, svgz or png");
+                return;
+            }
+            if (format.equals("png") && (long) width * height > MAX_PNG_PIXELS) {
+                RenderServer.sendText(exchange, 400, "Give a PNG of at most " + MAX_PNG_PIXELS + " pixels");
+                return;
+            }
+            @Nullable final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            final boolean binary = contentType != null && contentType.startsWith(DRAWL_CONTENT_TYPE);
+            @NotNull final String fingerprint = RenderServer.getFingerprint(description, binary, format, width, height);
+            @NotNull final Headers headers = exchange.getResponseHeaders();
+            // PNG is sent as it is, but SVG is sent compressed to clients that accept it
+            final boolean gzip;
+            if (format.equals("png")) {
+                gzip = false;
+            } else {
+                @Nullable final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                gzip = format.equals("svgz") || (acceptEncoding != null && acceptEncoding.contains("gzip"));
+                headers.set("Vary", "Accept-Encoding");
+            }
+            // The two encodings are different representations, so they must not share an ETag
+            @NotNull final String etag = "\"" + fingerprint + (gzip ? "-gz" : "") + "\"";
+            headers.set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                RenderServer.setServerTiming(headers, start);
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            Response response;
+            synchronized (this.cache) {
+                response = this.cache.get(fingerprint);
+            }
+            if (response == null) {
+                @NotNull final Drawing drawing = binary ? DrawingFile.read(description).getDrawing()
+                        : SVGImporter.read(new ByteArrayInputStream(description));
+                response = RenderServer.render(drawing, format, width, height);
+                this.putCache(fingerprint, response);
+            }
+            @NotNull byte[] body = response.body;
+            if (gzip && response.gzip != null) {
+                headers.set("Content-Encoding", "gzip");
+                body = response.gzip;
+            }
+            headers.set("Content-Type", response.contentType);
+            RenderServer.setServerTiming(headers, start);
+            RenderServer.send(exchange, 200, body);
+        } catch (final IOException | RuntimeException e) {
+            try {
+                RenderServer.sendText(exchange, e instanceof IOException ? 400 : 500,
+                        "Could not render the drawing: " + e.getMessage());
+            } catch (final IOException sendException) {
+                // The client has gone away
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the description of a request within the body timeout.
+     *
+     * @param exchange the request and its response.
+     * @return the description, or <code>null</code> if the request has been answered with
+     * <code>408 Request Timeout</code> or <code>413 Payload Too Large</code>.
+     * @throws IOException if the description cannot be read.
+     */
+    @Nullable
+    private byte[] readDescription(@NotNull final HttpExchange exchange) throws IOException {
+        // Whichever of the worker and the timer stops the reading answers the request
+        @NotNull final AtomicBoolean reading = new AtomicBoolean(true);
+        @NotNull final ScheduledFuture<?> timeout = this.timer.schedule(() -> {
+            if (reading.compareAndSet(true, false)) {
+                // Answering before the body is read closes the connection, which ends the worker's read
+                RenderServer.sendStatus(exchange, 408);
+            }
+        }, this.bodyTimeout, TimeUnit.MILLISECONDS);
+        @Nullable final byte[] description;
+        try {
+            description = RenderServer.readAll(exchange, MAX_BODY_SIZE);
+        } catch (final IOException e) {
+            if (reading.compareAndSet(true, false)) {
+                throw e;
+            }
+            return null;
+        } finally {
+            timeout.cancel(false);
+        }
+        if (!reading.compareAndSet(true, false)) {
+            return null;
+        }
+        if (description == null) {
+            RenderServer.sendStatus(exchange, 413);
+        }
+        return description;
+    }
+
+    /**
+     * Caches a response, evicting the least recently used responses until the cache is within its size.
+     */
+    private void putCache(@NotNull final String fingerprint, @NotNull final Response response) {
+        final long size = response.getSize();
+        if (size > CACHE_BYTES) {
+            return;
+        }
+        synchronized (this.cache) {
+            @Nullable final Response previous = this.cache.put(fingerprint, response);
+            this.cacheBytes += size - (previous == null ? 0 : previous.getSize());
+            @NotNull final Iterator<Response> eldest = this.cache.values().iterator();
+            while (this.cacheBytes > CACHE_BYTES) {
+                this.cacheBytes -= eldest.next().getSize();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Renders a Drawing, compressing SVG ready for clients that accept it compressed.
+     */
+    @NotNull
+    private static Response render(@NotNull final Drawing drawing, @NotNull final String format, final int width,
+                                   final int height) throws IOException {
+        if (format.equals("png")) {
+            @NotNull final ByteArrayOutputStream png = new ByteArrayOutputStream();
+            drawing.writePNG(png, width, height);
+            return new Response("image/png", png.toByteArray(), null);
+        }
+        @NotNull final byte[] svg = drawing.getSVG(width, height).getBytes(StandardCharsets.UTF_8);
+        @NotNull final ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (@NotNull final OutputStream output = new ParallelGzipOutputStream(gzip)) {
+            output.write(svg);
+        }
+        return new Response("image/svg+xml", svg, gzip.toByteArray());
+    }
+
+    /**
+     * Gets the fingerprint of a request, from which its response is wholly determined.
+     *
+     * @return a hexadecimal fingerprint, from which an ETag is made.
+     */
+    @NotNull
+    private static String getFingerprint(@NotNull final byte[] description, final boolean binary,
+                                         @NotNull final String format, final int width, final int height) {
+        @NotNull final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update((format + "," + width + "," + height + "," + binary + ",").getBytes(StandardCharsets.UTF_8));
+        @NotNull final byte[] hash = digest.digest(description);
+        @NotNull final StringBuilder fingerprint = new StringBuilder();
+        // Half of the hash is ample to tell drawings apart
+        for (int i = 0; i < hash.length / 2; i++) {
+            fingerprint.append(String.format("%02x", hash[i]));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Parses the query of a request.
+     *
+     * @return the parameters, or <code>null</code> if the query is not well-formed.
+     */
+    @Nullable
+    private static Map<String, String> getQuery(@NotNull final HttpExchange exchange) throws IOException {
+        @Nullable final String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery == null) {
+            return Collections.emptyMap();
+        }
+        @NotNull final Map<String, String> query = new HashMap<>();
+        for (@NotNull final String parameter : rawQuery.split("&")) {
+            final int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                try {
+                    query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+                } catch (final IllegalArgumentException e) {
+                    // A stray % or a truncated escape
+                    return null;
+                }
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Parses a width or height.
+     *
+     * @return the size, or <code>null</code> if it is absent, not a whole number, or out of range.
+     */
+    @Nullable
+    private static Integer getSize(@Nullable final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            final int size = Integer.parseInt(value);
+            return size >= 1 && size <= MAX_SIZE ? size : null;
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the body of a request, unless it is too large.
+     *
+     * @return the body, or <code>null</code> if it is longer than the limit.
+     */
+    @Nullable
+    private static byte[] readAll(@NotNull final HttpExchange exchange, final int limit) throws IOException {
+        // Refuse a declared length at once, without reading anything
+        @Nullable final String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > limit) {
+                    return null;
+                }
+            } catch (final NumberFormatException e) {
+                throw new IOException("Malformed Content-Length: " + contentLength, e);
+            }
+        }
+        @NotNull final InputStream input = exchange.getRequestBody();
+        @NotNull final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        @NotNull final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            // A chunked body has no declared length, so it is counted as it comes
+            if (bytes.size() + count > limit) {
+                return null;
+            }
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void setServerTiming(@NotNull final Headers headers, final long start) {
+        headers.set("Server-Timing", "render;dur=" + PathData.format((System.nanoTime() - start) / 1.0e6));
+    }
+
+    /**
+     * Sends a response with no body and closes the connection, without reading any more of the request body.
+     */
+    private static void sendStatus(@NotNull final HttpExchange exchange, final int status) {
+        try {
+            exchange.getResponseHeaders().set("Connection", "close");
+            exchange.sendResponseHeaders(status, -1);
+        } catch (final IOException e) {
+            // The client has gone away
+        }
+        exchange.close();
+    }
+
+    private static void sendText(@NotNull final HttpExchange exchange, final int status,
+                                 @NotNull final String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        RenderServer.send(exchange, status, message.getBytes(StandardCharsets.UTF_8));
+        exchange.close();
+    }
+
+    private static void send(@NotNull final HttpExchange exchange, final int status, @NotNull final byte[] body)
+            throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (@NotNull final OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * A rendered response, ready to send.
+     */
+    private static final class Response {
+
+        private final @NotNull String contentType;
+        private final @NotNull byte[] body;
+
+        /**
+         * The body compressed with gzip, or <code>null</code> if it is not worth compressing.
+         */
+        private final @Nullable byte[] gzip;
+
+        Response(@NotNull final String contentType, @NotNull final byte[] body, @Nullable final byte[] gzip) {
+            this.contentType = contentType;
+            this.body = body;
+            this.gzip = gzip;
+        }
+
+        /**
+         * Gets the memory this response takes in the cache.
+         *
+         * @return the size of the body and of its compressed form, in bytes.
+         */
+        long getSize() {
+            return this.body.length + (this.gzip == null ? 0 : this.gzip.length);
+        }
+    }
+}
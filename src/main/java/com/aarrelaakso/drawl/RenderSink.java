@@ -0,0 +1,118 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives a laid-out Drawing, one Shape at a time, as it is rendered.
+ * <p>
+ * {@link Drawing#render(Integer, Integer, RenderSink...)} lays the Drawing out and walks its Shapes once, passing
+ * each Shape and the primitives that it is drawn with to every sink. Coordinates are in pixels, with the origin at
+ * the top left of the Drawing, and paints are SVG paints, such as <code>red</code> or <code>#ff0000</code>. A sink
+ * overrides only the methods that it needs.
+ *
+ * @see SVGSink
+ * @see ImageSink
+ * @see HitMapSink
+ * @see SceneSink
+ * @see FrameSequence
+ */
+public interface RenderSink {
+
+    /**
+     * Starts the rendering of a Drawing.
+     *
+     * @param drawing the Drawing being rendered.
+     * @param width   the width of the Drawing.
+     * @param height  the height of the Drawing.
+     */
+    default void begin(@NotNull final Drawing drawing, final int width, final int height) {
+    }
+
+    /**
+     * Starts a Shape in the Drawing. The primitives that follow, up to the next Shape, belong to this Shape.
+     *
+     * @param shape the Shape.
+     */
+    default void beginShape(@NotNull final Shape shape) {
+    }
+
+    /**
+     * Receives a circle.
+     *
+     * @param cx     the x coordinate of the center.
+     * @param cy     the y coordinate of the center.
+     * @param radius the radius.
+     * @param fill   the fill, or <code>null</code> for the default, black.
+     * @param stroke the stroke, or <code>null</code> for the default, none.
+     */
+    default void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                        @Nullable final String stroke) {
+    }
+
+    /**
+     * Receives a rectangle.
+     *
+     * @param x      the x coordinate of the left side.
+     * @param y      the y coordinate of the top side.
+     * @param width  the width.
+     * @param height the height.
+     * @param fill   the fill, or <code>null</code> for the default, black.
+     * @param stroke the stroke, or <code>null</code> for the default, none.
+     */
+    default void rectangle(final double x, final double y, final double width, final double height,
+                           @Nullable final String fill, @Nullable final String stroke) {
+    }
+
+    /**
+     * Receives a straight line.
+     *
+     * @param x1         the x coordinate of the start.
+     * @param y1         the y coordinate of the start.
+     * @param x2         the x coordinate of the end.
+     * @param y2         the y coordinate of the end.
+     * @param stroke     the stroke.
+     * @param thickness  the width of the stroke.
+     * @param lineEnding the LineEnding drawn at the end, or <code>null</code> if there is none.
+     */
+    default void line(final double x1, final double y1, final double x2, final double y2,
+                      @NotNull final String stroke, final double thickness, @Nullable final LineEnding lineEnding) {
+    }
+
+    /**
+     * Receives a string of text.
+     *
+     * @param x      the x coordinate of the center of the text.
+     * @param y      the y coordinate of the center of the text.
+     * @param string the text.
+     * @param fill   the fill, or <code>null</code> for the default, black.
+     * @param stroke the stroke, or <code>null</code> for the default, none.
+     */
+    default void text(final double x, final double y, @NotNull final String string, @Nullable final String fill,
+                      @Nullable final String stroke) {
+    }
+
+    /**
+     * Finishes the rendering of a Drawing.
+     */
+    default void end() {
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carries state through a single rendering of Shapes to SVG.
+ * <p>
+ * Shapes do not write their own <code>&lt;defs&gt;</code>. Instead, they register what they need with the context,
+ * which interns identical definitions so that each is written only once per Drawing, however many Shapes use it.
+ */
+class SVGContext {
+
+    /**
+     * The URL of a shared marker library, or <code>null</code> to define every marker in the drawing.
+     */
+    private @Nullable String markerLibrary;
+
+    /**
+     * The prefix of every id and CSS class name generated in this rendering.
+     */
+    private @NotNull String idPrefix = "";
+
+    /**
+     * The ids of the markers registered so far, keyed by LineEnding marker key, in order of registration.
+     * <p>
+     * Ids are numbered from zero in each context, rather than drawn from a counter shared by every rendering, so that
+     * the same Drawing always renders to the same SVG and concurrent renderings share no state. SVG documents that
+     * are inlined in the same page keep their ids apart with {@link #setIdPrefix(String)}.
+     */
+    private final @NotNull Map<List<Object>, String> markerIds = new LinkedHashMap<>();
+
+    /**
+     * The serialized marker definitions, in the same order as <code>markerIds</code>.
+     */
+    private final @NotNull StringBuilder markerDefs = new StringBuilder();
+
+    /**
+     * Whether to leave out insignificant whitespace and attributes that have their default values.
+     */
+    private boolean minified;
+
+    /**
+     * Whether Shapes refer to generated CSS classes instead of writing their own style attributes.
+     */
+    private boolean styleClasses;
+
+    /**
+     * The CSS class names generated so far, keyed by (fill, stroke, stroke-width), in order of generation.
+     */
+    private final @NotNull Map<List<String>, String> styleClassNames = new LinkedHashMap<>();
+
+    /**
+     * The CSS rules for the generated classes, in the same order as <code>styleClassNames</code>.
+     */
+    private final @NotNull StringBuilder styleRules = new StringBuilder();
+
+    /**
+     * The ids of the symbols registered so far, keyed by their content, in order of registration.
+     */
+    private final @NotNull Map<String, String> symbolIds = new LinkedHashMap<>();
+
+    /**
+     * The serialized symbol definitions, in the same order as <code>symbolIds</code>.
+     */
+    private final @NotNull StringBuilder symbolDefs = new StringBuilder();
+
+    /**
+     * The point to draw at the origin, or <code>null</code> to draw Shapes where they are.
+     */
+    private @Nullable Number originX;
+    private @Nullable Number originY;
+
+    /**
+     * Whether the SVG refers to anything with an XLink attribute, and so needs the XLink namespace.
+     */
+    private boolean xlinks;
+
+    /**
+     * Indicates whether the SVG refers to anything with an XLink attribute.
+     *
+     * @return <code>true</code> if the XLink namespace must be declared.
+     */
+    boolean hasXLinks() {
+        return this.xlinks;
+    }
+
+    /**
+     * Sets whether the SVG refers to anything with an XLink attribute.
+     *
+     * @param xlinks <code>true</code> if the XLink namespace must be declared.
+     */
+    void setXLinks(final boolean xlinks) {
+        this.xlinks = xlinks;
+    }
+
+    /**
+     * Sets the point to draw at the origin, so that Shapes can be drawn relative to a point without being moved.
+     *
+     * @param x the x position to draw at the origin, or <code>null</code> to draw Shapes where they are.
+     * @param y the y position to draw at the origin, or <code>null</code> to draw Shapes where they are.
+     */
+    void setOrigin(@Nullable final Number x, @Nullable final Number y) {
+        this.originX = x;
+        this.originY = y;
+    }
+
+    /**
+     * Translates an explicit x position to the position at which to draw it.
+     *
+     * @param x the explicit x position.
+     * @return the position relative to the origin of this rendering.
+     */
+    @NotNull
+    Number translateX(@NotNull final Number x) {
+        return this.originX == null ? x : x.subtract(this.originX);
+    }
+
+    /**
+     * Translates an explicit y position to the position at which to draw it.
+     *
+     * @param y the explicit y position.
+     * @return the position relative to the origin of this rendering.
+     */
+    @NotNull
+    Number translateY(@NotNull final Number y) {
+        return this.originY == null ? y : y.subtract(this.originY);
+    }
+
+    /**
+     * Registers a symbol, unless a symbol with identical content has already been registered.
+     * <p>
+     * The symbol does not clip its content, so the content can be drawn around the origin and placed with
+     * <code>&lt;use x y&gt;</code>.
+     *
+     * @param content the SVG to draw wherever the symbol is used.
+     * @return the id by which to refer to the symbol.
+     */
+    @NotNull
+    String addSymbol(@NotNull final String content) {
+        String id = this.symbolIds.get(content);
+        if (id == null) {
+            id = this.idPrefix + "u" + Integer.toString(this.symbolIds.size(), Character.MAX_RADIX);
+            this.symbolIds.put(content, id);
+            this.symbolDefs.append("<symbol id='").append(id).append("' overflow='visible'>");
+            this.symbolDefs.append(content);
+            this.symbolDefs.append("</symbol>");
+        }
+        return id;
+    }
+
+    /**
+     * Escapes a string for use as the value of an attribute.
+     *
+     * @param value the value, which may contain any characters.
+     * @return the value, with the characters that XML reserves in a quoted attribute replaced by references.
+     */
+    @NotNull
+    static String escapeAttribute(@NotNull final String value) {
+        @NotNull final StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '\'':
+                    escaped.append("&apos;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Escapes a URL for use in an unquoted CSS <code>url(...)</code>.
+     *
+     * @param url the URL, which may contain any characters.
+     * @return the URL, with whitespace, control characters, parentheses, quotes and backslashes, which would end or
+     * break the <code>url(...)</code> token, percent-encoded.
+     */
+    @NotNull
+    static String escapeURL(@NotNull final String url) {
+        @NotNull final StringBuilder escaped = new StringBuilder(url.length());
+        for (int i = 0; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c <= ' ' || c == 0x7f || "()'\"\\".indexOf(c) >= 0) {
+                escaped.append(String.format("%%%02X", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Gets the end of an empty element.
+     *
+     * @return <code>/&gt;</code> if minified, otherwise <code> /&gt;</code>.
+     */
+    @NotNull
+    String getEmptyElementEnd() {
+        return this.minified ? "/>" : " />";
+    }
+
+    /**
+     * Gets the line separator to write between elements.
+     *
+     * @return the empty string if minified, otherwise the platform line separator.
+     */
+    @NotNull
+    String getNewLine() {
+        return this.minified ? "" : LineEnding.newLine;
+    }
+
+    /**
+     * Indicates whether an attribute can be left out because it has its default value.
+     *
+     * @param value        the value of the attribute.
+     * @param defaultValue the value that SVG uses when the attribute is absent.
+     * @return <code>true</code> if minified and the value is the default.
+     */
+    boolean isOmitted(@Nullable final String value, @NotNull final String defaultValue) {
+        return this.minified && defaultValue.equals(value);
+    }
+
+    /**
+     * Indicates whether to leave out insignificant whitespace and attributes that have their default values.
+     *
+     * @return <code>true</code> if minified.
+     */
+    boolean isMinified() {
+        return this.minified;
+    }
+
+    /**
+     * Indicates whether Shapes should refer to generated CSS classes instead of writing their own style attributes.
+     *
+     * @return <code>true</code> if Shapes should call {@link #getStyleClass(String, String, String)}.
+     */
+    boolean hasStyleClasses() {
+        return this.styleClasses;
+    }
+
+    /**
+     * Sets the URL of a shared marker library.
+     *
+     * @param markerLibrary the URL of a shared {@link MarkerLibrary}, or <code>null</code> to define every marker in
+     *                      the drawing.
+     */
+    void setMarkerLibrary(@Nullable final String markerLibrary) {
+        this.markerLibrary = markerLibrary;
+    }
+
+    /**
+     * Gets the prefix of every id and CSS class name generated in this rendering.
+     *
+     * @return the prefix, which is empty by default.
+     */
+    @NotNull
+    String getIdPrefix() {
+        return this.idPrefix;
+    }
+
+    /**
+     * Sets the prefix of every id and CSS class name generated in this rendering.
+     *
+     * @param idPrefix the prefix, which must already be a valid start of an id.
+     */
+    void setIdPrefix(@NotNull final String idPrefix) {
+        this.idPrefix = idPrefix;
+    }
+
+    /**
+     * Sets whether to leave out insignificant whitespace and attributes that have their default values.
+     *
+     * @param minified <code>true</code> to minify.
+     */
+    void setMinified(final boolean minified) {
+        this.minified = minified;
+    }
+
+    /**
+     * Sets whether Shapes refer to generated CSS classes instead of writing their own style attributes.
+     *
+     * @param styleClasses <code>true</code> to generate CSS classes.
+     */
+    void setStyleClasses(final boolean styleClasses) {
+        this.styleClasses = styleClasses;
+    }
+
+    /**
+     * Gets a class attribute for a combination of style properties, generating a CSS class the first time the
+     * combination is seen.
+     *
+     * @param fill        the fill, or <code>null</code> for the SVG default.
+     * @param stroke      the stroke, or <code>null</code> for the SVG default.
+     * @param strokeWidth the stroke width, or <code>null</code> for the SVG default.
+     * @return an attribute such as <code> class='s0'</code>, or the empty string if every property is the default.
+     */
+    @NotNull
+    String getStyleClass(@Nullable final String fill, @Nullable final String stroke,
+                         @Nullable final String strokeWidth) {
+        if (fill == null && stroke == null && strokeWidth == null) {
+            return "";
+        }
+        @NotNull final List<String> key = Arrays.asList(fill, stroke, strokeWidth);
+        String name = this.styleClassNames.get(key);
+        if (name == null) {
+            // Base 36 keeps the names short in drawings with many styles
+            name = this.idPrefix + "s" + Integer.toString(this.styleClassNames.size(), Character.MAX_RADIX);
+            this.styleClassNames.put(key, name);
+            @NotNull final StringBuilder rule = new StringBuilder();
+            if (fill != null) {
+                rule.append("fill:").append(fill).append(";");
+            }
+            if (stroke != null) {
+                rule.append("stroke:").append(stroke).append(";");
+            }
+            if (strokeWidth != null) {
+                rule.append("stroke-width:").append(strokeWidth).append(";");
+            }
+            // The last declaration in a rule needs no semicolon
+            rule.setLength(rule.length() - 1);
+            this.styleRules.append(".").append(name).append("{").append(rule).append("}");
+        }
+        return " class='" + name + "'";
+    }
+
+    /**
+     * Registers the marker for a LineEnding, unless an identical marker has already been registered or the marker
+     * library already defines it.
+     *
+     * @param lineEnding the LineEnding whose marker is needed.
+     * @param lineWidth  the width of the Line on which the marker will be drawn.
+     * @return the IRI by which to refer to the marker, such as <code>#TRIANGLE-0</code>.
+     */
+    @NotNull
+    String addMarker(@NotNull final LineEnding lineEnding, final double lineWidth) {
+        if (this.markerLibrary != null) {
+            @Nullable final String libraryId = MarkerLibrary.getId(lineEnding);
+            if (libraryId != null) {
+                return SVGContext.escapeAttribute(SVGContext.escapeURL(this.markerLibrary)) + "#" + libraryId;
+            }
+        }
+        @NotNull final List<Object> key = lineEnding.getMarkerKey();
+        String id = this.markerIds.get(key);
+        if (id == null) {
+            id = this.idPrefix + lineEnding.getLineEndingType() + "-" + this.markerIds.size();
+            this.markerIds.put(key, id);
+            @NotNull String marker = lineEnding.getSVGMarker(id, lineWidth);
+            if (this.minified) {
+                // Marker content only has whitespace between elements
+                marker = marker.replace(LineEnding.newLine, "").replace(" />", "/>");
+            }
+            this.markerDefs.append(marker);
+        }
+        return "#" + id;
+    }
+
+    /**
+     * Gets the SVG for all the definitions and styles registered with this context.
+     *
+     * @return a <code>&lt;style&gt;</code> element holding the generated CSS classes, if any, followed by a
+     * <code>&lt;defs&gt;</code> element holding each registered definition once, if any.
+     */
+    @NotNull
+    String getDefs() {
+        @NotNull final StringBuilder svgBuilder = new StringBuilder();
+        if (this.styleRules.length() > 0) {
+            svgBuilder.append("<style>");
+            svgBuilder.append(this.styleRules);
+            svgBuilder.append("</style>");
+        }
+        if (this.markerDefs.length() > 0 || this.symbolDefs.length() > 0) {
+            svgBuilder.append(this.getNewLine()).append("<defs>").append(this.getNewLine());
+            svgBuilder.append(this.markerDefs);
+            svgBuilder.append(this.symbolDefs);
+            svgBuilder.append("</defs>").append(this.getNewLine());
+        }
+        return svgBuilder.toString();
+    }
+}
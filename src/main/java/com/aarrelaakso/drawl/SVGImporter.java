@@ -0,0 +1,284 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the rectangles, circles, lines and text of an SVG document into Drawl Shapes.
+ * <p>
+ * The document is streamed with StAX rather than parsed into a DOM, so reading with
+ * {@link #read(InputStream, Consumer)} takes memory for one element at a time, however large the document. Each
+ * Shape is placed at its position in the document and keeps its size, fill and stroke, so that the Shapes can be laid
+ * out or rendered again. Other elements, transforms and CSS stylesheets are ignored. So is anything that SVG does not
+ * render: the contents of definitions such as <code>&lt;defs&gt;</code> and <code>&lt;marker&gt;</code>, and circles
+ * and rectangles with no area. Drawl draws every Line from the bottom left to the top right of its box, so a line
+ * that runs the other way is imported with the right box but the opposite slope. Text is centered on its
+ * <code>x</code> and <code>y</code>, as Drawl writes it.
+ */
+public final class SVGImporter {
+
+    /**
+     * The elements whose contents are not rendered where they appear, but only when they are referenced.
+     */
+    private static final @NotNull Set<String> DEFINITIONS = new HashSet<>(Arrays.asList("clipPath", "defs", "marker",
+            "mask", "pattern", "symbol"));
+
+    private static final @NotNull Pattern NUMBER =
+            Pattern.compile("^\\s*([-+]?(?:\\d+\\.?\\d*|\\.\\d+)(?:[eE][-+]?\\d+)?)");
+
+    /**
+     * Prevents construction.
+     */
+    private SVGImporter() {
+    }
+
+    /**
+     * Reads an SVG document into a new Drawing.
+     *
+     * @param input the SVG document.
+     * @return a Drawing holding a Shape for each supported element in the document, in document order, not yet laid
+     * out.
+     * @throws IOException if the document cannot be read or is not well-formed XML.
+     */
+    @NotNull
+    public static Drawing read(@NotNull final InputStream input) throws IOException {
+        @NotNull final List<Shape> shapes = new ArrayList<>();
+        SVGImporter.read(input, shapes::add);
+        @NotNull final Drawing drawing = new Drawing();
+        // Adding the Shapes one by one would lay the whole Drawing out again after each of them
+        drawing.restore(shapes, null, null);
+        return drawing;
+    }
+
+    /**
+     * Streams an SVG document, passing each supported element on as a Shape as soon as it has been read.
+     *
+     * @param input    the SVG document.
+     * @param consumer receives each Shape, in document order.
+     * @throws IOException if the document cannot be read or is not well-formed XML.
+     */
+    public static void read(@NotNull final InputStream input, @NotNull final Consumer<Shape> consumer)
+            throws IOException {
+        @NotNull final XMLInputFactory factory = XMLInputFactory.newInstance();
+        // SVG files come from anywhere, so never resolve DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        @Nullable XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(input);
+            @Nullable Map<String, String> textAttributes = null;
+            @NotNull final StringBuilder textBuilder = new StringBuilder();
+            int textDepth = 0;
+            // The depth within definitions, whose contents are skipped
+            int definitionDepth = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (definitionDepth > 0) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        definitionDepth++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        definitionDepth--;
+                    }
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (textAttributes != null) {
+                        // Such as <tspan>
+                        textDepth++;
+                        continue;
+                    }
+                    if (DEFINITIONS.contains(reader.getLocalName())) {
+                        definitionDepth = 1;
+                        continue;
+                    }
+                    @NotNull final Map<String, String> attributes = SVGImporter.getAttributes(reader);
+                    @Nullable Shape shape = null;
+                    switch (reader.getLocalName()) {
+                        case "rect":
+                            shape = SVGImporter.createRectangle(attributes);
+                            break;
+                        case "circle":
+                            shape = SVGImporter.createCircle(attributes);
+                            break;
+                        case "line":
+                            shape = SVGImporter.createLine(attributes);
+                            break;
+                        case "text":
+                            textAttributes = attributes;
+                            textBuilder.setLength(0);
+                            break;
+                        default:
+                            break;
+                    }
+                    if (shape != null) {
+                        consumer.accept(shape);
+                    }
+                } else if (textAttributes != null && (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA)) {
+                    textBuilder.append(reader.getText());
+                } else if (textAttributes != null && event == XMLStreamConstants.END_ELEMENT) {
+                    if (textDepth > 0) {
+                        textDepth--;
+                    } else {
+                        consumer.accept(SVGImporter.createText(textAttributes, textBuilder.toString().trim()));
+                        textAttributes = null;
+                    }
+                }
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException("Could not read SVG: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    // The document has already been read
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the attributes of the current element, with any properties in its <code>style</code> attribute taking
+     * precedence, as in CSS.
+     */
+    @NotNull
+    private static Map<String, String> getAttributes(@NotNull final XMLStreamReader reader) {
+        @NotNull final Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        @Nullable final String style = attributes.get("style");
+        if (style != null) {
+            for (@NotNull final String declaration : style.split(";")) {
+                final int colon = declaration.indexOf(':');
+                if (colon > 0) {
+                    attributes.put(declaration.substring(0, colon).trim(), declaration.substring(colon + 1).trim());
+                }
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Gets a length attribute in user units.
+     *
+     * @param attributes   the attributes of an element.
+     * @param name         the name of the attribute.
+     * @param defaultValue the value to use if the attribute is absent or is not a number.
+     * @return the leading number of the attribute, ignoring any unit such as <code>px</code>.
+     */
+    private static double getLength(@NotNull final Map<String, String> attributes, @NotNull final String name,
+                                     final double defaultValue) {
+        @Nullable final String value = attributes.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        @NotNull final Matcher matcher = NUMBER.matcher(value);
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : defaultValue;
+    }
+
+    /**
+     * Places a Shape so that its center is at a point in SVG coordinates.
+     * <p>
+     * Implicit coordinates point up, whereas SVG coordinates point down.
+     */
+    private static void place(@NotNull final Shape shape, @NotNull final Map<String, String> attributes,
+                              final double x, final double y) {
+        shape.setImplicitXPositionCenter(DrawlNumber.valueOf(x));
+        shape.setImplicitYPositionCenter(DrawlNumber.valueOf(-y));
+        shape.setFill(attributes.get("fill"));
+        shape.setStroke(attributes.get("stroke"));
+    }
+
+    /**
+     * Creates a Circle.
+     *
+     * @return the Circle, or <code>null</code> if it has no area, and so is not rendered.
+     */
+    @Nullable
+    private static Shape createCircle(@NotNull final Map<String, String> attributes) {
+        final double radius = SVGImporter.getLength(attributes, "r", 0.0);
+        if (!(radius > 0.0)) {
+            return null;
+        }
+        @NotNull final Circle circle = new Circle(DrawlNumber.valueOf(radius));
+        SVGImporter.place(circle, attributes, SVGImporter.getLength(attributes, "cx", 0.0),
+                SVGImporter.getLength(attributes, "cy", 0.0));
+        return circle;
+    }
+
+    @NotNull
+    private static Shape createLine(@NotNull final Map<String, String> attributes) {
+        final double x1 = SVGImporter.getLength(attributes, "x1", 0.0);
+        final double y1 = SVGImporter.getLength(attributes, "y1", 0.0);
+        final double x2 = SVGImporter.getLength(attributes, "x2", 0.0);
+        final double y2 = SVGImporter.getLength(attributes, "y2", 0.0);
+        @NotNull final Line line = new Line();
+        line.setImplicitWidth(DrawlNumber.valueOf(Math.abs(x2 - x1)));
+        line.setImplicitHeight(DrawlNumber.valueOf(Math.abs(y2 - y1)));
+        line.setThickness(SVGImporter.getLength(attributes, "stroke-width", 1.0));
+        SVGImporter.place(line, attributes, (x1 + x2) / 2, (y1 + y2) / 2);
+        return line;
+    }
+
+    /**
+     * Creates a Rectangle.
+     *
+     * @return the Rectangle, or <code>null</code> if it has no area, and so is not rendered.
+     */
+    @Nullable
+    private static Shape createRectangle(@NotNull final Map<String, String> attributes) {
+        final double x = SVGImporter.getLength(attributes, "x", 0.0);
+        final double y = SVGImporter.getLength(attributes, "y", 0.0);
+        final double width = SVGImporter.getLength(attributes, "width", 0.0);
+        final double height = SVGImporter.getLength(attributes, "height", 0.0);
+        if (!(width > 0.0 && height > 0.0)) {
+            return null;
+        }
+        @NotNull final Rectangle rectangle = new Rectangle(DrawlNumber.valueOf(width), DrawlNumber.valueOf(height));
+        SVGImporter.place(rectangle, attributes, x + width / 2, y + height / 2);
+        return rectangle;
+    }
+
+    @NotNull
+    private static Shape createText(@NotNull final Map<String, String> attributes, @NotNull final String string) {
+        @NotNull final Text text = new Text(string);
+        SVGImporter.place(text, attributes, SVGImporter.getLength(attributes, "x", 0.0),
+                SVGImporter.getLength(attributes, "y", 0.0));
+        return text;
+    }
+}
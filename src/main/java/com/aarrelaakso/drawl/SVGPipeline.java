@@ -0,0 +1,141 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes the SVG for a laid-out Drawing while it is still being generated.
+ * <p>
+ * A renderer thread generates the SVG in chunks of Shapes, each chunk in parallel, and hands the chunks to the
+ * writing thread through a short queue. The writer can thus write chunk <i>k</i> while the renderer generates chunk
+ * <i>k</i> + 1. When the writer falls behind, the queue fills and the renderer waits, so no more than a few chunks are
+ * ever held in memory, however large the drawing.
+ * <p>
+ * The definitions must precede the Shapes that use them, so the Shapes that register definitions are generated first,
+ * in order. The output is identical to {@link Drawing#getSVG()}. Style classes are registered by every Shape, so they
+ * cannot be known until the end; Drawings that use them are not written by this class.
+ */
+final class SVGPipeline {
+
+    /**
+     * The number of Shapes in each chunk.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * The number of chunks that may wait to be written before the renderer waits for the writer.
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * Marks the end of the chunks. It is compared by identity, so it cannot be confused with a chunk.
+     */
+    private static final String END = new String("");
+
+    /**
+     * Prevents construction.
+     */
+    private SVGPipeline() {
+    }
+
+    /**
+     * Writes the SVG for some laid-out Shapes.
+     *
+     * @param drawing the Drawing to which the Shapes belong.
+     * @param shapes  the Shapes, in the order in which they were added.
+     * @param context the state of this rendering, which must not use style classes.
+     * @param writer  the writer to which to write, which is not flushed or closed.
+     * @throws IOException if there is a problem writing to the writer.
+     */
+    static void write(@NotNull final Drawing drawing, @NotNull final Shape[] shapes,
+                      @NotNull final SVGContext context, @NotNull final Writer writer) throws IOException {
+        @NotNull final BlockingQueue<String> chunks = new ArrayBlockingQueue<>(SVGPipeline.DEPTH);
+        @NotNull final AtomicReference<Throwable> failure = new AtomicReference<>();
+        @NotNull final Thread renderer = new Thread(() -> {
+            try {
+                try {
+                    SVGPipeline.render(drawing, shapes, context, chunks);
+                } catch (final RuntimeException | Error e) {
+                    failure.set(e);
+                }
+                chunks.put(SVGPipeline.END);
+            } catch (final InterruptedException e) {
+                // The writer has given up
+            }
+        }, "drawl-svg-renderer");
+        renderer.setDaemon(true);
+        renderer.start();
+        try {
+            for (String chunk = chunks.take(); chunk != SVGPipeline.END; chunk = chunks.take()) {
+                writer.write(chunk);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing SVG");
+        } finally {
+            // Stops the renderer if the writer failed; otherwise it has already finished
+            renderer.interrupt();
+        }
+        @Nullable final Throwable cause = failure.get();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Generates the SVG in chunks, on the renderer thread.
+     *
+     * @throws InterruptedException if the writer gives up while the queue is full.
+     */
+    private static void render(@NotNull final Drawing drawing, @NotNull final Shape[] shapes,
+                               @NotNull final SVGContext context, @NotNull final BlockingQueue<String> chunks)
+            throws InterruptedException {
+        @NotNull final String[] fragments = new String[shapes.length];
+        for (int i = 0; i < shapes.length; i++) {
+            if (shapes[i].hasSVGDefinitions()) {
+                fragments[i] = shapes[i].getSVGFragment(context);
+            }
+        }
+        chunks.put(drawing.getSVGStart() + context.getDefs());
+        for (int start = 0; start < shapes.length; start += SVGPipeline.CHUNK_SIZE) {
+            final int end = Math.min(start + SVGPipeline.CHUNK_SIZE, shapes.length);
+            Drawing.fillSVGFragments(shapes, fragments, context, start, end);
+            @NotNull final StringBuilder chunk = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                chunk.append(fragments[i]);
+                // The chunk has been generated, so its SVG need not be held any longer
+                fragments[i] = null;
+            }
+            chunks.put(chunk.toString());
+        }
+        chunks.put("</svg>");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renders a Drawing to SVG.
+ * <p>
+ * The SVG is the same as {@link Drawing#getSVG()} writes with the marker library, style class and minification
+ * options of the Drawing. Symbols, path coalescing and element ids are not applied, because they need the whole
+ * Drawing rather than one Shape at a time. Each Shape reuses its SVG from the previous rendering if it has not
+ * changed since.
+ */
+public final class SVGSink implements RenderSink {
+
+    private @Nullable SVGContext context;
+    private @NotNull StringBuilder svgBuilder = new StringBuilder();
+    private @NotNull StringBuilder bodyBuilder = new StringBuilder();
+    private @Nullable String svg;
+
+    @Override
+    public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+        this.context = drawing.createSVGContext();
+        this.svgBuilder = new StringBuilder(drawing.getSVGStart());
+        this.bodyBuilder = new StringBuilder();
+        this.svg = null;
+    }
+
+    @Override
+    public void beginShape(@NotNull final Shape shape) {
+        if (this.context == null) {
+            throw new IllegalStateException("Cannot render a Shape before the Drawing has begun");
+        }
+        this.bodyBuilder.append(shape.getSVGFragment(this.context));
+    }
+
+    @Override
+    public void end() {
+        if (this.context == null) {
+            throw new IllegalStateException("Cannot end a Drawing that has not begun");
+        }
+        // Shapes register shared definitions with the context as they go, so they come after the body is built
+        this.svgBuilder.append(this.context.getDefs());
+        this.svgBuilder.append(this.bodyBuilder);
+        this.svgBuilder.append("</svg>");
+        this.svg = this.svgBuilder.toString();
+        this.context = null;
+    }
+
+    /**
+     * Gets the SVG of the Drawing most recently rendered to this sink.
+     *
+     * @return a string of valid SVG.
+     * @throws IllegalStateException if no Drawing has been rendered to this sink.
+     */
+    @NotNull
+    public String getSVG() {
+        if (this.svg == null) {
+            throw new IllegalStateException("No drawing has been rendered");
+        }
+        return this.svg;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a Drawing to a compact, columnar JSON scene, which a canvas or WebGL client can draw without laying out an
+ * SVG DOM.
+ * <p>
+ * The scene has one entry per primitive, in drawing order, in each of the columns <code>types</code>,
+ * <code>shapes</code> and <code>styles</code>:
+ * <ul>
+ *     <li><code>types</code> holds the kind of primitive: 0 for a circle, 1 for a rectangle, 2 for a line and 3 for
+ *     text;</li>
+ *     <li><code>shapes</code> holds the index of the Shape in the Drawing to which the primitive belongs; and</li>
+ *     <li><code>styles</code> holds an index into <code>styleTable</code>, whose entries are
+ *     <code>[fill,stroke,strokeWidth,lineEnding]</code>, with <code>null</code> for an SVG default or a missing
+ *     LineEnding.</li>
+ * </ul>
+ * The numbers for each primitive follow each other in <code>coords</code>: <code>cx,cy,r</code> for a circle,
+ * <code>x,y,width,height</code> for a rectangle, <code>x1,y1,x2,y2</code> for a line and <code>x,y</code> for the
+ * center of text. The <code>texts</code> column holds, for each text primitive in turn, an index into
+ * <code>textTable</code>. Identical styles and strings are written only once.
+ */
+public final class SceneSink implements RenderSink {
+
+    /**
+     * The type code of a circle.
+     */
+    public static final int CIRCLE = 0;
+
+    /**
+     * The type code of a rectangle.
+     */
+    public static final int RECTANGLE = 1;
+
+    /**
+     * The type code of a line.
+     */
+    public static final int LINE = 2;
+
+    /**
+     * The type code of text.
+     */
+    public static final int TEXT = 3;
+
+    private int width;
+    private int height;
+    private int shapeIndex;
+    private @NotNull StringBuilder types = new StringBuilder();
+    private @NotNull StringBuilder shapes = new StringBuilder();
+    private @NotNull StringBuilder styles = new StringBuilder();
+    private @NotNull StringBuilder coordinates = new StringBuilder();
+    private @NotNull StringBuilder texts = new StringBuilder();
+    private @NotNull Map<List<String>, Integer> styleTable = new LinkedHashMap<>();
+    private @NotNull Map<String, Integer> textTable = new LinkedHashMap<>();
+    private @Nullable String scene;
+
+    private static void appendValue(@NotNull final StringBuilder column, @NotNull final String value) {
+        if (column.length() > 0) {
+            column.append(',');
+        }
+        column.append(value);
+    }
+
+    private void appendPrimitive(final int type, @Nullable final String fill, @Nullable final String stroke,
+                                 @Nullable final String strokeWidth, @Nullable final String lineEnding,
+                                 @NotNull final double... numbers) {
+        SceneSink.appendValue(this.types, Integer.toString(type));
+        SceneSink.appendValue(this.shapes, Integer.toString(this.shapeIndex));
+        @NotNull final List<String> style = Arrays.asList(fill, stroke, strokeWidth, lineEnding);
+        Integer styleIndex = this.styleTable.get(style);
+        if (styleIndex == null) {
+            styleIndex = this.styleTable.size();
+            this.styleTable.put(style, styleIndex);
+        }
+        SceneSink.appendValue(this.styles, styleIndex.toString());
+        for (final double number : numbers) {
+            SceneSink.appendValue(this.coordinates, PathData.format(number));
+        }
+    }
+
+    @Override
+    public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.shapeIndex = -1;
+        this.types = new StringBuilder();
+        this.shapes = new StringBuilder();
+        this.styles = new StringBuilder();
+        this.coordinates = new StringBuilder();
+        this.texts = new StringBuilder();
+        this.styleTable = new LinkedHashMap<>();
+        this.textTable = new LinkedHashMap<>();
+        this.scene = null;
+    }
+
+    @Override
+    public void beginShape(@NotNull final Shape shape) {
+        this.shapeIndex++;
+    }
+
+    @Override
+    public void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                       @Nullable final String stroke) {
+        this.appendPrimitive(CIRCLE, fill, stroke, null, null, cx, cy, radius);
+    }
+
+    @Override
+    public void rectangle(final double x, final double y, final double width, final double height,
+                          @Nullable final String fill, @Nullable final String stroke) {
+        this.appendPrimitive(RECTANGLE, fill, stroke, null, null, x, y, width, height);
+    }
+
+    @Override
+    public void line(final double x1, final double y1, final double x2, final double y2,
+                     @NotNull final String stroke, final double thickness, @Nullable final LineEnding lineEnding) {
+        this.appendPrimitive(LINE, null, stroke, PathData.format(thickness),
+                lineEnding == null ? null : lineEnding.getLineEndingType().name(), x1, y1, x2, y2);
+    }
+
+    @Override
+    public void text(final double x, final double y, @NotNull final String string, @Nullable final String fill,
+                     @Nullable final String stroke) {
+        this.appendPrimitive(TEXT, fill, stroke, null, null, x, y);
+        Integer textIndex = this.textTable.get(string);
+        if (textIndex == null) {
+            textIndex = this.textTable.size();
+            this.textTable.put(string, textIndex);
+        }
+        SceneSink.appendValue(this.texts, textIndex.toString());
+    }
+
+    @Override
+    public void end() {
+        @NotNull final StringBuilder json = new StringBuilder();
+        json.append("{\"width\":").append(this.width).append(",\"height\":").append(this.height);
+        json.append(",\"types\":[").append(this.types).append(']');
+        json.append(",\"shapes\":[").append(this.shapes).append(']');
+        json.append(",\"styles\":[").append(this.styles).append(']');
+        json.append(",\"coords\":[").append(this.coordinates).append(']');
+        json.append(",\"texts\":[").append(this.texts).append(']');
+        json.append(",\"styleTable\":[");
+        boolean first = true;
+        for (@NotNull final List<String> style : this.styleTable.keySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('[');
+            for (int i = 0; i < style.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                JSON.appendString(json, style.get(i));
+            }
+            json.append(']');
+        }
+        json.append("],\"textTable\":[");
+        first = true;
+        for (@NotNull final String string : this.textTable.keySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            JSON.appendString(json, string);
+        }
+        json.append("]}");
+        this.scene = json.toString();
+    }
+
+    /**
+     * Gets the scene of the Drawing most recently rendered to this sink.
+     *
+     * @return a JSON object.
+     * @throws IllegalStateException if no Drawing has been rendered to this sink.
+     */
+    @NotNull
+    public String getJSON() {
+        if (this.scene == null) {
+            throw new IllegalStateException("No drawing has been rendered");
+        }
+        return this.scene;
+    }
+}
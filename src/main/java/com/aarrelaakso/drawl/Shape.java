@@ -23,6 +23,9 @@ import com.google.common.flogger.FluentLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -98,13 +101,78 @@ public class Shape {
      */
     private @Nullable Text text;
 
+    /**
+     * The Shape that this Shape is the Text of, if any, whose SVG includes the SVG of this Shape.
+     */
+    private @Nullable Shape container;
+
+    /**
+     * The SVG most recently generated for this Shape, until this Shape changes. Softly referenced, so that it yields
+     * under memory pressure.
+     */
+    private @Nullable SoftReference<String> svgFragment;
+
+    /**
+     * Whether <code>svgFragment</code> was generated for minified output.
+     */
+    private boolean svgFragmentMinified;
+
+    /**
+     * Indicates whether two explicit values are the same, so that setting one to the other changes nothing.
+     *
+     * @param x the current value, or <code>null</code>.
+     * @param y the new value, or <code>null</code>.
+     * @return <code>true</code> if the values are equal.
+     */
+    private static boolean isSame(@Nullable final Number x, @Nullable final Number y) {
+        return (x == y) || ((x != null) && (y != null) && (x.compareTo(y) == 0));
+    }
+
     /**
      * Adds Text inside this Shape.
      *
      * @param text a Text object representing the text to be drawn inside this Shape.
      */
     public void addText(@Nullable final Text text) {
+        if (this.text != null) {
+            ((Shape) this.text).container = null;
+        }
         this.text = text;
+        if (text != null) {
+            ((Shape) text).container = this;
+        }
+        this.invalidateSVG();
+    }
+
+    /**
+     * Gets the Shape that this Shape was placed next to, if any.
+     *
+     * @return the neighbor, or <code>null</code> if this Shape has not been placed next to another.
+     */
+    @Nullable
+    Shape getNeighbor() {
+        return this.neighbor;
+    }
+
+    /**
+     * Gets the angle from this Shape to its neighbor.
+     *
+     * @return the angle, in degrees, or <code>null</code> if this Shape has not been placed next to another.
+     */
+    @Nullable
+    Number getAngleToNeighbor() {
+        return this.angleToNeighbor;
+    }
+
+    /**
+     * Restores the neighbor of this Shape, without laying this Shape out again.
+     *
+     * @param neighbor        the Shape that this Shape was placed next to.
+     * @param angleToNeighbor the angle, in degrees, from this Shape to its neighbor.
+     */
+    void restoreNeighbor(@NotNull final Shape neighbor, @NotNull final Number angleToNeighbor) {
+        this.neighbor = neighbor;
+        this.angleToNeighbor = angleToNeighbor;
     }
 
     /**
@@ -206,6 +274,9 @@ public class Shape {
      *               been assigned an explicit height.
      */
     protected void setExplicitHeight(@Nullable final Number height) {
+        if (!Shape.isSame(this.explicitHeight, height)) {
+            this.invalidateSVG();
+        }
         this.explicitHeight = height;
         if (Boolean.TRUE.equals(this.hasText())) {
             Objects.requireNonNull(this.getText()).setExplicitHeight(height);
@@ -230,6 +301,9 @@ public class Shape {
      *              been assigned an explicit width.
      */
     protected void setExplicitWidth(@Nullable final Number width) {
+        if (!Shape.isSame(this.explicitWidth, width)) {
+            this.invalidateSVG();
+        }
         this.explicitWidth = width;
         if (Boolean.TRUE.equals(this.hasText())) {
             Objects.requireNonNull(this.getText()).setExplicitWidth(width);
@@ -252,6 +326,9 @@ public class Shape {
      * @param x the explicit x position of the center of this Shape.
      */
     protected void setExplicitXPositionCenter(final Number x) {
+        if (!Shape.isSame(this.explicitPositionCenter.getX(), x)) {
+            this.invalidateSVG();
+        }
         this.explicitPositionCenter.setX(x);
         if (Boolean.TRUE.equals(this.hasText())) {
             Objects.requireNonNull(this.getText()).setExplicitXPositionCenter(x);
@@ -267,6 +344,72 @@ public class Shape {
         this.setExplicitXPositionCenter(DrawlNumber.valueOf(x));
     }
 
+    /**
+     * Gets the x position at which to draw the center of this Shape in a rendering.
+     *
+     * @param context the state of the rendering.
+     * @return the explicit x position of the center, relative to the origin of the rendering.
+     */
+    @NotNull
+    Number getSVGXPositionCenter(@NotNull final SVGContext context) {
+        return context.translateX(this.getExplicitXPositionCenter());
+    }
+
+    /**
+     * Gets the x position at which to draw the left edge of this Shape in a rendering.
+     *
+     * @param context the state of the rendering.
+     * @return the explicit x position of the left edge, relative to the origin of the rendering.
+     */
+    @NotNull
+    Number getSVGXPositionLeft(@NotNull final SVGContext context) {
+        return this.getSVGXPositionCenter(context).subtract(this.getExplicitHalfWidth());
+    }
+
+    /**
+     * Gets the x position at which to draw the right edge of this Shape in a rendering.
+     *
+     * @param context the state of the rendering.
+     * @return the explicit x position of the right edge, relative to the origin of the rendering.
+     */
+    @NotNull
+    Number getSVGXPositionRight(@NotNull final SVGContext context) {
+        return this.getSVGXPositionCenter(context).add(this.getExplicitHalfWidth());
+    }
+
+    /**
+     * Gets the y position at which to draw the center of this Shape in a rendering.
+     *
+     * @param context the state of the rendering.
+     * @return the explicit y position of the center, relative to the origin of the rendering.
+     */
+    @NotNull
+    Number getSVGYPositionCenter(@NotNull final SVGContext context) {
+        return context.translateY(this.getExplicitYPositionCenter());
+    }
+
+    /**
+     * Gets the y position at which to draw the top of this Shape in a rendering.
+     *
+     * @param context the state of the rendering.
+     * @return the explicit y position of the top, relative to the origin of the rendering.
+     */
+    @NotNull
+    Number getSVGYPositionTop(@NotNull final SVGContext context) {
+        return this.getSVGYPositionCenter(context).subtract(this.getExplicitHalfHeight());
+    }
+
+    /**
+     * Gets the y position at which to draw the bottom of this Shape in a rendering.
+     *
+     * @param context the state of the rendering.
+     * @return the explicit y position of the bottom, relative to the origin of the rendering.
+     */
+    @NotNull
+    Number getSVGYPositionBottom(@NotNull final SVGContext context) {
+        return this.getSVGYPositionCenter(context).add(this.getExplicitHalfHeight());
+    }
+
     /**
      * Gets the explicit x position of the left edge of this Shape.
      *
@@ -324,6 +467,9 @@ public class Shape {
      * @param y The explicit y position of this Shape.
      */
     protected void setExplicitYPositionCenter(final Number y) {
+        if (!Shape.isSame(this.explicitPositionCenter.getY(), y)) {
+            this.invalidateSVG();
+        }
         this.explicitPositionCenter.setY(y);
         if (Boolean.TRUE.equals(this.hasText())) {
             Objects.requireNonNull(this.getText()).setExplicitYPositionCenter(y);
@@ -356,6 +502,9 @@ public class Shape {
      * @param s A string representing a fill color, e.g., "white".
      */
     public void setFill(final String s) {
+        if (!Objects.equals(this.fill, s)) {
+            this.invalidateSVG();
+        }
         this.fill = s;
     }
 
@@ -592,10 +741,152 @@ public class Shape {
         return new Point(xCoordinate, yCoordinate);
     }
 
+    /**
+     * Gets the SVG for this Shape on its own, including any definitions it needs.
+     *
+     * @return A string of SVG representing this Shape.
+     */
     public String getSVG() {
+        @NotNull final SVGContext context = new SVGContext();
+        final String svg = this.getSVG(context);
+        return context.getDefs() + svg;
+    }
+
+    /**
+     * Gets the SVG for this Shape as part of a larger rendering.
+     * <p>
+     * Subclasses override this method. Any definitions the Shape needs are registered with the context rather than
+     * written inline, so that the caller can write each of them once.
+     *
+     * @param context the state of the rendering of which this Shape is a part.
+     * @return A string of SVG representing this Shape.
+     */
+    String getSVG(@NotNull final SVGContext context) {
         return "oops";
     }
 
+    /**
+     * Gets the SVG for this Shape, reusing the SVG from the previous rendering if this Shape has not changed since.
+     * <p>
+     * SVG that refers to definitions registered with the context, such as markers or CSS classes, depends on the
+     * rest of the rendering, so it is never reused.
+     *
+     * @param context the state of the rendering of which this Shape is a part.
+     * @return A string of SVG representing this Shape.
+     */
+    @NotNull
+    final String getSVGFragment(@NotNull final SVGContext context) {
+        if (context.hasStyleClasses() || this.hasSVGDefinitions()) {
+            return this.getSVG(context);
+        }
+        @Nullable final SoftReference<String> reference = this.svgFragment;
+        @Nullable String fragment = null;
+        if (reference != null && this.svgFragmentMinified == context.isMinified()) {
+            fragment = reference.get();
+        }
+        if (fragment == null) {
+            fragment = this.getSVG(context);
+            this.svgFragment = new SoftReference<>(fragment);
+            this.svgFragmentMinified = context.isMinified();
+        }
+        return fragment;
+    }
+
+    /**
+     * Indicates whether the SVG for this Shape registers definitions, such as markers, with the rendering context.
+     *
+     * @return <code>true</code> if this Shape or its Text needs definitions.
+     */
+    boolean hasSVGDefinitions() {
+        return this.text != null && this.text.hasSVGDefinitions();
+    }
+
+    /**
+     * Discards the SVG generated for this Shape, and for any Shape that contains it, because it has changed.
+     * <p>
+     * Subclasses call this method whenever they change in a way that affects their SVG.
+     */
+    protected void invalidateSVG() {
+        this.svgFragment = null;
+        if (this.container != null) {
+            this.container.invalidateSVG();
+        }
+    }
+
+    /**
+     * Appends path data that draws this Shape, so that Shapes with the same style can be merged into a single path.
+     * <p>
+     * Subclasses that can be drawn as part of a path override this method.
+     *
+     * @param pathData the path data to which to append.
+     * @return <code>true</code> if this Shape was appended, or <code>false</code>, leaving the path data unchanged, if
+     * this Shape cannot be drawn as part of a path.
+     */
+    boolean appendSVGPathData(@NotNull final PathData pathData) {
+        return false;
+    }
+
+    /**
+     * Gets the explicit area that this Shape fills, by which Shapes are ranked for a coarse preview.
+     *
+     * @return the area of the explicit bounding box of this Shape, or 0 if this Shape has not been laid out.
+     */
+    double getExplicitArea() {
+        if (this.getExplicitWidth() == null || this.getExplicitHeight() == null) {
+            return 0.0;
+        }
+        return this.getExplicitWidth().doubleValue() * this.getExplicitHeight().doubleValue();
+    }
+
+    /**
+     * Appends path data that outlines this Shape, at its explicit position and size, for a coarse preview.
+     * <p>
+     * The outline is the explicit bounding box of this Shape. Subclasses that are not boxes override this method.
+     *
+     * @param pathData the path data to which to append.
+     * @return <code>true</code> if the outline was appended, or <code>false</code>, leaving the path data unchanged,
+     * if this Shape has not been laid out.
+     */
+    boolean appendSVGOutline(@NotNull final PathData pathData) {
+        if (this.getExplicitWidth() == null || this.getExplicitHeight() == null) {
+            return false;
+        }
+        final double left = this.getExplicitXPositionLeft().doubleValue();
+        final double top = this.getExplicitYPositionTop().doubleValue();
+        final double right = left + this.getExplicitWidth().doubleValue();
+        final double bottom = top + this.getExplicitHeight().doubleValue();
+        pathData.moveTo(left, top);
+        pathData.lineTo(right, top);
+        pathData.lineTo(right, bottom);
+        pathData.lineTo(left, bottom);
+        pathData.closePath();
+        return true;
+    }
+
+    /**
+     * Renders this Shape, at its explicit position and size, as primitives for a sink.
+     * <p>
+     * Subclasses pass their own primitives to the sink and then call this method, which renders the Text of this
+     * Shape, if any. Rendering must not change this Shape.
+     *
+     * @param sink the sink to which to pass the primitives.
+     */
+    void render(@NotNull final RenderSink sink) {
+        if (this.text != null) {
+            this.text.render(sink);
+        }
+    }
+
+    /**
+     * Gets the style with which this Shape is drawn.
+     *
+     * @return the fill, stroke and stroke width of this Shape, each <code>null</code> if it is the SVG default.
+     */
+    @NotNull
+    List<String> getSVGStyle() {
+        return Arrays.asList(this.getFill(), this.getStroke(), null);
+    }
+
     /**
      * Gets the stroke of this Shape.
      *
@@ -612,6 +903,9 @@ public class Shape {
      * @param s A stroke name.
      */
     public void setStroke(final String s) {
+        if (!Objects.equals(this.stroke, s)) {
+            this.invalidateSVG();
+        }
         this.stroke = s;
     }
 
@@ -13,6 +13,8 @@ package com.aarrelaakso.drawl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Objects;
+
 /**
  * Represents text on a drawing.
  */
@@ -45,11 +47,12 @@ public class Text extends Shape
     /**
      * Gets the SVG associated with this Text object.
      *
+     * @param context the state of the rendering of which this Text object is a part.
      * @return a string of SVG that represents the text associated with this Text object.
      */
     @Override
     @NotNull
-    public String getSVG() {
+    String getSVG(@NotNull final SVGContext context) {
         if (this.getExplicitWidth() == null || this.getExplicitHeight() == null)
         {
             throw new UnsupportedOperationException("Cannot get SVG without setting explicit dimensions");
@@ -58,31 +61,46 @@ public class Text extends Shape
         {
             @NotNull final StringBuilder svgBuilder = new StringBuilder();
             svgBuilder.append("<text");
-            svgBuilder.append(" x='");
-            svgBuilder.append(this.getExplicitXPositionCenter().toSVG());
-            svgBuilder.append("'");
-            svgBuilder.append(" y='");
-            svgBuilder.append(this.getExplicitYPositionCenter().toSVG());
-            svgBuilder.append("'");
-            svgBuilder.append(" dominant-baseline='middle' text-anchor='middle'");
-            if (this.getStroke() != null)
+            @NotNull final String x = this.getSVGXPositionCenter(context).toSVG();
+            if (!context.isOmitted(x, "0"))
             {
-                svgBuilder.append(" stroke='");
-                svgBuilder.append(this.getStroke());
+                svgBuilder.append(" x='");
+                svgBuilder.append(x);
                 svgBuilder.append("'");
             }
-            if (this.getFill() != null)
+            @NotNull final String y = this.getSVGYPositionCenter(context).toSVG();
+            if (!context.isOmitted(y, "0"))
             {
-                svgBuilder.append(" fill='");
-                svgBuilder.append(this.getFill());
+                svgBuilder.append(" y='");
+                svgBuilder.append(y);
                 svgBuilder.append("'");
             }
+            svgBuilder.append(" dominant-baseline='middle' text-anchor='middle'");
+            if (context.hasStyleClasses())
+            {
+                svgBuilder.append(context.getStyleClass(this.getFill(), this.getStroke(), null));
+            }
+            else
+            {
+                if (this.getStroke() != null && !context.isOmitted(this.getStroke(), "none"))
+                {
+                    svgBuilder.append(" stroke='");
+                    svgBuilder.append(this.getStroke());
+                    svgBuilder.append("'");
+                }
+                if (this.getFill() != null && !context.isOmitted(this.getFill(), "black"))
+                {
+                    svgBuilder.append(" fill='");
+                    svgBuilder.append(this.getFill());
+                    svgBuilder.append("'");
+                }
+            }
             svgBuilder.append(">");
             svgBuilder.append(this);
             svgBuilder.append("</text>");
             if (this.hasText())
             {
-                svgBuilder.append(this.getText().getSVG());
+                svgBuilder.append(this.getText().getSVG(context));
             }
             return svgBuilder.toString();
         }
@@ -92,6 +110,33 @@ public class Text extends Shape
         }
     }
 
+    /**
+     * Text has no area to fill, so it is left out of a coarse preview.
+     *
+     * @return 0.
+     */
+    @Override
+    double getExplicitArea()
+    {
+        return 0.0;
+    }
+
+    /**
+     * Renders this Text object as a primitive for a sink, centered on its explicit position as in the SVG.
+     *
+     * @param sink the sink to which to pass the primitive.
+     */
+    @Override
+    void render(@NotNull final RenderSink sink)
+    {
+        if (this.string != null && !this.string.isEmpty())
+        {
+            sink.text(this.getExplicitXPositionCenter().doubleValue(), this.getExplicitYPositionCenter().doubleValue(),
+                    this.string, this.getFill(), this.getStroke());
+        }
+        super.render(sink);
+    }
+
     /**
      * Sets the string associated with this Text object.
      *
@@ -100,6 +145,10 @@ public class Text extends Shape
      */
     public void setString(@Nullable final String string)
     {
+        if (!Objects.equals(this.string, string))
+        {
+            this.invalidateSVG();
+        }
         this.string = string;
     }
 
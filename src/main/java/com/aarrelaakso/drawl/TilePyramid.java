@@ -0,0 +1,344 @@
+/*
+ * Drawl, the world's best drawing language.
+ *
+ * Copyright (c) 2020 Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a Drawing as a pyramid of PNG tiles, for panning and zooming in a browser.
+ * <p>
+ * Zoom level <code>z</code> shows the whole Drawing in a square of <code>2<sup>z</sup></code> by
+ * <code>2<sup>z</sup></code> tiles of {@link Rasterizer#TILE_SIZE} pixels, written to <code>z/x/y.png</code> as
+ * in web maps, so that any viewer for such tiles can show it. Tiles with nothing on them are not written.
+ * <p>
+ * The Drawing is laid out and walked only once, at the deepest level. Each primitive is recorded with its bounds, so
+ * that each tile paints only the primitives that reach it. At shallower levels, primitives smaller than a pixel are
+ * drawn as a single pixel, and at most once per pixel and color, so that a tile costs no more to paint and to view
+ * however many Shapes lie under it.
+ * <p>
+ * Each level is swept a row of tiles at a time, and the tiles are painted in parallel in batches of rows, so only the
+ * rows being painted have their primitives sorted into tiles, however deep the pyramid and however large the Shapes.
+ */
+final class TilePyramid {
+
+    /**
+     * The deepest zoom level supported, at which the Drawing is laid out <code>2<sup>16</sup></code> tiles across.
+     */
+    static final int MAX_ZOOM = 16;
+
+    /**
+     * The number of tiles to gather before painting them, which bounds the tasks held at once to this many plus one
+     * row of tiles.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Prevents construction.
+     */
+    private TilePyramid() {
+    }
+
+    /**
+     * Writes the tile pyramid for a Drawing.
+     *
+     * @param drawing   the Drawing, which is laid out to the size of the deepest level.
+     * @param directory the directory under which to write the tiles.
+     * @param maxZoom   the deepest zoom level to write, from 0 to {@link #MAX_ZOOM}.
+     * @return the number of tiles written.
+     * @throws IOException if there is a problem writing a tile.
+     */
+    static int write(@NotNull final Drawing drawing, @NotNull final String directory, final int maxZoom)
+            throws IOException {
+        if (maxZoom < 0 || maxZoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("Zoom level must be from 0 to " + MAX_ZOOM + ": " + maxZoom);
+        }
+        final int size = Rasterizer.TILE_SIZE << maxZoom;
+        @NotNull final Recorder recorder = new Recorder();
+        drawing.render(size, size, recorder);
+        @NotNull final List<Primitive> primitives = recorder.primitives;
+        // The order in which primitives are first reached by a sweep down the rows of any level
+        @NotNull final List<Integer> byTop = new ArrayList<>(primitives.size());
+        for (int i = 0; i < primitives.size(); i++) {
+            byTop.add(i);
+        }
+        byTop.sort(Comparator.comparingDouble(i -> primitives.get(i).bounds.getMinY()));
+        @NotNull final List<Callable<Boolean>> tasks = new ArrayList<>();
+        int written = 0;
+        for (int zoom = 0; zoom <= maxZoom; zoom++) {
+            final double scale = 1.0 / (1 << (maxZoom - zoom));
+            final int tiles = 1 << zoom;
+            final double tileSize = Rasterizer.TILE_SIZE / scale;
+            // The primitives that reach the current row or a later one, in drawing order
+            @NotNull final Map<Integer, Primitive> active = new TreeMap<>();
+            int next = 0;
+            for (int row = 0; row < tiles; row++) {
+                while (next < byTop.size()
+                        && Math.floor(primitives.get(byTop.get(next)).bounds.getMinY() / tileSize) <= row) {
+                    active.put(byTop.get(next), primitives.get(byTop.get(next)));
+                    next++;
+                }
+                for (@NotNull final Map.Entry<Integer, List<Primitive>> tile : TilePyramid.getRow(active, tileSize,
+                        row, tiles).entrySet()) {
+                    final int column = tile.getKey();
+                    @NotNull final Path path = Paths.get(directory, Integer.toString(zoom), Integer.toString(column),
+                            row + ".png");
+                    final int x = column * Rasterizer.TILE_SIZE;
+                    final int y = row * Rasterizer.TILE_SIZE;
+                    tasks.add(() -> TilePyramid.writeTile(tile.getValue(), scale, x, y, path));
+                }
+                if (tasks.size() >= BATCH_SIZE) {
+                    written += TilePyramid.invokeAll(tasks);
+                    tasks.clear();
+                }
+            }
+        }
+        return written + TilePyramid.invokeAll(tasks);
+    }
+
+    /**
+     * Paints tiles in parallel.
+     *
+     * @param tasks the tasks that paint and write the tiles.
+     * @return the number of tiles written.
+     * @throws IOException if there is a problem writing a tile.
+     */
+    private static int invokeAll(@NotNull final List<Callable<Boolean>> tasks) throws IOException {
+        int written = 0;
+        for (@NotNull final Future<Boolean> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                written += result.get() ? 1 : 0;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing tiles", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IllegalStateException("Could not paint tile", e.getCause());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Sorts primitives into the tiles of one row of a zoom level, forgetting those that end above the row.
+     *
+     * @param active   the primitives that start at or above the row and have not yet been forgotten, keyed by their
+     *                 position in drawing order.
+     * @param tileSize the size of a tile of the level, at the deepest level.
+     * @param row      the row.
+     * @param tiles    the number of tiles across and down the level.
+     * @return the primitives that reach each tile of the row, in drawing order, keyed by the column of the tile.
+     * Tiles that no primitive reaches are left out.
+     */
+    @NotNull
+    private static Map<Integer, List<Primitive>> getRow(@NotNull final Map<Integer, Primitive> active,
+                                                        final double tileSize, final int row, final int tiles) {
+        @NotNull final Map<Integer, List<Primitive>> primitivesByColumn = new TreeMap<>();
+        for (@NotNull final Iterator<Primitive> iterator = active.values().iterator(); iterator.hasNext(); ) {
+            @NotNull final Primitive primitive = iterator.next();
+            if (Math.floor(primitive.bounds.getMaxY() / tileSize) < row) {
+                iterator.remove();
+                continue;
+            }
+            final int left = (int) Math.max(0, Math.floor(primitive.bounds.getMinX() / tileSize));
+            final int right = (int) Math.min(tiles - 1, Math.floor(primitive.bounds.getMaxX() / tileSize));
+            for (int column = left; column <= right; column++) {
+                primitivesByColumn.computeIfAbsent(column, key -> new ArrayList<>()).add(primitive);
+            }
+        }
+        return primitivesByColumn;
+    }
+
+    /**
+     * Paints and writes one tile.
+     *
+     * @param primitives the primitives that reach the tile, in drawing order.
+     * @param scale      the scale of the level relative to the deepest level.
+     * @param x          the x coordinate of the left of the tile within its level.
+     * @param y          the y coordinate of the top of the tile within its level.
+     * @param path       the file to which to write the tile.
+     * @return <code>true</code> if the tile was written, or <code>false</code> if nothing was painted on it.
+     * @throws IOException if there is a problem writing the tile.
+     */
+    private static boolean writeTile(@NotNull final List<Primitive> primitives, final double scale, final int x,
+                                     final int y, @NotNull final Path path) throws IOException {
+        @NotNull final List<Rasterizer.Operation> operations = new ArrayList<>();
+        // Pixels already painted with each color by primitives drawn as a single pixel
+        @NotNull final Set<Long> dots = new HashSet<>();
+        for (@NotNull final Primitive primitive : primitives) {
+            // The bounds include the anti-aliasing margin, which does not count towards the size of the primitive
+            if ((Math.max(primitive.bounds.getWidth(), primitive.bounds.getHeight())
+                    - 2 * Rasterizer.ANTIALIASING_MARGIN) * scale >= 1.0) {
+                // The primitives were already sorted into the tiles that they reach
+                operations.add(new Rasterizer.Operation(null, graphics -> {
+                    @NotNull final AffineTransform transform = graphics.getTransform();
+                    graphics.scale(scale, scale);
+                    primitive.operations.forEach(operation -> operation.paint(graphics));
+                    graphics.setTransform(transform);
+                }));
+            } else if (primitive.color != null) {
+                final int dotX = (int) Math.floor(primitive.bounds.getCenterX() * scale);
+                final int dotY = (int) Math.floor(primitive.bounds.getCenterY() * scale);
+                // The bounds of the primitive can reach this tile while its center lies in the next one
+                if (dotX < x || dotX >= x + Rasterizer.TILE_SIZE || dotY < y || dotY >= y + Rasterizer.TILE_SIZE) {
+                    continue;
+                }
+                final long pixel = ((long) (dotY - y) * Rasterizer.TILE_SIZE + (dotX - x));
+                if (dots.add(pixel << 32 | (primitive.color.getRGB() & 0xffffffffL))) {
+                    operations.add(new Rasterizer.Operation(null, graphics -> {
+                        graphics.setColor(primitive.color);
+                        graphics.fillRect(dotX, dotY, 1, 1);
+                    }));
+                }
+            }
+        }
+        if (operations.isEmpty()) {
+            return false;
+        }
+        @NotNull final BufferedImage tile = Rasterizer.rasterizeTile(operations, x, y, Rasterizer.TILE_SIZE,
+                Rasterizer.TILE_SIZE);
+        Files.createDirectories(path.getParent());
+        ImageIO.write(tile, "png", path.toFile());
+        return true;
+    }
+
+    /**
+     * A primitive recorded for painting into tiles.
+     */
+    private static final class Primitive {
+
+        /**
+         * The bounds of the primitive at the deepest level, including its stroke.
+         */
+        private final @NotNull Rectangle2D bounds;
+
+        /**
+         * The operations that paint the primitive at the deepest level.
+         */
+        private final @NotNull List<Rasterizer.Operation> operations;
+
+        /**
+         * The color in which to paint the primitive where it is smaller than a pixel, or <code>null</code> if it is
+         * not painted at all.
+         */
+        private final @Nullable Color color;
+
+        Primitive(@NotNull final Rectangle2D bounds, @NotNull final List<Rasterizer.Operation> operations,
+                  @Nullable final Color color) {
+            this.bounds = bounds;
+            this.operations = operations;
+            this.color = color;
+        }
+    }
+
+    /**
+     * Records the primitives of a Drawing, with the operations with which an {@link ImageSink} would paint them.
+     */
+    private static final class Recorder implements RenderSink {
+
+        private final @NotNull ImageSink sink = new ImageSink();
+        private final @NotNull List<Primitive> primitives = new ArrayList<>();
+
+        /**
+         * Records the operations that the image sink has added for the latest primitive, within the bounds of them
+         * all.
+         */
+        private void record(@Nullable final Color color) {
+            @NotNull final List<Rasterizer.Operation> added = this.sink.getOperations();
+            if (!added.isEmpty()) {
+                @NotNull final Rectangle2D bounds = new Rectangle2D.Double();
+                bounds.setRect(added.get(0).getBounds());
+                for (@NotNull final Rasterizer.Operation operation : added) {
+                    Rectangle2D.union(bounds, operation.getBounds(), bounds);
+                }
+                this.primitives.add(new Primitive(bounds, new ArrayList<>(added), color));
+                added.clear();
+            }
+        }
+
+        /**
+         * Gets the color of a primitive, preferring its fill to its stroke.
+         */
+        @Nullable
+        private static Color getColor(@Nullable final String fill, @Nullable final String stroke) {
+            @Nullable final Color fillColor = Rasterizer.getColor(fill, Color.BLACK);
+            return fillColor != null ? fillColor : Rasterizer.getColor(stroke, null);
+        }
+
+        @Override
+        public void begin(@NotNull final Drawing drawing, final int width, final int height) {
+            this.sink.begin(drawing, width, height);
+            this.primitives.clear();
+        }
+
+        @Override
+        public void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                           @Nullable final String stroke) {
+            this.sink.circle(cx, cy, radius, fill, stroke);
+            this.record(Recorder.getColor(fill, stroke));
+        }
+
+        @Override
+        public void rectangle(final double x, final double y, final double width, final double height,
+                              @Nullable final String fill, @Nullable final String stroke) {
+            this.sink.rectangle(x, y, width, height, fill, stroke);
+            this.record(Recorder.getColor(fill, stroke));
+        }
+
+        @Override
+        public void line(final double x1, final double y1, final double x2, final double y2,
+                         @NotNull final String stroke, final double thickness,
+                         @Nullable final LineEnding lineEnding) {
+            this.sink.line(x1, y1, x2, y2, stroke, thickness, lineEnding);
+            this.record(Rasterizer.getColor(stroke, null));
+        }
+
+        @Override
+        public void text(final double x, final double y, @NotNull final String string, @Nullable final String fill,
+                         @Nullable final String stroke) {
+            this.sink.text(x, y, string, fill, stroke);
+            this.record(Recorder.getColor(fill, stroke));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the protected API of DrawingFile.
+ */
+@DisplayName("DrawingFile - Protected API")
+public class DrawingFileTestProtected {
+
+    @Test
+    @DisplayName("When a Shape at the end of a long chain of neighbors is read, then the chain is read without overflowing the stack")
+    void whenAShapeAtTheEndOfALongChainOfNeighborsIsReadThenTheChainIsReadWithoutOverflowingTheStack()
+            throws IOException {
+        @NotNull final List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            @NotNull final Rectangle rectangle = new Rectangle();
+            if (i > 0) {
+                rectangle.setRightOf(shapes.get(i - 1));
+            }
+            shapes.add(rectangle);
+        }
+        @NotNull final Drawing drawing = new Drawing();
+        // Adding the Shapes one by one would lay the whole Drawing out again after each of them
+        drawing.restore(shapes, null, null);
+
+        @NotNull final DrawingFile file = DrawingFile.read(DrawingFile.toBytes(drawing));
+        @NotNull final Shape last = file.getShape(19999);
+        then(last.getRightOf()).isSameAs(file.getShape(19998));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the protected API of Drawings.
+ */
+@DisplayName("Drawing - Protected API")
+public class DrawingTestProtected {
+
+    @Test
+    @DisplayName("When a large Drawing is rendered in parallel, then its SVG is identical to rendering each Shape in turn")
+    void whenALargeDrawingIsRenderedInParallelThenItsSVGIsIdenticalToRenderingEachShapeInTurn() {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final List<Shape> shapes = new ArrayList<>();
+        @NotNull final Random random = new Random(11);
+        @NotNull final String[] fills = {"red", "green", "blue"};
+        @NotNull final LineEnding.Type[] types = LineEnding.Type.values();
+        Shape previous = null;
+        for (int i = 0; i < 5000; i++) {
+            @NotNull final Shape shape;
+            if (i % 7 == 0) {
+                @NotNull final Line line = new Line();
+                line.addLineEnding(LineEnding.newInstance(types[random.nextInt(types.length)]));
+                shape = line;
+            } else if (i % 2 == 0) {
+                shape = new Circle();
+            } else {
+                shape = new Rectangle();
+            }
+            shape.setFill(fills[random.nextInt(fills.length)]);
+            if (previous != null) {
+                shape.setRightOf(previous);
+            }
+            drawing.add(shape);
+            shapes.add(shape);
+            previous = shape;
+        }
+        @NotNull final String svg = drawing.getSVG(5000, 100);
+
+        @NotNull final SVGContext context = new SVGContext();
+        @NotNull final StringBuilder body = new StringBuilder();
+        for (@NotNull final Shape shape : shapes) {
+            body.append(shape.getSVG(context));
+        }
+        then(svg).endsWith(context.getDefs() + body + "</svg>");
+    }
+
+    @Test
+    @DisplayName("When a Drawing is rendered with symbols, then its Shapes and their cached SVG are left untouched")
+    void whenADrawingIsRenderedWithSymbolsThenItsShapesAndTheirCachedSVGAreLeftUntouched() {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle1 = new Circle();
+        @NotNull final Circle circle2 = new Circle();
+        circle2.setRightOf(circle1);
+        drawing.add(circle1);
+        drawing.add(circle2);
+        drawing.setSymbols(true);
+        drawing.getSVG(200, 100);
+        @NotNull final Number x = circle2.getExplicitXPositionCenter();
+        @NotNull final String fragment = circle2.getSVGFragment(new SVGContext());
+
+        drawing.getSVG();
+
+        then(circle2.getExplicitXPositionCenter()).isSameAs(x);
+        then(circle2.getSVGFragment(new SVGContext())).isSameAs(fragment);
+    }
+}
@@ -1,10 +1,12 @@
 package com.aarrelaakso.drawl;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -26,15 +28,81 @@ public class LineEndingTestProtected {
         then(ACTUAL).isEqualTo(EXPECTED);
     }
 
-    @DisplayName("When a LineEnding is created, then it has a unique ID")
+    @DisplayName("When LineEndings with different settings are drawn, then each marker has a unique ID")
     @ParameterizedTest
     @EnumSource(LineEnding.Type.class)
-    void whenALineEndingIsCreatedThenItHasAUniqueID(LineEnding.Type type) {
+    void whenLineEndingsWithDifferentSettingsAreDrawnThenEachMarkerHasAUniqueID(LineEnding.Type type) {
+        final SVGContext context = new SVGContext();
         HashSet<String> uniqueIds = new HashSet<String>();
+        for (String fill : new String[]{"red", "green", "blue"}) {
+            final LineEnding lineEnding = LineEnding.newInstance(type);
+            lineEnding.setFill(fill);
+            String uniqueId = context.addMarker(lineEnding, 1.0);
+            then(uniqueId).isNotIn(uniqueIds);
+            uniqueIds.add(uniqueId);
+        }
+    }
+
+    @DisplayName("When a LineEnding is drawn in two renderings, then its marker has the same ID in both")
+    @ParameterizedTest
+    @EnumSource(LineEnding.Type.class)
+    void whenALineEndingIsDrawnInTwoRenderingsThenItsMarkerHasTheSameIDInBoth(LineEnding.Type type) {
+        final LineEnding lineEnding = LineEnding.newInstance(type);
+        lineEnding.setFill("red");
+        final String id = new SVGContext().addMarker(lineEnding, 1.0);
+        then(new SVGContext().addMarker(lineEnding, 1.0)).isEqualTo(id);
+    }
+
+    @DisplayName("When two LineEndings have the same settings, then their markers differ only in id")
+    @ParameterizedTest
+    @EnumSource(LineEnding.Type.class)
+    void whenTwoLineEndingsHaveTheSameSettingsThenTheirMarkersDifferOnlyInId(LineEnding.Type type) {
+        final LineEnding lineEnding1 = LineEnding.newInstance(type);
+        final LineEnding lineEnding2 = LineEnding.newInstance(type);
+        lineEnding1.setSize(1.5);
+        lineEnding2.setSize(1.5);
+        then(lineEnding2.getSVGMarker("b", 2.0)).isEqualTo(lineEnding1.getSVGMarker("a", 1.0).replace("'a'", "'b'"));
+    }
+
+    @DisplayName("When a LineEnding changes after its marker was drawn, then its marker reflects the change")
+    @ParameterizedTest
+    @EnumSource(LineEnding.Type.class)
+    void whenALineEndingChangesAfterItsMarkerWasDrawnThenItsMarkerReflectsTheChange(LineEnding.Type type) {
         final LineEnding lineEnding = LineEnding.newInstance(type);
-        String uniqueId = lineEnding.getUniqueId();
-        then(uniqueId).isNotIn(uniqueIds);
-        uniqueIds.add(uniqueId);
+        final String before = lineEnding.getSVGMarker("a", 1.0);
+        lineEnding.setFill("red");
+        final String after = lineEnding.getSVGMarker("a", 1.0);
+        then(after).isNotEqualTo(before);
+        then(after).contains("fill='red'");
     }
 
+
+    @DisplayName("When a subclass adds state to its marker key, then its markers are not shared with other instances")
+    @Test
+    void whenASubclassAddsStateToItsMarkerKeyThenItsMarkersAreNotSharedWithOtherInstances() {
+        class Notched extends LineEndingTriangle {
+            private final int notches;
+
+            Notched(int notches) {
+                this.notches = notches;
+            }
+
+            @Override
+            protected String getSVG() {
+                return super.getSVG() + " data-notches='" + this.notches + "'";
+            }
+
+            @Override
+            protected List<Object> getMarkerKey() {
+                List<Object> key = new ArrayList<>(super.getMarkerKey());
+                key.add(this.notches);
+                return key;
+            }
+        }
+        then(new Notched(1).getSVGMarker("a", 1.0)).contains("data-notches='1'");
+        then(new Notched(2).getSVGMarker("a", 1.0)).contains("data-notches='2'");
+        then(LineEnding.newInstance(LineEnding.Type.TRIANGLE).getSVGMarker("a", 1.0)).doesNotContain("data-notches");
+        final SVGContext context = new SVGContext();
+        then(context.addMarker(new Notched(1), 1.0)).isNotEqualTo(context.addMarker(new Notched(2), 1.0));
+    }
 }
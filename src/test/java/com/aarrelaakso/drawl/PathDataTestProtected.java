@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the protected API of PathData.
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+@DisplayName("PathData - Protected API")
+public class PathDataTestProtected {
+
+    @Test
+    @DisplayName("When numbers are formatted, then they have no trailing .0 and no leading zero")
+    void whenNumbersAreFormattedThenTheyHaveNoTrailingZeroAndNoLeadingZero(@NotNull final BDDSoftAssertions softly) {
+        softly.then(PathData.format(7.0)).isEqualTo("7");
+        softly.then(PathData.format(-0.0)).isEqualTo("0");
+        softly.then(PathData.format(0.5)).isEqualTo(".5");
+        softly.then(PathData.format(-0.25)).isEqualTo("-.25");
+        softly.then(PathData.format(3.8284271247461903)).isEqualTo("3.828427");
+    }
+
+    @Test
+    @DisplayName("When a line is horizontal or vertical, then it uses H or V")
+    void whenALineIsHorizontalOrVerticalThenItUsesHOrV() {
+        @NotNull final PathData pathData = new PathData().moveTo(1, 1).lineTo(1, 7).lineTo(2, 7).lineTo(2, 1)
+                .closePath();
+        then(pathData.toString()).isEqualTo("M1,1V7H2V1z");
+    }
+
+    @Test
+    @DisplayName("When the same command repeats, then its letter is written once")
+    void whenTheSameCommandRepeatsThenItsLetterIsWrittenOnce() {
+        @NotNull final PathData pathData = new PathData().moveTo(1, 1).lineTo(4, 4).lineTo(1, 7).lineTo(7, 4)
+                .closePath();
+        then(pathData.toString()).isEqualTo("M1,1 4,4 1,7 7,4z");
+    }
+
+    @Test
+    @DisplayName("When relative coordinates are shorter, then they are used, without separators before negatives")
+    void whenRelativeCoordinatesAreShorterThenTheyAreUsed() {
+        @NotNull final PathData pathData = new PathData().moveTo(1000, 1000).lineTo(1010, 1020)
+                .lineTo(1005, 1010);
+        then(pathData.toString()).isEqualTo("M1000,1000l10,20-5-10");
+    }
+
+    @Test
+    @DisplayName("When a path starts, then its first moveto is absolute")
+    void whenAPathStartsThenItsFirstMovetoIsAbsolute() {
+        then(new PathData().moveTo(0, 0).toString()).isEqualTo("M0,0");
+    }
+}
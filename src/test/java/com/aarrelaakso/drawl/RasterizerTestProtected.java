@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the protected API of the Rasterizer.
+ */
+@DisplayName("Rasterizer - Protected API")
+public class RasterizerTestProtected {
+
+    @Test
+    @DisplayName("When an SVG paint is converted, then it gives the same color as in a browser")
+    void whenAnSVGPaintIsConvertedThenItGivesTheSameColorAsInABrowser() {
+        then(Rasterizer.getColor("red", null)).isEqualTo(Color.RED);
+        then(Rasterizer.getColor("CornflowerBlue", null)).isEqualTo(new Color(0x6495ed));
+        then(Rasterizer.getColor("#0f0", null)).isEqualTo(Color.GREEN);
+        then(Rasterizer.getColor("#123456", null)).isEqualTo(new Color(0x123456));
+        then(Rasterizer.getColor("rgb(1, 2, 3)", null)).isEqualTo(new Color(1, 2, 3));
+        then(Rasterizer.getColor("none", Color.BLACK)).isNull();
+        then(Rasterizer.getColor(null, Color.BLACK)).isEqualTo(Color.BLACK);
+        then(Rasterizer.getColor("#nonsense", Color.BLACK)).isEqualTo(Color.BLACK);
+    }
+
+    @Test
+    @DisplayName("When a Drawing is rasterized in tiles, then the image is identical to painting it in one pass")
+    void whenADrawingIsRasterizedInTilesThenTheImageIsIdenticalToPaintingItInOnePass() {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Random random = new Random(5);
+        @NotNull final String[] fills = {"red", "green", "blue"};
+        @NotNull final LineEnding.Type[] types = LineEnding.Type.values();
+        Shape previous = null;
+        for (int i = 0; i < 40; i++) {
+            @NotNull final Shape shape;
+            if (i % 3 == 0) {
+                @NotNull final Line line = new Line();
+                line.setThickness(3);
+                line.addLineEnding(LineEnding.newInstance(types[random.nextInt(types.length)]));
+                shape = line;
+            } else if (i % 2 == 0) {
+                shape = new Circle();
+            } else {
+                shape = new Rectangle();
+                shape.setStroke("black");
+            }
+            shape.setFill(fills[random.nextInt(fills.length)]);
+            if (previous != null) {
+                if (i % 2 == 0) {
+                    shape.setRightOf(previous);
+                } else {
+                    shape.setBelow(previous);
+                }
+            }
+            drawing.add(shape);
+            previous = shape;
+        }
+        @NotNull final ImageSink sink = new ImageSink();
+        drawing.render(700, 600, sink);
+        @NotNull final BufferedImage tiled = sink.getImage();
+        @NotNull final BufferedImage whole = Rasterizer.rasterizeTile(sink.getOperations(), 0, 0, 700, 600);
+
+        for (int y = 0; y < 600; y++) {
+            for (int x = 0; x < 700; x++) {
+                if (tiled.getRGB(x, y) != whole.getRGB(x, y)) {
+                    then(tiled.getRGB(x, y)).as("pixel (%d, %d)", x, y).isEqualTo(whole.getRGB(x, y));
+                    return;
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(LineEnding.Type.class)
+    @DisplayName("When a LineEnding is painted, then its marker is drawn around the end of the Line")
+    void whenALineEndingIsPaintedThenItsMarkerIsDrawnAroundTheEndOfTheLine(@NotNull final LineEnding.Type type) {
+        @NotNull final BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        @NotNull final Graphics2D graphics = image.createGraphics();
+        Rasterizer.paintMarker(graphics, LineEnding.newInstance(type), 0, 50, 50, 50, 5, Color.BLACK);
+        graphics.dispose();
+
+        int painted = 0;
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                if (image.getRGB(x, y) >>> 24 != 0) {
+                    then(Math.hypot(x - 50, y - 50)).isLessThan(60);
+                    painted++;
+                }
+            }
+        }
+        then(painted).isGreaterThan(0);
+    }
+
+    @Test
+    @DisplayName("When a marker is filled with context-stroke, then it is painted in the color of its Line")
+    void whenAMarkerIsFilledWithContextStrokeThenItIsPaintedInTheColorOfItsLine() {
+        @NotNull final LineEnding lineEnding = LineEnding.newInstance(LineEnding.Type.TRIANGLE);
+        lineEnding.setFill(LineEnding.CONTEXT_STROKE);
+        @NotNull final BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        @NotNull final Graphics2D graphics = image.createGraphics();
+        Rasterizer.paintMarker(graphics, lineEnding, 0, 50, 50, 50, 5, Color.RED);
+        graphics.dispose();
+
+        then(image.getRGB(50, 50)).isEqualTo(Color.RED.getRGB());
+    }
+
+    @Test
+    @DisplayName("When a display list is rasterized in tiles, then each operation is painted only into the tiles it reaches")
+    void whenADisplayListIsRasterizedInTilesThenEachOperationIsPaintedOnlyIntoTheTilesItReaches() {
+        @NotNull final AtomicInteger bounded = new AtomicInteger();
+        @NotNull final AtomicInteger unbounded = new AtomicInteger();
+
+        Rasterizer.rasterize(Arrays.asList(
+                new Rasterizer.Operation(new Rectangle2D.Double(300, 300, 10, 10), graphics -> bounded.incrementAndGet()),
+                new Rasterizer.Operation(null, graphics -> unbounded.incrementAndGet())), 512, 512);
+
+        then(bounded.get()).isEqualTo(1);
+        then(unbounded.get()).isEqualTo(4);
+    }
+}
@@ -308,4 +308,64 @@ public abstract class ShapeTestProtected {
             softly.then(leftPort.getY()).isEqualTo(DrawlNumber.HALF.negate());
         }
     }
+
+    /**
+     * Tests the reuse of the SVG generated for Shapes
+     */
+    @Nested
+    @DisplayName("SVG fragments")
+    class SVGFragments {
+
+        @BeforeEach
+        void setUp() {
+            shape1.setExplicitWidth(DrawlNumber.valueOf(10));
+            shape1.setExplicitHeight(DrawlNumber.valueOf(10));
+        }
+
+        @Test
+        @DisplayName("When a Shape has not changed, then its SVG is reused")
+        void whenAShapeHasNotChangedThenItsSVGIsReused() {
+            @NotNull final String svg = shape1.getSVGFragment(new SVGContext());
+            shape1.setExplicitXPositionCenter(DrawlNumber.ZERO);
+            shape1.setFill(null);
+            then(shape1.getSVGFragment(new SVGContext())).isSameAs(svg);
+        }
+
+        @Test
+        @DisplayName("When a Shape changes its fill, then its SVG is regenerated")
+        void whenAShapeChangesItsFillThenItsSVGIsRegenerated() {
+            shape1.getSVGFragment(new SVGContext());
+            shape1.setFill("red");
+            then(shape1.getSVGFragment(new SVGContext())).contains("fill='red'");
+        }
+
+        @Test
+        @DisplayName("When a Shape moves, then its SVG is regenerated")
+        void whenAShapeMovesThenItsSVGIsRegenerated() {
+            @NotNull final String svg = shape1.getSVGFragment(new SVGContext());
+            shape1.setExplicitXPositionCenter(DrawlNumber.valueOf(17));
+            then(shape1.getSVGFragment(new SVGContext())).isNotEqualTo(svg);
+        }
+
+        @Test
+        @DisplayName("When the Text of a Shape changes, then the SVG of the Shape is regenerated")
+        void whenTheTextOfAShapeChangesThenTheSVGOfTheShapeIsRegenerated() {
+            @NotNull final Text text = new Text("before");
+            shape1.addText(text);
+            shape1.setExplicitWidth(DrawlNumber.valueOf(20));
+            shape1.setExplicitHeight(DrawlNumber.valueOf(20));
+            then(shape1.getSVGFragment(new SVGContext())).contains(">before</text>");
+            text.setString("after");
+            then(shape1.getSVGFragment(new SVGContext())).contains(">after</text>");
+        }
+
+        @Test
+        @DisplayName("When the rendering is minified, then the SVG is regenerated")
+        void whenTheRenderingIsMinifiedThenTheSVGIsRegenerated() {
+            @NotNull final String svg = shape1.getSVGFragment(new SVGContext());
+            @NotNull final SVGContext context = new SVGContext();
+            context.setMinified(true);
+            then(shape1.getSVGFragment(context)).isNotEqualTo(svg).doesNotContain(" />");
+        }
+    }
 }
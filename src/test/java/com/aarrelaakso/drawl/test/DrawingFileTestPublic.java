@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.DrawingFile;
+import com.aarrelaakso.drawl.Line;
+import com.aarrelaakso.drawl.LineEnding;
+import com.aarrelaakso.drawl.Rectangle;
+import com.aarrelaakso.drawl.Shape;
+import com.aarrelaakso.drawl.Text;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of saving and loading Drawings in the binary format.
+ */
+@DisplayName("DrawingFile - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class DrawingFileTestPublic {
+
+    @NotNull
+    private static Drawing createDrawing() {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        circle.addText(new Text("Circle"));
+        @NotNull final Rectangle rectangle = new Rectangle(2.0);
+        rectangle.setStroke("blue");
+        rectangle.setRightOf(circle);
+        @NotNull final Line line = new Line();
+        line.setThickness(3);
+        @NotNull final LineEnding lineEnding = LineEnding.newInstance(LineEnding.Type.KITE);
+        lineEnding.setFill("green");
+        line.addLineEnding(lineEnding);
+        line.setBelow(rectangle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        drawing.add(line);
+        return drawing;
+    }
+
+    @Test
+    @DisplayName("When a laid-out Drawing is saved and loaded, then it renders the same SVG without being laid out")
+    void whenALaidOutDrawingIsSavedAndLoadedThenItRendersTheSameSVGWithoutBeingLaidOut(@TempDir final Path directory)
+            throws IOException {
+        @NotNull final Drawing drawing = DrawingFileTestPublic.createDrawing();
+        drawing.setMinified(true);
+        drawing.setIdPrefix("a-");
+        @NotNull final String svg = drawing.getSVG(300, 200);
+        @NotNull final String filename = directory.resolve("drawing.drawl").toString();
+        drawing.writeToDrawlFile(filename);
+
+        @NotNull final Drawing loaded = DrawingFile.open(filename).getDrawing();
+        then(loaded.isMinified()).isTrue();
+        then(loaded.getIdPrefix()).isEqualTo("a-");
+        then(loaded.getSVG()).isEqualTo(svg);
+    }
+
+    @Test
+    @DisplayName("When a loaded Drawing is given new dimensions, then it is laid out as the original would be")
+    void whenALoadedDrawingIsGivenNewDimensionsThenItIsLaidOutAsTheOriginalWouldBe(@TempDir final Path directory)
+            throws IOException {
+        @NotNull final Drawing drawing = DrawingFileTestPublic.createDrawing();
+        @NotNull final String filename = directory.resolve("drawing.drawl").toString();
+        drawing.writeToDrawlFile(filename);
+
+        then(DrawingFile.open(filename).getDrawing().getSVG(600, 150)).isEqualTo(drawing.getSVG(600, 150));
+    }
+
+    @Test
+    @DisplayName("When one Shape is read from a file, then it comes with its Text and its neighbors")
+    void whenOneShapeIsReadFromAFileThenItComesWithItsTextAndItsNeighbors(@TempDir final Path directory,
+                                                                          @NotNull final BDDSoftAssertions softly)
+            throws IOException {
+        @NotNull final Drawing drawing = DrawingFileTestPublic.createDrawing();
+        drawing.setExplicitDimensions(300, 200);
+        @NotNull final String filename = directory.resolve("drawing.drawl").toString();
+        drawing.writeToDrawlFile(filename);
+
+        @NotNull final DrawingFile file = DrawingFile.open(filename);
+        softly.then(file.getLength()).isEqualTo(3);
+        @NotNull final Shape rectangle = file.getShape(1);
+        softly.then(rectangle).isInstanceOf(Rectangle.class);
+        softly.then(rectangle.getStroke()).isEqualTo("blue");
+        softly.then(rectangle.getRightOf()).isSameAs(file.getShape(0));
+        softly.then(file.getShape(0).getText()).hasToString("Circle");
+        softly.then(file.getShape(2).getBelow()).isSameAs(rectangle);
+        softly.then(file.getDrawing().getLength()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("When a file is not in the binary format, then opening it throws an IOException")
+    void whenAFileIsNotInTheBinaryFormatThenOpeningItThrowsAnIOException(@TempDir final Path directory,
+                                                                          @NotNull final BDDSoftAssertions softly)
+            throws IOException {
+        @NotNull final Path svg = directory.resolve("drawing.svg");
+        Files.write(svg, "<svg xmlns='http://www.w3.org/2000/svg'></svg>".getBytes());
+        softly.then(catchThrowable(() -> DrawingFile.open(svg.toString()))).isInstanceOf(IOException.class)
+                .hasMessage("Not a Drawl file");
+
+        @NotNull final Path drawl = directory.resolve("drawing.drawl");
+        DrawingFileTestPublic.createDrawing().writeToDrawlFile(drawl.toString());
+        @NotNull final byte[] bytes = Files.readAllBytes(drawl);
+        bytes[5] = 99;
+        softly.then(catchThrowable(() -> DrawingFile.read(bytes))).isInstanceOf(IOException.class)
+                .hasMessage("Unsupported Drawl file version: 99");
+    }
+
+    @Test
+    @DisplayName("When a file is corrupt, then reading it throws an IOException")
+    void whenAFileIsCorruptThenReadingItThrowsAnIOException(@TempDir final Path directory,
+                                                            @NotNull final BDDSoftAssertions softly)
+            throws IOException {
+        @NotNull final Path drawl = directory.resolve("drawing.drawl");
+        DrawingFileTestPublic.createDrawing().writeToDrawlFile(drawl.toString());
+        @NotNull final byte[] bytes = Files.readAllBytes(drawl);
+
+        // The number of strings follows the magic number, version, flags, dimensions, marker library and id prefix
+        @NotNull final byte[] hugeTable = bytes.clone();
+        ByteBuffer.wrap(hugeTable).putInt(32, Integer.MAX_VALUE);
+        softly.then(catchThrowable(() -> DrawingFile.read(hugeTable))).isInstanceOf(IOException.class)
+                .hasMessageStartingWith("Corrupt Drawl file");
+
+        @NotNull final byte[] badOffset = bytes.clone();
+        ByteBuffer.wrap(badOffset).putInt(36, bytes.length);
+        softly.then(catchThrowable(() -> DrawingFile.read(badOffset))).isInstanceOf(IOException.class)
+                .hasMessageStartingWith("Corrupt Drawl file");
+
+        @NotNull final DrawingFile truncated = DrawingFile.read(Arrays.copyOf(bytes, bytes.length - 8));
+        softly.then(catchThrowable(truncated::getDrawing)).isInstanceOf(IOException.class)
+                .hasMessageStartingWith("Corrupt Drawl file");
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.DrawingRenderer;
+import com.aarrelaakso.drawl.Rectangle;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of the concurrent batch renderer.
+ */
+@DisplayName("DrawingRenderer - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class DrawingRendererTestPublic {
+
+    @NotNull
+    private static Drawing createDrawing(final int size) {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        @NotNull final Rectangle rectangle = new Rectangle((double) size);
+        rectangle.setRightOf(circle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        return drawing;
+    }
+
+    @Test
+    @DisplayName("When many Drawings are submitted, then each future completes with the SVG of its Drawing")
+    void whenManyDrawingsAreSubmittedThenEachFutureCompletesWithTheSVGOfItsDrawing()
+            throws ExecutionException, InterruptedException {
+        @NotNull final List<CompletableFuture<String>> futures = new ArrayList<>();
+        try (@NotNull final DrawingRenderer renderer = DrawingRenderer.withVirtualThreads(4)) {
+            for (int i = 1; i <= 50; i++) {
+                final int size = i;
+                futures.add(renderer.submitSVG(() -> DrawingRendererTestPublic.createDrawing(size), 300, 100));
+            }
+        }
+        for (int i = 1; i <= 50; i++) {
+            then(futures.get(i - 1).get()).isEqualTo(DrawingRendererTestPublic.createDrawing(i).getSVG(300, 100));
+        }
+    }
+
+    @Test
+    @DisplayName("When more jobs are submitted than may be in flight, then the rest wait in the queue")
+    void whenMoreJobsAreSubmittedThanMayBeInFlightThenTheRestWaitInTheQueue(@NotNull final BDDSoftAssertions softly) {
+        @NotNull final List<Runnable> tasks = new ArrayList<>();
+        @NotNull final DrawingRenderer renderer = new DrawingRenderer(tasks::add, 2);
+        @NotNull final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(renderer.submitSVG(() -> DrawingRendererTestPublic.createDrawing(1), 200, 100));
+        }
+        softly.then(renderer.getInFlightCount()).isEqualTo(2);
+        softly.then(renderer.getQueueDepth()).isEqualTo(3);
+        softly.then(tasks).hasSize(2);
+
+        tasks.get(0).run();
+        softly.then(futures.get(0)).isCompleted();
+        softly.then(renderer.getInFlightCount()).isEqualTo(2);
+        softly.then(renderer.getQueueDepth()).isEqualTo(2);
+        softly.then(tasks).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("When a Drawing cannot be built, then its future completes exceptionally")
+    void whenADrawingCannotBeBuiltThenItsFutureCompletesExceptionally() {
+        @NotNull final CompletableFuture<String> future;
+        try (@NotNull final DrawingRenderer renderer = new DrawingRenderer(1)) {
+            future = renderer.submitSVG(() -> {
+                throw new IllegalStateException("No data");
+            }, 100, 100);
+        }
+        @NotNull final Throwable thrown = catchThrowable(future::get);
+        then(thrown).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
@@ -1,9 +1,34 @@
 package com.aarrelaakso.drawl.test;
 
+import com.aarrelaakso.drawl.Circle;
 import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.Line;
+import com.aarrelaakso.drawl.LineEnding;
+import com.aarrelaakso.drawl.Measure;
+import com.aarrelaakso.drawl.Rectangle;
+import com.aarrelaakso.drawl.Shape;
+import com.aarrelaakso.drawl.Text;
+import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -43,4 +68,586 @@ public class DrawingTestPublic
         assertTrue(svg.indexOf("height='100'") > -1);
     }
 
+    @Test
+    @DisplayName("SVG: When style classes are on, then Shapes that share a style share one CSS class")
+    void whenStyleClassesAreOnThenShapesThatShareAStyleShareOneCSSClass() {
+        this.drawing.setStyleClasses(true);
+        Circle previous = null;
+        for (int i = 0; i < 4; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill("red");
+            circle.setStroke("blue");
+            if (previous != null) {
+                circle.setRightOf(previous);
+            }
+            this.drawing.add(circle);
+            previous = circle;
+        }
+        @NotNull final Rectangle rectangle = new Rectangle(1.0);
+        rectangle.setFill("white");
+        rectangle.setBelow(previous);
+        this.drawing.add(rectangle);
+        @NotNull final String svg = this.drawing.getSVG(100, 100);
+
+        then(svg).contains("{fill:red;stroke:blue}");
+        then(svg).contains("{fill:white}");
+        then(StringUtils.countMatches(svg, "{")).isEqualTo(2);
+        then(StringUtils.countMatches(svg, "class='s")).isEqualTo(5);
+        then(svg).doesNotContain("fill='");
+        then(svg).doesNotContain("stroke='");
+    }
+
+    @Test
+    @DisplayName("SVG: When style classes are on, then a Line's stroke width goes into its class")
+    void whenStyleClassesAreOnThenALinesStrokeWidthGoesIntoItsClass() {
+        this.drawing.setStyleClasses(true);
+        @NotNull final Line line = new Line();
+        line.setThickness(3);
+        this.drawing.add(line);
+        @NotNull final String svg = this.drawing.getSVG(100, 100);
+
+        then(svg).contains("<style>.s0{stroke:black;stroke-width:3}</style>");
+        then(svg).contains("class='s0'");
+        then(svg).doesNotContain("stroke-width='");
+    }
+
+    @Test
+    @DisplayName("SVG: When symbols are on, then repeated Shapes are drawn as uses of one symbol")
+    void whenSymbolsAreOnThenRepeatedShapesAreDrawnAsUsesOfOneSymbol() {
+        this.drawing.setSymbols(true);
+        Circle previous = null;
+        for (int i = 0; i < 3; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill("yellow");
+            circle.addText(new Text("A"));
+            if (previous != null) {
+                circle.setRightOf(previous);
+            }
+            this.drawing.add(circle);
+            previous = circle;
+        }
+        @NotNull final Circle different = new Circle();
+        different.addText(new Text("B"));
+        different.setBelow(previous);
+        this.drawing.add(different);
+        @NotNull final String svg = this.drawing.getSVG(300, 200);
+
+        then(StringUtils.countMatches(svg, "<symbol ")).isEqualTo(1);
+        then(svg).contains("xmlns:xlink='http://www.w3.org/1999/xlink'");
+        then(StringUtils.countMatches(svg, "<use xlink:href='#u0'")).isEqualTo(3);
+        then(svg).contains("<use xlink:href='#u0' x='50' y='50' />");
+        then(svg).contains("<use xlink:href='#u0' x='150' y='50' />");
+        then(svg).contains("<symbol id='u0' overflow='visible'><circle r='50' cx='0' cy='0' fill='yellow' />"
+                + "<text x='0' y='0' dominant-baseline='middle' text-anchor='middle'>A</text></symbol>");
+        then(StringUtils.countMatches(svg, ">A</text>")).isEqualTo(1);
+        then(svg).contains(">B</text>");
+    }
+
+    @Test
+    @DisplayName("SVG: When path coalescing is on, then same-styled Lines are drawn as one path")
+    void whenPathCoalescingIsOnThenSameStyledLinesAreDrawnAsOnePath() {
+        this.drawing.setPathCoalescing(true);
+        Line previous = null;
+        for (int i = 0; i < 3; i++) {
+            @NotNull final Line line = new Line(Line.Orientation.HORIZONTAL);
+            line.setStroke("green");
+            if (previous != null) {
+                line.setBelow(previous, new Measure(1));
+            }
+            this.drawing.add(line);
+            previous = line;
+        }
+        @NotNull final String svg = this.drawing.getSVG(100, 100);
+
+        then(svg).doesNotContain("<line");
+        then(StringUtils.countMatches(svg, "<path ")).isEqualTo(1);
+        then(StringUtils.countMatches(svg, "M")).isEqualTo(3);
+        then(svg).contains("stroke='green' stroke-width='1' />");
+    }
+
+    @Test
+    @DisplayName("SVG: When path coalescing is on, then same-styled Circles are drawn as arcs in one path")
+    void whenPathCoalescingIsOnThenSameStyledCirclesAreDrawnAsArcsInOnePath() {
+        this.drawing.setPathCoalescing(true);
+        @NotNull final Circle circle1 = new Circle();
+        @NotNull final Circle circle2 = new Circle();
+        circle1.setFill("red");
+        circle2.setFill("red");
+        circle2.setRightOf(circle1);
+        this.drawing.add(circle1);
+        this.drawing.add(circle2);
+        @NotNull final String svg = this.drawing.getSVG(200, 100);
+
+        then(svg).doesNotContain("<circle");
+        // Each subpath is relative to the one before
+        then(svg).contains(
+                "<path d='M0,50a50,50 0 1 1 100,0A50,50 0 1 1 0,50zm100,0a50,50 0 1 1 100,0 50,50 0 1 1-100,0z'");
+        then(svg).contains("' fill='red' />");
+    }
+
+    @Test
+    @DisplayName("SVG: When path coalescing is on, then a Shape with a different style is drawn on its own")
+    void whenPathCoalescingIsOnThenAShapeWithADifferentStyleIsDrawnOnItsOwn() {
+        this.drawing.setPathCoalescing(true);
+        @NotNull final Circle circle1 = new Circle();
+        @NotNull final Circle circle2 = new Circle();
+        circle1.setFill("red");
+        circle2.setFill("blue");
+        circle2.setRightOf(circle1);
+        this.drawing.add(circle1);
+        this.drawing.add(circle2);
+        @NotNull final String svg = this.drawing.getSVG(200, 100);
+
+        then(svg).doesNotContain("<path");
+        then(StringUtils.countMatches(svg, "<circle")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("SVG: When minified, then there is no declaration, whitespace between elements or default attribute")
+    void whenMinifiedThenThereIsNoDeclarationWhitespaceOrDefaultAttribute() {
+        this.drawing.setMinified(true);
+        @NotNull final Line line = new Line(Line.Orientation.HORIZONTAL);
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.TRIANGLE));
+        this.drawing.add(line);
+        @NotNull final String svg = this.drawing.getSVG(100, 100);
+
+        then(svg).startsWith("<svg xmlns='http://www.w3.org/2000/svg' width='100' height='100'><defs><marker ");
+        then(svg).doesNotContain(System.getProperty("line.separator"));
+        then(svg).doesNotContain(" />");
+        then(svg).contains("<line y1='50' x2='100' y2='50' stroke='black' marker-end='url(#TRIANGLE-");
+        then(svg).endsWith(")'/></svg>");
+    }
+
+    @Test
+    @DisplayName("SVG: When minified, then Shapes leave out default fills and coordinates")
+    void whenMinifiedThenShapesLeaveOutDefaultFillsAndCoordinates() {
+        this.drawing.setMinified(true);
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setFill("black");
+        rectangle.setStroke("red");
+        this.drawing.add(rectangle);
+        @NotNull final String svg = this.drawing.getSVG(100, 100);
+
+        then(svg).isEqualTo(
+                "<svg xmlns='http://www.w3.org/2000/svg' width='100' height='100'><rect width='100' height='100' "
+                        + "stroke='red'/></svg>");
+    }
+
+    @Test
+    @DisplayName("SVG: When an id prefix is set, then the generated ids and class names start with it")
+    void whenAnIdPrefixIsSetThenTheGeneratedIdsAndClassNamesStartWithIt() throws IOException {
+        this.drawing.setIdPrefix("chart1-");
+        this.drawing.setStyleClasses(true);
+        @NotNull final Line line = new Line(Line.Orientation.HORIZONTAL);
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.TRIANGLE));
+        this.drawing.add(line);
+        this.drawing.add(new Circle());
+        @NotNull final String svg = this.drawing.getSVG(100, 100);
+
+        then(svg).contains("<marker id='chart1-TRIANGLE-0'").contains("marker-end='url(#chart1-TRIANGLE-0)'");
+        then(svg).contains(".chart1-s0{").contains("class='chart1-s0'");
+
+        @NotNull final StringWriter progressive = new StringWriter();
+        this.drawing.writeProgressiveSVG(progressive, 100, 100);
+        then(progressive.toString()).contains("<g id='chart1-drawl-preview'>")
+                .contains("<style>#chart1-drawl-preview{display:none}</style>").doesNotContain("'drawl-preview'");
+        then(catchThrowable(() -> this.drawing.setIdPrefix("1 chart"))).isInstanceOf(IllegalArgumentException.class);
+        then(this.drawing.getIdPrefix()).isEqualTo("chart1-");
+    }
+
+    @Test
+    @DisplayName("SVG: When Shapes are added, then they are drawn in the order in which they were added")
+    void whenShapesAreAddedThenTheyAreDrawnInTheOrderInWhichTheyWereAdded() {
+        @NotNull final String[] fills = {"red", "green", "blue", "yellow", "black", "white", "gray", "orange"};
+        Circle previous = null;
+        for (@NotNull final String fill : fills) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill(fill);
+            if (previous != null) {
+                circle.setRightOf(previous);
+            }
+            this.drawing.add(circle);
+            previous = circle;
+        }
+        @NotNull final String svg = this.drawing.getSVG(800, 100);
+
+        int position = 0;
+        for (@NotNull final String fill : fills) {
+            final int next = svg.indexOf("fill='" + fill + "'");
+            then(next).isGreaterThan(position);
+            position = next;
+        }
+    }
+
+    @Test
+    @DisplayName("SVG: When element ids are on, then each Shape is in a group with a stable id")
+    void whenElementIdsAreOnThenEachShapeIsInAGroupWithAStableId() {
+        this.drawing.setElementIds(true);
+        @NotNull final Circle circle1 = new Circle();
+        @NotNull final Circle circle2 = new Circle();
+        circle2.setRightOf(circle1);
+        this.drawing.add(circle1);
+        this.drawing.add(circle2);
+        @NotNull final String svg = this.drawing.getSVG(200, 100);
+
+        then(svg).contains("<g id='defs'></g><g id='e0'><circle r='50' cx='50' cy='50' /></g>"
+                + "<g id='e1'><circle r='50' cx='150' cy='50' /></g></svg>");
+        then(this.drawing.getEpoch()).isEqualTo(1);
+        then(this.drawing.getSVG()).isEqualTo(svg);
+        then(this.drawing.getEpoch()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("SVG: When a Shape changes, then the patch from the previous epoch replaces only that Shape")
+    void whenAShapeChangesThenThePatchFromThePreviousEpochReplacesOnlyThatShape() {
+        this.drawing.setElementIds(true);
+        @NotNull final Circle circle1 = new Circle();
+        @NotNull final Circle circle2 = new Circle();
+        circle2.setRightOf(circle1);
+        this.drawing.add(circle1);
+        this.drawing.add(circle2);
+        this.drawing.getSVG(200, 100);
+        circle2.setFill("blue");
+
+        then(this.drawing.getSVGPatch(1))
+                .isEqualTo("{\"from\":1,\"to\":2,\"ops\":[[\"~\",\"e1\",\"<circle r='50' cx='150' cy='50' fill='blue' />\"]]}");
+        then(this.drawing.getSVGPatch(2)).isEqualTo("{\"from\":2,\"to\":3,\"ops\":[]}");
+    }
+
+    @Test
+    @DisplayName("SVG: When a LineEnding changes, then the patch replaces the definitions")
+    void whenALineEndingChangesThenThePatchReplacesTheDefinitions() {
+        this.drawing.setElementIds(true);
+        this.drawing.setMinified(true);
+        @NotNull final Line line = new Line();
+        @NotNull final LineEnding lineEnding = LineEnding.newInstance(LineEnding.Type.TRIANGLE);
+        line.addLineEnding(lineEnding);
+        this.drawing.add(line);
+        this.drawing.getSVG(100, 100);
+        lineEnding.setFill("red");
+
+        @NotNull final String patch = this.drawing.getSVGPatch(1);
+        then(patch).startsWith("{\"from\":1,\"to\":2,\"ops\":[[\"~\",\"defs\",\"<defs><marker id='TRIANGLE-");
+        then(patch).contains("fill='red'");
+        then(patch).doesNotContain("\"e0\"");
+    }
+
+    @Test
+    @DisplayName("SVG: When the epoch is not one of the recent renderings, then the patch replaces the whole drawing")
+    void whenTheEpochIsNotOneOfTheRecentRenderingsThenThePatchReplacesTheWholeDrawing() {
+        this.drawing.setElementIds(true);
+        this.drawing.add(new Circle());
+        this.drawing.getSVG(100, 100);
+        for (int i = 0; i < 16; i++) {
+            this.drawing.getSVG();
+        }
+
+        then(this.drawing.getSVGPatch(1)).startsWith("{\"from\":1,\"to\":18,\"ops\":[[\"=\",\"<?xml version='1.0'");
+        then(this.drawing.getSVGPatch(0)).startsWith("{\"from\":0,\"to\":19,\"ops\":[[\"=\",");
+    }
+
+    @Test
+    @DisplayName("SVG: When two clients follow a Drawing, then each gets a patch from its own epoch")
+    void whenTwoClientsFollowADrawingThenEachGetsAPatchFromItsOwnEpoch() {
+        this.drawing.setElementIds(true);
+        @NotNull final Circle circle1 = new Circle();
+        @NotNull final Circle circle2 = new Circle();
+        circle2.setRightOf(circle1);
+        this.drawing.add(circle1);
+        this.drawing.add(circle2);
+        this.drawing.getSVG(200, 100);
+        circle1.setFill("red");
+        this.drawing.getSVG();
+        circle2.setFill("blue");
+
+        then(this.drawing.getSVGPatch(2))
+                .isEqualTo("{\"from\":2,\"to\":3,\"ops\":[[\"~\",\"e1\",\"<circle r='50' cx='150' cy='50' fill='blue' />\"]]}");
+        then(this.drawing.getSVGPatch(1)).isEqualTo("{\"from\":1,\"to\":4,\"ops\":["
+                + "[\"~\",\"e0\",\"<circle r='50' cx='50' cy='50' fill='red' />\"],"
+                + "[\"~\",\"e1\",\"<circle r='50' cx='150' cy='50' fill='blue' />\"]]}");
+    }
+
+    @Test
+    @DisplayName("PNG: When a Drawing is written as PNG, then the image has its size and colors")
+    void whenADrawingIsWrittenAsPNGThenTheImageHasItsSizeAndColors() throws IOException {
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setFill("#00f");
+        rectangle.setRightOf(circle);
+        this.drawing.add(circle);
+        this.drawing.add(rectangle);
+        @NotNull final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        this.drawing.writePNG(png, 200, 100);
+
+        @NotNull final BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        then(image.getWidth()).isEqualTo(200);
+        then(image.getHeight()).isEqualTo(100);
+        then(image.getRGB(50, 50)).isEqualTo(0xffff0000);
+        then(image.getRGB(150, 50)).isEqualTo(0xff0000ff);
+        // Outside the circle, the background is transparent
+        then(image.getRGB(2, 2) >>> 24).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("PNG: When a large Drawing is rasterized, then the tiles are stitched without gaps")
+    void whenALargeDrawingIsRasterizedThenTheTilesAreStitchedWithoutGaps() {
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setFill("green");
+        this.drawing.add(rectangle);
+        @NotNull final BufferedImage image = this.drawing.getImage(1000, 1000);
+
+        then(image.getWidth()).isEqualTo(1000);
+        for (int i = 0; i < 1000; i += 7) {
+            then(image.getRGB(i, i)).isEqualTo(0xff008000);
+        }
+    }
+
+    @Test
+    @DisplayName("Progressive SVG: When a Drawing is written progressively, then the preview is flushed before any Shape")
+    void whenADrawingIsWrittenProgressivelyThenThePreviewIsFlushedBeforeAnyShape() throws IOException {
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setFill("blue");
+        rectangle.setRightOf(circle);
+        this.drawing.add(circle);
+        this.drawing.add(rectangle);
+        @NotNull final List<String> flushed = new ArrayList<>();
+        @NotNull final StringWriter writer = new StringWriter() {
+            @Override
+            public void flush() {
+                flushed.add(this.toString());
+            }
+        };
+        this.drawing.writeProgressiveSVG(writer, 200, 100);
+
+        then(flushed.get(0)).contains("<g id='drawl-preview'>");
+        then(flushed.get(0)).contains("fill='red'");
+        then(flushed.get(0)).contains("fill='blue'");
+        then(flushed.get(0)).doesNotContain("<circle");
+        then(flushed.get(0)).doesNotContain("<rect");
+        then(flushed.get(flushed.size() - 1)).endsWith("<style>#drawl-preview{display:none}</style></svg>");
+    }
+
+    @Test
+    @DisplayName("Progressive SVG: When a Drawing is written progressively, then without the preview it is the same SVG")
+    void whenADrawingIsWrittenProgressivelyThenWithoutThePreviewItIsTheSameSVG() throws IOException {
+        for (int i = 0; i < 2000; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill(i % 2 == 0 ? "red" : "green");
+            this.drawing.add(circle);
+        }
+        @NotNull final String svg = this.drawing.getSVG(400, 300);
+        @NotNull final StringWriter writer = new StringWriter();
+        this.drawing.writeProgressiveSVG(writer, 400, 300);
+
+        then(writer.toString().replaceAll("<g id='drawl-preview'>.*?</g>\\R?", "")
+                .replace("<style>#drawl-preview{display:none}</style>", "")).isEqualTo(svg);
+    }
+
+    @Test
+    @DisplayName("Pipelined SVG: When a large Drawing is written, then it is written in chunks as the same SVG")
+    void whenALargeDrawingIsWrittenThenItIsWrittenInChunksAsTheSameSVG() throws IOException {
+        for (int i = 0; i < 2000; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill(i % 2 == 0 ? "red" : "green");
+            this.drawing.add(circle);
+            if (i % 400 == 0) {
+                @NotNull final Line line = new Line();
+                line.addLineEnding(LineEnding.newInstance(LineEnding.Type.values()[i / 400]));
+                this.drawing.add(line);
+            }
+        }
+        @NotNull final String svg = this.drawing.getSVG(400, 300);
+        @NotNull final List<String> written = new ArrayList<>();
+        @NotNull final StringWriter writer = new StringWriter() {
+            @Override
+            public void write(@NotNull final String str) {
+                written.add(str);
+                super.write(str);
+            }
+        };
+        this.drawing.writeSVG(writer, 400, 300);
+
+        then(writer.toString()).isEqualTo(svg);
+        then(written.size()).isGreaterThan(2);
+        then(written.get(0)).contains("<defs>").doesNotContain("fill='red'");
+    }
+
+    @Test
+    @DisplayName("Pipelined SVG: When writing a large Drawing fails, then the failure is thrown")
+    void whenWritingALargeDrawingFailsThenTheFailureIsThrown() {
+        for (int i = 0; i < 2000; i++) {
+            this.drawing.add(new Circle());
+        }
+        @NotNull final StringWriter writer = new StringWriter() {
+            @Override
+            public void write(@NotNull final String str) {
+                throw new UncheckedIOException(new IOException("Disk full"));
+            }
+        };
+
+        then(catchThrowable(() -> this.drawing.writeSVG(writer, 400, 300))).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    @DisplayName("Hybrid SVG: When a dense Drawing is drawn with hybrid rendering, then its Shapes become an image")
+    void whenADenseDrawingIsDrawnWithHybridRenderingThenItsShapesBecomeAnImage() {
+        // The background is too large to rasterize, and the Circles are crowded into its corner
+        @NotNull final Rectangle background = new Rectangle(20.0);
+        background.setFill("none");
+        this.drawing.add(background);
+        for (int i = 0; i < 200; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill("red");
+            circle.setRightOf(background);
+            this.drawing.add(circle);
+        }
+        this.drawing.add(new Text("Label"));
+        @NotNull final String vectorSVG = this.drawing.getSVG(100, 100);
+        this.drawing.setHybridRendering(true);
+        @NotNull final String hybridSVG = this.drawing.getSVG(100, 100);
+
+        then(StringUtils.countMatches(hybridSVG, "<image ")).isEqualTo(1);
+        then(hybridSVG).contains("href='data:image/png;base64,");
+        then(hybridSVG).doesNotContain("<circle");
+        then(hybridSVG).contains("<rect");
+        then(hybridSVG).contains(">Label</text>");
+        then(hybridSVG.length()).isLessThan(vectorSVG.length());
+    }
+
+    @Test
+    @DisplayName("Hybrid SVG: When a vector Shape is drawn among the Shapes of a dense region, then it stays between them")
+    void whenAVectorShapeIsDrawnAmongTheShapesOfADenseRegionThenItStaysBetweenThem() {
+        @NotNull final Rectangle background = new Rectangle(20.0);
+        background.setFill("none");
+        this.drawing.add(background);
+        for (int i = 0; i < 400; i++) {
+            @NotNull final Shape shape;
+            if (i == 200) {
+                // Overlaps the Circles, so it must be drawn over the first half and under the second
+                shape = new Text("Middle");
+            } else {
+                shape = new Circle();
+                shape.setFill(i < 200 ? "red" : "blue");
+            }
+            shape.setRightOf(background);
+            this.drawing.add(shape);
+        }
+        this.drawing.setHybridRendering(true);
+        @NotNull final String hybridSVG = this.drawing.getSVG(100, 100);
+
+        then(StringUtils.countMatches(hybridSVG, "<image ")).isEqualTo(2);
+        then(hybridSVG.indexOf("<image ")).isLessThan(hybridSVG.indexOf(">Middle</text>"));
+        then(hybridSVG.lastIndexOf("<image ")).isGreaterThan(hybridSVG.indexOf(">Middle</text>"));
+    }
+
+    @Test
+    @DisplayName("Hybrid SVG: When dense regions are drawn as images, then the images do not overlap")
+    void whenDenseRegionsAreDrawnAsImagesThenTheImagesDoNotOverlap() {
+        Shape previous = null;
+        for (int i = 0; i < 2000; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill("red");
+            if (previous != null) {
+                circle.setRightOf(previous);
+            }
+            this.drawing.add(circle);
+            previous = circle;
+        }
+        this.drawing.setHybridRendering(true);
+        @NotNull final String hybridSVG = this.drawing.getSVG(1000, 1);
+
+        @NotNull final Matcher images = Pattern.compile("<image x='(-?\\d+)' y='-?\\d+' width='(\\d+)'")
+                .matcher(hybridSVG);
+        int count = 0;
+        int right = Integer.MIN_VALUE;
+        while (images.find()) {
+            final int x = Integer.parseInt(images.group(1));
+            then(x).isGreaterThanOrEqualTo(right);
+            right = x + Integer.parseInt(images.group(2));
+            count++;
+        }
+        then(count).isGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("Hybrid SVG: When a sparse Drawing is drawn with hybrid rendering, then it stays vector")
+    void whenASparseDrawingIsDrawnWithHybridRenderingThenItStaysVector() {
+        for (int i = 0; i < 10; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill("red");
+            this.drawing.add(circle);
+        }
+        @NotNull final String vectorSVG = this.drawing.getSVG(100, 100);
+        this.drawing.setHybridRendering(true);
+
+        then(this.drawing.getSVG(100, 100)).isEqualTo(vectorSVG);
+    }
+
+    @Test
+    @DisplayName("Tiles: When a Drawing is written as a tile pyramid, then each level covers the Drawing in z/x/y tiles")
+    void whenADrawingIsWrittenAsATilePyramidThenEachLevelCoversTheDrawingInZXYTiles(@TempDir final Path directory)
+            throws IOException {
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        this.drawing.add(circle);
+        final int tiles = this.drawing.writeToTilePyramid(directory.toString(), 2);
+
+        then(tiles).isEqualTo(1 + 4 + 16);
+        @NotNull final BufferedImage top = ImageIO.read(directory.resolve("0/0/0.png").toFile());
+        then(top.getWidth()).isEqualTo(256);
+        then(top.getRGB(128, 128)).isEqualTo(0xffff0000);
+        // The center of the Drawing is the top left of the third tile across and down at level 2
+        @NotNull final BufferedImage deepest = ImageIO.read(directory.resolve("2/2/2.png").toFile());
+        then(deepest.getRGB(0, 0)).isEqualTo(0xffff0000);
+        then(Files.exists(directory.resolve("3"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Tiles: When Shapes are smaller than a pixel at a level, then they are still painted there")
+    void whenShapesAreSmallerThanAPixelAtALevelThenTheyAreStillPaintedThere(@TempDir final Path directory)
+            throws IOException {
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("blue");
+        // The Rectangle is much larger than the Circle, so at level 0 the Circle is less than a pixel across
+        @NotNull final Rectangle large = new Rectangle(1000.0);
+        large.setFill("none");
+        large.setStroke("none");
+        circle.setRightOf(large);
+        this.drawing.add(large);
+        this.drawing.add(circle);
+        this.drawing.writeToTilePyramid(directory.toString(), 2);
+
+        @NotNull final BufferedImage top = ImageIO.read(directory.resolve("0/0/0.png").toFile());
+        boolean painted = false;
+        for (int x = 0; x < top.getWidth(); x++) {
+            for (int y = 0; y < top.getHeight(); y++) {
+                painted |= top.getRGB(x, y) == 0xff0000ff;
+            }
+        }
+        then(painted).isTrue();
+    }
+
+    @Test
+    @DisplayName("Tiles: When a Shape has neither a fill nor a stroke, then no tile is written for it alone")
+    void whenAShapeHasNeitherAFillNorAStrokeThenNoTileIsWrittenForItAlone(@TempDir final Path directory)
+            throws IOException {
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("blue");
+        @NotNull final Rectangle large = new Rectangle(1000.0);
+        large.setFill("none");
+        large.setStroke("none");
+        circle.setRightOf(large);
+        this.drawing.add(large);
+        this.drawing.add(circle);
+        final int tiles = this.drawing.writeToTilePyramid(directory.toString(), 2);
+
+        // Only the tiles that the Circle reaches, at the right-hand edge, are written
+        then(tiles).isLessThan(1 + 4 + 16);
+        then(Files.exists(directory.resolve("1/0"))).isFalse();
+        then(Files.exists(directory.resolve("2/0"))).isFalse();
+    }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.FrameSequence;
+import com.aarrelaakso.drawl.Rectangle;
+import org.apache.commons.lang3.StringUtils;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of rendering Drawings as the frames of an animation.
+ */
+@DisplayName("FrameSequence - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class FrameSequenceTestPublic {
+
+    @Test
+    @DisplayName("When frames are added, then each frame is the same SVG as the Drawing on its own")
+    void whenFramesAreAddedThenEachFrameIsTheSameSVGAsTheDrawingOnItsOwn(@NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setRightOf(circle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        @NotNull final FrameSequence frames = new FrameSequence();
+
+        softly.then(frames.addFrame(drawing, 200, 100)).isEqualTo(drawing.getSVG(200, 100));
+        rectangle.setFill("blue");
+        softly.then(frames.addFrame(drawing, 200, 100)).isEqualTo(drawing.getSVG(200, 100));
+        softly.then(frames.getFrameCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("When only some Shapes change, then the animation holds one version of each unchanged Shape")
+    void whenOnlySomeShapesChangeThenTheAnimationHoldsOneVersionOfEachUnchangedShape(
+            @NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setRightOf(circle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        @NotNull final FrameSequence frames = new FrameSequence();
+        @NotNull final String[] fills = {"green", "blue", "yellow"};
+        for (@NotNull final String fill : fills) {
+            rectangle.setFill(fill);
+            frames.addFrame(drawing, 200, 100);
+        }
+        @NotNull final String svg = frames.getAnimatedSVG(0.5);
+
+        softly.then(StringUtils.countMatches(svg, "fill='red'")).isEqualTo(1);
+        softly.then(StringUtils.countMatches(svg, "<set ")).isEqualTo(3);
+        softly.then(svg).contains("<set attributeName='display' to='inline' begin='0s' dur='.5s' />"
+                + "<rect width='100' height='100' x='100' y='0' fill='green' />");
+        softly.then(svg).contains("<set attributeName='display' to='inline' begin='1s' />"
+                + "<rect width='100' height='100' x='100' y='0' fill='yellow' />");
+    }
+
+    @Test
+    @DisplayName("When a later frame draws Shapes in another order, then the animation draws them in that order")
+    void whenALaterFrameDrawsShapesInAnotherOrderThenTheAnimationDrawsThemInThatOrder(
+            @NotNull final BDDSoftAssertions softly) {
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setFill("blue");
+        @NotNull final Drawing first = new Drawing();
+        first.add(circle);
+        first.add(rectangle);
+        @NotNull final Drawing second = new Drawing();
+        second.add(rectangle);
+        second.add(circle);
+        @NotNull final FrameSequence frames = new FrameSequence();
+        frames.addFrame(first, 100, 100);
+        frames.addFrame(second, 100, 100);
+        @NotNull final String svg = frames.getAnimatedSVG(1.0);
+
+        // The Circle starts a new element after the Rectangle, and its first version keeps its place before it
+        softly.then(StringUtils.countMatches(svg, "fill='red'")).isEqualTo(2);
+        softly.then(StringUtils.countMatches(svg, "fill='blue'")).isEqualTo(1);
+        softly.then(svg.indexOf("fill='red'")).isLessThan(svg.indexOf("fill='blue'"));
+        softly.then(svg.lastIndexOf("fill='red'")).isGreaterThan(svg.indexOf("fill='blue'"));
+        softly.then(svg).contains("<set attributeName='display' to='inline' begin='0s' dur='1s' /><circle")
+                .contains("<set attributeName='display' to='inline' begin='1s' /><circle");
+    }
+
+    @Test
+    @DisplayName("When a later frame has another size and options, then it still starts as the first frame does")
+    void whenALaterFrameHasAnotherSizeAndOptionsThenItStillStartsAsTheFirstFrameDoes() {
+        @NotNull final Drawing first = new Drawing();
+        first.add(new Circle());
+        @NotNull final Drawing second = new Drawing();
+        second.add(new Rectangle());
+        second.setMinified(true);
+        @NotNull final FrameSequence frames = new FrameSequence();
+        @NotNull final String firstFrame = frames.addFrame(first, 200, 100);
+        @NotNull final String start = firstFrame.substring(0, firstFrame.indexOf('>', firstFrame.indexOf("<svg")) + 1);
+
+        then(start).contains("width='200' height='100'");
+        then(frames.addFrame(second, 300, 100)).startsWith(start);
+    }
+
+    @Test
+    @DisplayName("When no frame has been added, then getting the animation throws an IllegalStateException")
+    void whenNoFrameHasBeenAddedThenGettingTheAnimationThrowsAnIllegalStateException() {
+        @NotNull final Throwable thrown = catchThrowable(() -> new FrameSequence().getAnimatedSVG(1.0));
+        then(thrown).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -13,6 +13,7 @@ package com.aarrelaakso.drawl.test;
 import com.aarrelaakso.drawl.Drawing;
 import com.aarrelaakso.drawl.Line;
 import com.aarrelaakso.drawl.LineEnding;
+import org.apache.commons.lang3.StringUtils;
 import org.assertj.core.api.BDDSoftAssertions;
 import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
 import org.junit.jupiter.api.DisplayName;
@@ -169,7 +170,7 @@ public class LineEndingDrawingTestPublic {
         softly.then(svg).contains("<defs>" + newLine +
                 "<marker id='BAR")
                 .contains("' orient='auto' viewBox='0 0 3.0 8.0' markerWidth='3.0' markerHeight='8.0' refX='1.5' refY='4.0'>" + newLine +
-                        "<path d='M1,1 L1,7.0 L2.0,7.0 L2.0,1 z' fill='black' />" + newLine +
+                        "<path d='M1,1V7H2V1z' fill='black' />" + newLine +
                         "</marker>" + newLine +
                         "</defs>");
     }
@@ -193,7 +194,7 @@ public class LineEndingDrawingTestPublic {
         softly.then(lineEndingSVG.markerHeight).isEqualTo(6);
         softly.then(lineEndingSVG.refX).isEqualTo(3);
         softly.then(lineEndingSVG.refY).isEqualTo(3);
-        softly.then(lineEndingSVG.path).isEqualTo("<path d='M1,1 L1,5 L5,5 L5,1 z' stroke='black' fill='black' />");
+        softly.then(lineEndingSVG.path).isEqualTo("<path d='M1,1V5H5V1z' stroke='black' fill='black' />");
     }
 
     @Test
@@ -208,7 +209,7 @@ public class LineEndingDrawingTestPublic {
         softly.then(svg).contains("<defs>" + newLine +
                 "<marker id='BRACKET")
                 .contains("' orient='auto' viewBox='0 0 5 8' markerWidth='5' markerHeight='8' refX='4' refY='4'>" + newLine +
-                        "<path d='M1,1 L4,1 L4,7 L1,7' stroke='black' fill='white' fill-opacity='0.0' />" + newLine +
+                        "<path d='M1,1H4V7H1' stroke='black' fill='white' fill-opacity='0.0' />" + newLine +
                         "</marker>" + newLine +
                         "</defs>");
     }
@@ -257,7 +258,7 @@ public class LineEndingDrawingTestPublic {
         softly.then(lineEndingSVG.markerHeight).isEqualTo(8);
         softly.then(lineEndingSVG.refX).isEqualTo(4);
         softly.then(lineEndingSVG.refY).isEqualTo(4);
-        softly.then(lineEndingSVG.path).isEqualTo("<path d='M1,1 L4,4 L1,7 L7,4 z' fill='black' />");
+        softly.then(lineEndingSVG.path).isEqualTo("<path d='M1,1 4,4 1,7 7,4z' fill='black' />");
     }
 
     @Test
@@ -290,11 +291,8 @@ public class LineEndingDrawingTestPublic {
         softly.then(svg).contains("markerHeight='6.29827972729416");
         softly.then(svg).contains("refX='4.722419436408");
         softly.then(svg).contains("refY='3.149139863647");
-        softly.then(svg).contains(",5.298279727294168");
-        softly.then(svg).contains("L8.444838872816796");
-        softly.then(svg).contains(",3.149139863647084");
-        softly.then(svg).contains("L4.722419436408398");
-        softly.then(svg).contains(",1 z' stroke='black' fill='black' />" + newLine + "</marker>" + newLine + "</defs>");
+        softly.then(svg).contains("<path d='M1,3.14914 4.7224193,5.29828 8.444839,3.14914 4.7224193,1z'");
+        softly.then(svg).contains(",1z' stroke='black' fill='black' />" + newLine + "</marker>" + newLine + "</defs>");
     }
 
     @Test
@@ -381,7 +379,7 @@ public class LineEndingDrawingTestPublic {
         softly.then(svg).contains("<defs>" + newLine +
                 "<marker id='KITE")
                 .contains("' orient='auto' viewBox='0 0 8 8' markerWidth='8' markerHeight='8' refX='4' refY='4'>" + newLine +
-                        "<path d='M1,4 L3,7 L7,4 L3,1 z' stroke='black' fill='black' />" + newLine +
+                        "<path d='M1,4 3,7 7,4 3,1z' stroke='black' fill='black' />" + newLine +
                         "</marker>" + newLine +
                         "</defs>");
     }
@@ -440,7 +438,7 @@ public class LineEndingDrawingTestPublic {
                 .contains("markerHeight='4.82842712474619'")
                 .contains("refX='3.8284271247461903'")
                 .contains("refY='2.414213562373095'>")
-                .contains("<path d='M1,1 L1,3.8284271247461903 L6.656854249492381,3.8284271247461903 L6.656854249492381,1 z'")
+                .contains("<path d='M1,1V3.828427H6.656854V1z'")
                 .contains("stroke='black'")
                 .contains("fill='black' />")
                 .contains("</marker>")
@@ -464,7 +462,7 @@ public class LineEndingDrawingTestPublic {
                 .contains("markerHeight='6'")
                 .contains("refX='3'")
                 .contains("refY='3'>")
-                .contains("<path d='M1,1 L1,5 L5,5 L5,1 z'")
+                .contains("<path d='M1,1V5H5V1z'")
                 .contains("stroke='black'")
                 .contains("fill='black' />")
                 .contains("</marker>")
@@ -483,7 +481,7 @@ public class LineEndingDrawingTestPublic {
         softly.then(svg).contains("<defs>" + newLine +
                 "<marker id='STEALTH")
                 .contains("' orient='auto' viewBox='0 0 8 8' markerWidth='8' markerHeight='8' refX='4' refY='4'>" + newLine +
-                        "<path d='M1,1 L4,4 L1,7 L7,4 z' fill='black' />" + newLine +
+                        "<path d='M1,1 4,4 1,7 7,4z' fill='black' />" + newLine +
                         "</marker>" + newLine +
                         "</defs>");
     }
@@ -517,7 +515,7 @@ public class LineEndingDrawingTestPublic {
                 .contains("markerHeight='7.6568542494923")
                 .contains("refX='3.8284271247461903'")
                 .contains("refY='3.8284271247461903'>")
-                .contains("<path d='M3.8284271247461903,1 L6.656854249492381,3.8284271247461903 L3.8284271247461903,6.656854249492381 L1,3.8284271247461903 z'")
+                .contains("<path d='M3.828427,1 6.656854,3.828427 3.828427,6.656854 1,3.828427z'")
                 .contains("stroke='black'")
                 .contains("fill='black'")
                 .contains("/>")
@@ -583,4 +581,49 @@ public class LineEndingDrawingTestPublic {
         line.addLineEnding(lineEnding);
     }
 
+    @DisplayName("When many lines have identical LineEndings, then the marker is defined only once")
+    @ParameterizedTest
+    @EnumSource(LineEnding.Type.class)
+    void whenManyLinesHaveIdenticalLineEndingsThenTheMarkerIsDefinedOnlyOnce(LineEnding.Type type,
+                                                                              BDDSoftAssertions softly) {
+        final Drawing drawing = new Drawing();
+        Line previous = null;
+        for (int i = 0; i < 5; i++) {
+            final Line line = new Line();
+            line.setStroke(i % 2 == 0 ? "red" : "blue");
+            line.addLineEnding(LineEnding.newInstance(type));
+            if (previous != null) {
+                line.setBelow(previous);
+            }
+            drawing.add(line);
+            previous = line;
+        }
+        final String svg = drawing.getSVG(100, 100);
+        softly.then(StringUtils.countMatches(svg, "<defs>")).isEqualTo(1);
+        softly.then(StringUtils.countMatches(svg, "<marker ")).isEqualTo(1);
+        softly.then(StringUtils.countMatches(svg, "marker-end='url(#")).isEqualTo(5);
+    }
+
+    @DisplayName("When lines have LineEndings that differ, then each distinct marker is defined once")
+    @Test
+    void whenLinesHaveLineEndingsThatDifferThenEachDistinctMarkerIsDefinedOnce(BDDSoftAssertions softly) {
+        final Drawing drawing = new Drawing();
+        final String[] fills = {"red", "green", "red", "green", LineEnding.CONTEXT_STROKE};
+        Line previous = null;
+        for (final String fill : fills) {
+            final Line line = new Line();
+            final LineEnding lineEnding = LineEnding.newInstance(LineEnding.Type.TRIANGLE);
+            lineEnding.setFill(fill);
+            line.addLineEnding(lineEnding);
+            if (previous != null) {
+                line.setBelow(previous);
+            }
+            drawing.add(line);
+            previous = line;
+        }
+        final String svg = drawing.getSVG(100, 100);
+        softly.then(StringUtils.countMatches(svg, "<marker ")).isEqualTo(3);
+        softly.then(svg).contains("fill='context-stroke'");
+    }
+
 }
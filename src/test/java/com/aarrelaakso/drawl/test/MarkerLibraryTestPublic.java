@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.Line;
+import com.aarrelaakso.drawl.LineEnding;
+import com.aarrelaakso.drawl.MarkerLibrary;
+import org.apache.commons.lang3.StringUtils;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Tests the public API of the shared marker library.
+ */
+@DisplayName("MarkerLibrary - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class MarkerLibraryTestPublic {
+
+    @Test
+    @DisplayName("When the marker library is generated, then it defines one marker per canonical LineEnding type")
+    void whenTheMarkerLibraryIsGeneratedThenItDefinesOneMarkerPerCanonicalType(@NotNull final BDDSoftAssertions softly) {
+        @NotNull final String svg = MarkerLibrary.getSVG();
+        softly.then(svg).contains("<marker id='TRIANGLE' orient='auto'");
+        softly.then(svg).contains("<marker id='BOX' orient='auto'");
+        softly.then(svg).contains("<marker id='CIRCLE' orient='auto'");
+        softly.then(svg).doesNotContain("id='NORMAL'");
+        softly.then(svg).doesNotContain("id='OPEN_DOT'");
+        softly.then(StringUtils.countMatches(svg, "<marker ")).isEqualTo(14);
+    }
+
+    @Test
+    @DisplayName("When a Drawing uses a marker library, then default LineEndings refer to it")
+    void whenADrawingUsesAMarkerLibraryThenDefaultLineEndingsReferToIt(@NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = new Drawing();
+        drawing.setMarkerLibrary("markers.svg");
+        @NotNull final Line line = new Line();
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.NORMAL));
+        drawing.add(line);
+        @NotNull final String svg = drawing.getSVG(100, 100);
+        softly.then(svg).contains("marker-end='url(markers.svg#TRIANGLE)'");
+        softly.then(svg).doesNotContain("<defs>");
+        softly.then(svg).doesNotContain("<marker");
+    }
+
+    @Test
+    @DisplayName("When a Drawing uses a marker library, then customized LineEndings are still defined locally")
+    void whenADrawingUsesAMarkerLibraryThenCustomizedLineEndingsAreStillDefinedLocally(
+            @NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = new Drawing();
+        drawing.setMarkerLibrary("markers.svg");
+        @NotNull final Line line = new Line();
+        @NotNull final LineEnding lineEnding = LineEnding.newInstance(LineEnding.Type.TRIANGLE);
+        lineEnding.setFill("red");
+        line.addLineEnding(lineEnding);
+        drawing.add(line);
+        @NotNull final String svg = drawing.getSVG(100, 100);
+        softly.then(svg).doesNotContain("markers.svg");
+        softly.then(svg).contains("<marker id='TRIANGLE-");
+        softly.then(svg).contains("marker-end='url(#TRIANGLE-");
+    }
+
+    @Test
+    @DisplayName("When a marker library URL has XML special characters, then they are escaped")
+    void whenAMarkerLibraryURLHasXMLSpecialCharactersThenTheyAreEscaped(@NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = new Drawing();
+        drawing.setMarkerLibrary("markers.svg?a=1&b='2'");
+        @NotNull final Line line = new Line();
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.NORMAL));
+        drawing.add(line);
+        @NotNull final String svg = drawing.getSVG(100, 100);
+        softly.then(svg).contains("marker-end='url(markers.svg?a=1&amp;b=%272%27#TRIANGLE)'");
+        softly.then(svg).doesNotContain("&b=");
+    }
+
+    @Test
+    @DisplayName("When a marker library URL has spaces or parentheses, then they are percent-encoded")
+    void whenAMarkerLibraryURLHasSpacesOrParenthesesThenTheyArePercentEncoded(
+            @NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = new Drawing();
+        drawing.setMarkerLibrary("markers (v2).svg");
+        @NotNull final Line line = new Line();
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.NORMAL));
+        drawing.add(line);
+        @NotNull final String svg = drawing.getSVG(100, 100);
+        softly.then(svg).contains("marker-end='url(markers%20%28v2%29.svg#TRIANGLE)'");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.ParallelGzipOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@DisplayName("ParallelGzipOutputStream - Public API")
+public class ParallelGzipOutputStreamTestPublic {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @NotNull
+    private static byte[] compress(@NotNull final byte[] data) throws IOException {
+        @NotNull final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (@NotNull final ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, BLOCK_SIZE, 4)) {
+            // Write in odd-sized pieces so that writes straddle block boundaries
+            int offset = 0;
+            while (offset < data.length) {
+                final int length = Math.min(1000, data.length - offset);
+                out.write(data, offset, length);
+                offset += length;
+            }
+        }
+        return compressed.toByteArray();
+    }
+
+    @NotNull
+    private static byte[] decompress(@NotNull final InputStream compressed) throws IOException {
+        @NotNull final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (@NotNull final InputStream in = new GZIPInputStream(compressed)) {
+            @NotNull final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                result.write(buffer, 0, count);
+            }
+        }
+        return result.toByteArray();
+    }
+
+    @Test
+    @DisplayName("When nothing is written, then the output is a valid empty gzip stream")
+    void whenNothingIsWrittenThenTheOutputIsAValidEmptyGzipStream() throws IOException {
+        @NotNull final byte[] compressed = compress(new byte[0]);
+        then(decompress(new ByteArrayInputStream(compressed))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("When data spans many blocks, then it inflates to the original bytes")
+    void whenDataSpansManyBlocksThenItInflatesToTheOriginalBytes() throws IOException {
+        @NotNull final StringBuilder svg = new StringBuilder();
+        @NotNull final Random random = new Random(42);
+        while (svg.length() < 10 * BLOCK_SIZE + 123) {
+            svg.append("<circle r='").append(random.nextInt(100)).append("' cx='").append(random.nextInt(1000))
+                    .append("' cy='").append(random.nextInt(1000)).append("' />");
+        }
+        @NotNull final byte[] data = svg.toString().getBytes(StandardCharsets.UTF_8);
+        @NotNull final byte[] compressed = compress(data);
+        then(decompress(new ByteArrayInputStream(compressed))).isEqualTo(data);
+        then(compressed.length).isLessThan(data.length / 2);
+    }
+
+    @Test
+    @DisplayName("When data is exactly one block long, then it inflates to the original bytes")
+    void whenDataIsExactlyOneBlockLongThenItInflatesToTheOriginalBytes() throws IOException {
+        @NotNull final byte[] data = new byte[BLOCK_SIZE];
+        new Random(7).nextBytes(data);
+        then(decompress(new ByteArrayInputStream(compress(data)))).isEqualTo(data);
+    }
+
+    @Test
+    @DisplayName("When a Drawing is written to an SVGZ file, then the file inflates to its SVG")
+    void whenADrawingIsWrittenToAnSVGZFileThenTheFileInflatesToItsSVG(@TempDir final Path directory)
+            throws IOException {
+        @NotNull final Drawing drawing = new Drawing();
+        drawing.add(new Circle());
+        @NotNull final Path file = directory.resolve("circle.svgz");
+        drawing.writeToSVGZFile(file.toString(), 100, 100);
+        try (@NotNull final InputStream in = Files.newInputStream(file)) {
+            then(new String(decompress(in), StandardCharsets.UTF_8)).isEqualTo(drawing.getSVG());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.RenderServer;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of the render server.
+ */
+@DisplayName("RenderServer - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class RenderServerTestPublic {
+
+    private static final String DESCRIPTION = "<svg xmlns='http://www.w3.org/2000/svg'>"
+            + "<rect x='0' y='-10' width='20' height='10' fill='red'/></svg>";
+
+    private RenderServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.server = new RenderServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, 4);
+        this.server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.server.close();
+    }
+
+    @NotNull
+    private HttpURLConnection post(@NotNull final String query, @Nullable final String etag) throws IOException {
+        return this.post(query, etag, null);
+    }
+
+    @NotNull
+    private HttpURLConnection post(@NotNull final String query, @Nullable final String etag,
+                                   @Nullable final String acceptEncoding) throws IOException {
+        @NotNull final URL url = new URL("http://127.0.0.1:" + this.server.getPort() + "/render?" + query);
+        @NotNull final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "image/svg+xml");
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (acceptEncoding != null) {
+            connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        try (@NotNull final OutputStream output = connection.getOutputStream()) {
+            output.write(DESCRIPTION.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    /**
+     * Opens a request that declares a body of a given length, and sends only its headers.
+     */
+    @NotNull
+    private Socket open(final long contentLength) throws IOException {
+        @NotNull final Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.server.getPort());
+        socket.setSoTimeout(10000);
+        socket.getOutputStream().write(("POST /render?width=100&height=50 HTTP/1.1\r\nHost: localhost\r\n"
+                + "Content-Type: image/svg+xml\r\nContent-Length: " + contentLength + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    @NotNull
+    private static byte[] readAll(@NotNull final InputStream input) throws IOException {
+        @NotNull final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        @NotNull final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    @DisplayName("When an SVG description is posted, then the server renders it and tags it with an ETag")
+    void whenAnSVGDescriptionIsPostedThenTheServerRendersIt(@NotNull final BDDSoftAssertions softly)
+            throws IOException {
+        @NotNull final HttpURLConnection connection = this.post("width=100&height=50", null);
+        softly.then(connection.getResponseCode()).isEqualTo(200);
+        softly.then(connection.getContentType()).isEqualTo("image/svg+xml");
+        softly.then(connection.getHeaderField("ETag")).startsWith("\"");
+        softly.then(connection.getHeaderField("Server-Timing")).startsWith("render;dur=");
+        @NotNull final String svg = new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+        softly.then(svg).contains("<svg").contains("<rect").contains("fill='red'");
+    }
+
+    @Test
+    @DisplayName("When a request carries the ETag of its response, then the server answers 304 Not Modified")
+    void whenARequestCarriesTheETagOfItsResponseThenTheServerAnswersNotModified(
+            @NotNull final BDDSoftAssertions softly) throws IOException {
+        @NotNull final HttpURLConnection first = this.post("width=100&height=50&format=png", null);
+        softly.then(first.getResponseCode()).isEqualTo(200);
+        softly.then(first.getContentType()).isEqualTo("image/png");
+        @NotNull final String etag = first.getHeaderField("ETag");
+        readAll(first.getInputStream());
+        softly.then(this.post("width=100&height=50&format=png", etag).getResponseCode()).isEqualTo(304);
+        softly.then(this.post("width=100&height=51&format=png", etag).getResponseCode()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("When a request has no valid size or format, then the server answers 400 Bad Request")
+    void whenARequestHasNoValidSizeOrFormatThenTheServerAnswersBadRequest(@NotNull final BDDSoftAssertions softly)
+            throws IOException {
+        softly.then(this.post("width=100", null).getResponseCode()).isEqualTo(400);
+        softly.then(this.post("width=0&height=50", null).getResponseCode()).isEqualTo(400);
+        softly.then(this.post("width=100&height=50&format=gif", null).getResponseCode()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("When a request has a malformed query or too many pixels, then the server answers 400 Bad Request")
+    void whenARequestHasAMalformedQueryOrTooManyPixelsThenTheServerAnswersBadRequest(
+            @NotNull final BDDSoftAssertions softly) throws IOException {
+        softly.then(this.post("width=100&height=50&format=%zz", null).getResponseCode()).isEqualTo(400);
+        softly.then(this.post("width=16384&height=16384&format=png", null).getResponseCode()).isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("When a description is too large, then the server answers 413 Payload Too Large")
+    void whenADescriptionIsTooLargeThenTheServerAnswersPayloadTooLarge() throws IOException {
+        try (@NotNull final Socket socket = this.open(RenderServer.MAX_BODY_SIZE + 1L)) {
+            @NotNull final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            then(reader.readLine()).startsWith("HTTP/1.1 413");
+        }
+    }
+
+    @Test
+    @DisplayName("When the SVG is sent compressed, then its ETag differs from that of the uncompressed SVG")
+    void whenTheSVGIsSentCompressedThenItsETagDiffers(@NotNull final BDDSoftAssertions softly) throws IOException {
+        @NotNull final HttpURLConnection identity = this.post("width=100&height=50", null);
+        @NotNull final String identityETag = identity.getHeaderField("ETag");
+        readAll(identity.getInputStream());
+        @NotNull final HttpURLConnection gzip = this.post("width=100&height=50", null, "gzip");
+        softly.then(gzip.getHeaderField("Content-Encoding")).isEqualTo("gzip");
+        @NotNull final String gzipETag = gzip.getHeaderField("ETag");
+        readAll(gzip.getInputStream());
+        softly.then(gzipETag).isNotEqualTo(identityETag).endsWith("-gz\"");
+        softly.then(this.post("width=100&height=50", identityETag, "gzip").getResponseCode()).isEqualTo(200);
+        softly.then(this.post("width=100&height=50", gzipETag, "gzip").getResponseCode()).isEqualTo(304);
+    }
+
+    @Test
+    @DisplayName("When the queue is full, then the server answers 503 Service Unavailable with a Retry-After")
+    void whenTheQueueIsFullThenTheServerAnswersServiceUnavailable(@NotNull final BDDSoftAssertions softly)
+            throws IOException, InterruptedException {
+        this.server.close();
+        this.server = new RenderServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1);
+        this.server.start();
+        // The first request holds the only worker while it waits for its body, and the second fills the queue
+        @NotNull final Socket working = this.open(DESCRIPTION.length());
+        @NotNull final Socket waiting = this.open(DESCRIPTION.length());
+        try {
+            final long deadline = System.nanoTime() + 10_000_000_000L;
+            while (this.server.getQueueDepth() < 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            softly.then(this.server.getQueueDepth()).isEqualTo(1);
+            @NotNull final HttpURLConnection rejected = this.post("width=100&height=50", null);
+            softly.then(rejected.getResponseCode()).isEqualTo(503);
+            softly.then(rejected.getHeaderField("Retry-After")).isEqualTo("1");
+        } finally {
+            working.close();
+            waiting.close();
+        }
+    }
+
+    @Test
+    @DisplayName("When a description does not arrive in time, then the server answers 408 and frees the worker")
+    void whenADescriptionDoesNotArriveInTimeThenTheServerAnswersRequestTimeout(
+            @NotNull final BDDSoftAssertions softly) throws IOException {
+        this.server.close();
+        this.server = new RenderServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1, 200L);
+        this.server.start();
+        try (@NotNull final Socket socket = this.open(DESCRIPTION.length())) {
+            @NotNull final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            softly.then(reader.readLine()).startsWith("HTTP/1.1 408");
+        }
+        // The only worker is free again
+        softly.then(this.post("width=100&height=50", null).getResponseCode()).isEqualTo(200);
+    }
+}
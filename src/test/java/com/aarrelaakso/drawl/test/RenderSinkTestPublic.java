@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.HitMapSink;
+import com.aarrelaakso.drawl.ImageSink;
+import com.aarrelaakso.drawl.Line;
+import com.aarrelaakso.drawl.LineEnding;
+import com.aarrelaakso.drawl.Rectangle;
+import com.aarrelaakso.drawl.RenderSink;
+import com.aarrelaakso.drawl.SVGSink;
+import com.aarrelaakso.drawl.Shape;
+import com.aarrelaakso.drawl.Text;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of rendering to several sinks at once.
+ */
+@DisplayName("RenderSink - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class RenderSinkTestPublic {
+
+    @NotNull
+    private static Drawing createDrawing() {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setRightOf(circle);
+        rectangle.addText(new Text("Hello"));
+        @NotNull final Line line = new Line();
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.TRIANGLE));
+        line.setRightOf(rectangle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        drawing.add(line);
+        return drawing;
+    }
+
+    @Test
+    @DisplayName("When a Drawing is rendered to several sinks at once, then each gives the same output as on its own")
+    void whenADrawingIsRenderedToSeveralSinksAtOnceThenEachGivesTheSameOutputAsOnItsOwn(
+            @NotNull final BDDSoftAssertions softly) {
+        @NotNull final Drawing drawing = RenderSinkTestPublic.createDrawing();
+        @NotNull final SVGSink svgSink = new SVGSink();
+        @NotNull final ImageSink imageSink = new ImageSink();
+        @NotNull final HitMapSink hitMapSink = new HitMapSink();
+        drawing.render(300, 100, svgSink, imageSink, hitMapSink);
+
+        softly.then(svgSink.getSVG()).isEqualTo(drawing.getSVG(300, 100));
+        @NotNull final BufferedImage image = drawing.getImage(300, 100);
+        softly.then(imageSink.getImage().getRGB(50, 50)).isEqualTo(image.getRGB(50, 50)).isEqualTo(0xffff0000);
+        softly.then(hitMapSink.getJSON()).startsWith("{\"width\":300,\"height\":100,\"hits\":[[0,\"circle\",0,0,100,100],"
+                + "[1,\"rect\",100,0,100,100],[1,\"text\",");
+        softly.then(hitMapSink.getJSON()).endsWith("[2,\"line\",199.5,-.5,101,101]]}");
+    }
+
+    @Test
+    @DisplayName("When a Drawing is rendered, then a sink receives each Shape once, followed by its primitives")
+    void whenADrawingIsRenderedThenASinkReceivesEachShapeOnceFollowedByItsPrimitives() {
+        @NotNull final List<String> events = new ArrayList<>();
+        @NotNull final RenderSink sink = new RenderSink() {
+            @Override
+            public void beginShape(@NotNull final Shape shape) {
+                events.add(shape.getClass().getSimpleName());
+            }
+
+            @Override
+            public void circle(final double cx, final double cy, final double radius, @Nullable final String fill,
+                               @Nullable final String stroke) {
+                events.add("circle " + fill);
+            }
+
+            @Override
+            public void text(final double x, final double y, @NotNull final String string,
+                             @Nullable final String fill, @Nullable final String stroke) {
+                events.add("text " + string);
+            }
+
+            @Override
+            public void line(final double x1, final double y1, final double x2, final double y2,
+                             @NotNull final String stroke, final double thickness,
+                             @Nullable final LineEnding lineEnding) {
+                events.add("line " + stroke);
+            }
+        };
+        RenderSinkTestPublic.createDrawing().render(300, 100, sink);
+
+        then(events).containsExactly("Circle", "circle red", "Rectangle", "text Hello", "Line", "line black");
+    }
+
+    @Test
+    @DisplayName("When nothing has been rendered to a sink, then getting its output throws an exception")
+    void whenNothingHasBeenRenderedToASinkThenGettingItsOutputThrowsAnException(
+            @NotNull final BDDSoftAssertions softly) {
+        softly.then(catchThrowable(() -> new SVGSink().getSVG())).isInstanceOf(IllegalStateException.class);
+        softly.then(catchThrowable(() -> new ImageSink().getImage())).isInstanceOf(IllegalStateException.class);
+        softly.then(catchThrowable(() -> new HitMapSink().getJSON())).isInstanceOf(IllegalStateException.class);
+    }
+}
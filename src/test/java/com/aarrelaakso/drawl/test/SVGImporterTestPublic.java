@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.Line;
+import com.aarrelaakso.drawl.LineEnding;
+import com.aarrelaakso.drawl.Rectangle;
+import com.aarrelaakso.drawl.SVGImporter;
+import com.aarrelaakso.drawl.Shape;
+import com.aarrelaakso.drawl.Text;
+import org.assertj.core.api.BDDSoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of the streaming SVG importer.
+ */
+@DisplayName("SVGImporter - Public API")
+@ExtendWith(SoftAssertionsExtension.class)
+public class SVGImporterTestPublic {
+
+    @NotNull
+    private static InputStream toStream(@NotNull final String svg) {
+        return new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("When the SVG of a Drawing is imported, then the imported Drawing renders the same SVG")
+    void whenTheSVGOfADrawingIsImportedThenTheImportedDrawingRendersTheSameSVG() throws IOException {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        circle.addText(new Text("Circle"));
+        @NotNull final Rectangle rectangle = new Rectangle(2.0);
+        rectangle.setStroke("blue");
+        rectangle.setRightOf(circle);
+        @NotNull final Line line = new Line();
+        line.setThickness(3);
+        line.setBelow(rectangle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        drawing.add(line);
+        @NotNull final String svg = drawing.getSVG(300, 200);
+
+        @NotNull final Drawing imported = SVGImporter.read(SVGImporterTestPublic.toStream(svg));
+        then(imported.getSVG(300, 200)).isEqualTo(svg);
+    }
+
+    @Test
+    @DisplayName("When SVG is streamed, then each supported element is passed on in document order")
+    void whenSVGIsStreamedThenEachSupportedElementIsPassedOnInDocumentOrder(@NotNull final BDDSoftAssertions softly)
+            throws IOException {
+        @NotNull final String svg = "<svg xmlns='http://www.w3.org/2000/svg'><g>"
+                + "<rect x='0' y='0' width='10px' height='20px' style='fill: green; stroke: none'/>"
+                + "<path d='M0 0L1 1'/>"
+                + "<line x1='0' y1='0' x2='5' y2='5' stroke='red'/>"
+                + "<text x='1' y='2'>Hello, <tspan>world</tspan></text>"
+                + "<circle cx='3' cy='4' r='2' fill='blue'/>"
+                + "</g></svg>";
+        @NotNull final List<Shape> shapes = new ArrayList<>();
+        SVGImporter.read(SVGImporterTestPublic.toStream(svg), shapes::add);
+        softly.then(shapes).hasSize(4);
+        softly.then(shapes.get(0)).isInstanceOf(Rectangle.class);
+        softly.then(shapes.get(0).getFill()).isEqualTo("green");
+        softly.then(shapes.get(0).getStroke()).isEqualTo("none");
+        softly.then(shapes.get(1)).isInstanceOf(Line.class);
+        softly.then(shapes.get(1).getStroke()).isEqualTo("red");
+        softly.then(shapes.get(2)).isInstanceOf(Text.class);
+        softly.then(shapes.get(2).toString()).isEqualTo("Hello, world");
+        softly.then(shapes.get(3)).isInstanceOf(Circle.class);
+        softly.then(shapes.get(3).getFill()).isEqualTo("blue");
+    }
+
+    @Test
+    @DisplayName("When a Line with a LineEnding is imported, then its marker definition is not imported as a Shape")
+    void whenALineWithALineEndingIsImportedThenItsMarkerDefinitionIsNotImportedAsAShape() throws IOException {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Line line = new Line();
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.CIRCLE));
+        drawing.add(line);
+
+        @NotNull final List<Shape> shapes = new ArrayList<>();
+        SVGImporter.read(SVGImporterTestPublic.toStream(drawing.getSVG(100, 100)), shapes::add);
+        then(shapes).hasSize(1);
+        then(shapes.get(0)).isInstanceOf(Line.class);
+    }
+
+    @Test
+    @DisplayName("When SVG has elements that are not rendered, then they are not imported")
+    void whenSVGHasElementsThatAreNotRenderedThenTheyAreNotImported() throws IOException {
+        @NotNull final String svg = "<svg xmlns='http://www.w3.org/2000/svg'>"
+                + "<defs><g><rect width='1' height='1'/></g></defs>"
+                + "<symbol id='s'><circle r='1'/></symbol>"
+                + "<clipPath id='c'><rect width='1' height='1'/></clipPath>"
+                + "<mask id='m'><rect width='1' height='1'/></mask>"
+                + "<pattern id='p'><circle r='1'/></pattern>"
+                + "<circle cx='1' cy='1' r='0'/>"
+                + "<rect width='0' height='5'/>"
+                + "<rect width='5' height='-1'/>"
+                + "<circle cx='3' cy='4' r='2'/>"
+                + "</svg>";
+        @NotNull final List<Shape> shapes = new ArrayList<>();
+        SVGImporter.read(SVGImporterTestPublic.toStream(svg), shapes::add);
+        then(shapes).hasSize(1);
+        then(shapes.get(0)).isInstanceOf(Circle.class);
+    }
+
+    @Test
+    @DisplayName("When the SVG is not well-formed, then importing it throws an IOException")
+    void whenTheSVGIsNotWellFormedThenImportingItThrowsAnIOException() {
+        @NotNull final Throwable thrown = catchThrowable(
+                () -> SVGImporter.read(SVGImporterTestPublic.toStream("<svg><rect></svg>")));
+        then(thrown).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020. Aarre Laakso
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.aarrelaakso.drawl.test;
+
+import com.aarrelaakso.drawl.Circle;
+import com.aarrelaakso.drawl.Drawing;
+import com.aarrelaakso.drawl.Line;
+import com.aarrelaakso.drawl.LineEnding;
+import com.aarrelaakso.drawl.Rectangle;
+import com.aarrelaakso.drawl.SceneSink;
+import com.aarrelaakso.drawl.Text;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Tests the public API of the columnar JSON scene.
+ */
+@DisplayName("SceneSink - Public API")
+public class SceneSinkTestPublic {
+
+    @Test
+    @DisplayName("When a Drawing is rendered as a scene, then each primitive has an entry in every column")
+    void whenADrawingIsRenderedAsASceneThenEachPrimitiveHasAnEntryInEveryColumn() {
+        @NotNull final Drawing drawing = new Drawing();
+        @NotNull final Circle circle = new Circle();
+        circle.setFill("red");
+        @NotNull final Rectangle rectangle = new Rectangle();
+        rectangle.setRightOf(circle);
+        rectangle.addText(new Text("Say \"hi\""));
+        @NotNull final Line line = new Line();
+        line.addLineEnding(LineEnding.newInstance(LineEnding.Type.TRIANGLE));
+        line.setRightOf(rectangle);
+        drawing.add(circle);
+        drawing.add(rectangle);
+        drawing.add(line);
+        @NotNull final SceneSink sink = new SceneSink();
+        drawing.render(300, 100, sink);
+
+        then(sink.getJSON()).isEqualTo("{\"width\":300,\"height\":100,\"types\":[0,1,3,2],\"shapes\":[0,1,1,2],"
+                + "\"styles\":[0,1,1,2],\"coords\":[50,50,50,100,0,100,100,150,50,200,100,300,0],\"texts\":[0],"
+                + "\"styleTable\":[[\"red\",null,null,null],[null,null,null,null],[null,\"black\",\"1\",\"TRIANGLE\"]],"
+                + "\"textTable\":[\"Say \\\"hi\\\"\"]}");
+    }
+
+    @Test
+    @DisplayName("When many Shapes share a style and a string, then the scene writes the style and string once")
+    void whenManyShapesShareAStyleAndAStringThenTheSceneWritesTheStyleAndStringOnce() {
+        @NotNull final Drawing drawing = new Drawing();
+        Circle previous = null;
+        for (int i = 0; i < 100; i++) {
+            @NotNull final Circle circle = new Circle();
+            circle.setFill("blue");
+            circle.addText(new Text("x"));
+            if (previous != null) {
+                circle.setRightOf(previous);
+            }
+            drawing.add(circle);
+            previous = circle;
+        }
+        @NotNull final SceneSink sink = new SceneSink();
+        drawing.render(1000, 10, sink);
+
+        then(sink.getJSON()).contains("\"styleTable\":[[\"blue\",null,null,null],[null,null,null,null]],"
+                + "\"textTable\":[\"x\"]}");
+    }
+}